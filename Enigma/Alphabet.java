@@ -1,26 +1,60 @@
 package enigma;
 
+import java.util.Arrays;
+
 /** An alphabet of encodable characters.  Provides a mapping from characters
- *  to and from indices into the alphabet.
+ *  to and from indices into the alphabet.  Characters are looked up in
+ *  constant time: Basic Latin ones in a table indexed by character, and
+ *  the others in an open-addressing hash table, so that alphabets of
+ *  thousands of characters cost no more per lookup than small ones.
+ *  Characters are single UTF-16 chars, so only those of the Basic
+ *  Multilingual Plane can be encoded; surrogates, which would stand for
+ *  half of a character beyond it, are rejected.
  *  @author Sameer Keswani
  */
-class Alphabet {
+public class Alphabet {
     /**The alphabet being used.*/
     private String _alphabet;
 
+    /** Number of Basic Latin characters, which are looked up in _latin. */
+    static final int LATIN = 128;
+
+    /** _latin[c] is the index of the character C, or -1 if it is not in
+     *  the alphabet. */
+    private final int[] _latin = new int[LATIN];
+
+    /** Hash table of the other characters: each slot is 0 if empty, and
+     *  otherwise one more than the index of a character.  Its length is
+     *  a power of two at least twice their number, probed linearly. */
+    private final int[] _slots;
+
     /** A new alphabet containing CHARS. The K-th character has index
-     *  K (numbering from 0). No character may be duplicated. */
-    Alphabet(String chars) {
-        for (int i = 0; i < chars.length(); i += 1) {
-            for (int j = 0; j < chars.length(); j += 1) {
-                if ((chars.charAt(i) == chars.charAt(j)) && (i != j)) {
-                    throw new EnigmaException("No character may be duplicated");
-                }
+     *  K (numbering from 0). No character may be duplicated, and none
+     *  may be a surrogate. */
+    public Alphabet(String chars) {
+        _alphabet = chars;
+        int capacity = 1;
+        while (capacity < 2 * chars.length()) {
+            capacity <<= 1;
+        }
+        _slots = new int[capacity];
+        Arrays.fill(_latin, -1);
+        for (int k = 0; k < chars.length(); k += 1) {
+            char ch = chars.charAt(k);
+            if (Character.isSurrogate(ch)) {
+                throw new EnigmaException("Characters outside the Basic "
+                                          + "Multilingual Plane are not "
+                                          + "supported");
+            }
+            if (index(ch) != -1) {
+                throw new EnigmaException("No character may be duplicated");
+            }
+            if (ch < LATIN) {
+                _latin[ch] = k;
+            } else {
+                _slots[slot(ch)] = k + 1;
             }
         }
-
-        _alphabet = chars;
-
     }
 
     /** A default alphabet of all upper-case characters. */
@@ -29,30 +63,54 @@ class Alphabet {
     }
 
     /** Returns the size of the alphabet. */
-    int size() {
+    public int size() {
         return _alphabet.length();
     }
 
     /** Returns true if CH is in this alphabet. */
-    boolean contains(char ch) {
-        for (int i = 0; i < size(); i += 1) {
-            if (_alphabet.charAt(i) == ch) {
-                return true;
-            }
-        }
-        return false;
+    public boolean contains(char ch) {
+        return toInt(ch) != -1;
     }
 
     /** Returns character number INDEX in the alphabet, where
      *  0 <= INDEX < size(). */
-    char toChar(int index) {
+    public char toChar(int index) {
         return _alphabet.charAt(index);
     }
 
     /** Returns the index of character CH which must be in
-     *  the alphabet. This is the inverse of toChar(). */
-    int toInt(char ch) {
-        return _alphabet.indexOf(ch);
+     *  the alphabet. This is the inverse of toChar().  Returns -1 if CH
+     *  is not in the alphabet. */
+    public int toInt(char ch) {
+        return index(ch);
+    }
+
+    /** Returns the index of character CH, or -1 if it is not in the
+     *  alphabet. */
+    private int index(char ch) {
+        if (ch < LATIN) {
+            return _latin[ch];
+        }
+        return _slots[slot(ch)] - 1;
+    }
+
+    /** Returns the slot of _slots holding the character CH, which is not
+     *  in Basic Latin, or else the empty slot where it would go. */
+    private int slot(char ch) {
+        int mask = _slots.length - 1;
+        int hash = ch * 0x9E3779B9;
+        int i = (hash ^ hash >>> 16) & mask;
+        while (_slots[i] != 0 && _alphabet.charAt(_slots[i] - 1) != ch) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /** Returns the characters of this alphabet written as TEXT in a
+     *  configuration or settings line.  They are written as themselves,
+     *  except in alphabets whose characters cannot be typed. */
+    String parse(String text) {
+        return text;
     }
 
 }
@@ -0,0 +1,128 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+/** The suite of all JUnit tests for the Alphabet class.
+ *  @author Sameer Keswani
+ */
+public class AlphabetTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final String UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    /** Check that ALPHA holds exactly the characters of CHARS, in order,
+     *  and none of the other characters up to LIMIT.  TESTID is used in
+     *  error messages. */
+    private void checkAlphabet(String testId, Alphabet alpha, String chars,
+                               char limit) {
+        assertEquals(testId + " (wrong size)", chars.length(), alpha.size());
+        for (int i = 0; i < chars.length(); i += 1) {
+            char c = chars.charAt(i);
+            assertEquals(testId + " (wrong index of " + c + ")",
+                         i, alpha.toInt(c));
+            assertEquals(testId + " (wrong character " + i + ")",
+                         c, alpha.toChar(i));
+        }
+        for (char c = 0; c < limit; c += 1) {
+            boolean member = chars.indexOf(c) >= 0;
+            assertEquals(testId + " (wrong membership of " + (int) c + ")",
+                         member, alpha.contains(c));
+            if (!member) {
+                assertEquals(testId + " (" + (int) c + " has an index)",
+                             -1, alpha.toInt(c));
+            }
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testUpper() {
+        checkAlphabet("upper", new Alphabet(UPPER), UPPER, '\u0200');
+        checkAlphabet("default", new Alphabet(), UPPER, '\u0200');
+        checkAlphabet("empty", new Alphabet(""), "", '\u0200');
+    }
+
+    @Test
+    public void testNonLatin() {
+        String greek = "\u0391\u0392\u0393\u0394\u0395";
+        checkAlphabet("greek", new Alphabet(greek), greek, '\u0400');
+        String mixed = "A\u00E9B\u0416\u4E2D0\u00FF\uFFFF\u0000";
+        checkAlphabet("mixed", new Alphabet(mixed), mixed, '\u0500');
+        assertEquals(6, new Alphabet(mixed).toInt('\u00FF'));
+        assertEquals(-1, new Alphabet(mixed).toInt('\u4E2E'));
+        assertEquals(-1, new Alphabet(greek).toInt('A'));
+    }
+
+    @Test
+    public void testCollisions() {
+        Random random = new Random(61);
+        for (int trial = 0; trial < 500; trial += 1) {
+            StringBuilder chars = new StringBuilder();
+            while (chars.length() < 4) {
+                char c = (char) ('\u0100' + random.nextInt(64));
+                if (chars.indexOf(String.valueOf(c)) < 0) {
+                    chars.append(c);
+                }
+            }
+            checkAlphabet("trial " + trial, new Alphabet(chars.toString()),
+                          chars.toString(), '\u0140');
+        }
+    }
+
+    @Test
+    public void testLarge() {
+        StringBuilder chars = new StringBuilder();
+        for (char c = '\u4E00'; c < '\u6000'; c += 3) {
+            chars.append(c);
+        }
+        chars.append(UPPER);
+        Alphabet alpha = new Alphabet(chars.toString());
+        assertEquals(chars.length(), alpha.size());
+        for (int i = 0; i < chars.length(); i += 1) {
+            assertEquals(i, alpha.toInt(chars.charAt(i)));
+        }
+        assertEquals(-1, alpha.toInt('\u4E01'));
+        assertEquals(-1, alpha.toInt('a'));
+        assertFalse(alpha.contains('\u6000'));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testDuplicateLatin() {
+        new Alphabet("ABCA");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testDuplicateNonLatin() {
+        new Alphabet("\u0391\u0392A\u0391");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testSurrogatePair() {
+        new Alphabet("AB\uD83D\uDE00C");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testUnpairedSurrogate() {
+        new Alphabet("A\uDC00B");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testDuplicateColliding() {
+        StringBuilder chars = new StringBuilder();
+        for (char c = '\u0100'; c < '\u0140'; c += 1) {
+            chars.append(c);
+        }
+        new Alphabet(chars.append('\u013F').toString());
+    }
+}
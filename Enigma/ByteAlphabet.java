@@ -0,0 +1,78 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** An alphabet of the SIZE byte values, for converting binary files.  The
+ *  byte B has index B, and is represented by the character FIRST + B, so
+ *  that no byte is taken for the whitespace or parentheses of cycle
+ *  notation and each lookup is an addition.  In configuration and
+ *  settings lines, each byte is written as two hexadecimal digits.
+ *  @author Sameer Keswani
+ */
+class ByteAlphabet extends Alphabet {
+
+    /** Number of byte values. */
+    static final int SIZE = 256;
+
+    /** The character representing byte 0. */
+    static final char FIRST = '\u0100';
+
+    /** The alphabet of all byte values. */
+    ByteAlphabet() {
+        super(characters());
+    }
+
+    /** Returns the characters representing the bytes 0 to SIZE - 1. */
+    private static String characters() {
+        StringBuilder result = new StringBuilder(SIZE);
+        for (int b = 0; b < SIZE; b += 1) {
+            result.append((char) (FIRST + b));
+        }
+        return result.toString();
+    }
+
+    @Override
+    public int size() {
+        return SIZE;
+    }
+
+    @Override
+    public boolean contains(char ch) {
+        return ch >= FIRST && ch < FIRST + SIZE;
+    }
+
+    @Override
+    public char toChar(int index) {
+        return (char) (FIRST + index);
+    }
+
+    @Override
+    public int toInt(char ch) {
+        return contains(ch) ? ch - FIRST : -1;
+    }
+
+    /** Returns TEXT with each pair of hexadecimal digits replaced by the
+     *  character representing that byte.  Whitespace and parentheses are
+     *  kept. */
+    @Override
+    String parse(String text) {
+        StringBuilder result = new StringBuilder(text.length() / 2);
+        for (int i = 0; i < text.length(); i += 1) {
+            char ch = text.charAt(i);
+            if (ch == '(' || ch == ')' || Character.isWhitespace(ch)) {
+                result.append(ch);
+                continue;
+            }
+            int high = Character.digit(ch, 16);
+            int low = i + 1 < text.length()
+                ? Character.digit(text.charAt(i + 1), 16) : -1;
+            if (high < 0 || low < 0) {
+                throw error("bytes must be pairs of hex digits in %s", text);
+            }
+            result.append(toChar(high * 16 + low));
+            i += 1;
+        }
+        return result.toString();
+    }
+
+}
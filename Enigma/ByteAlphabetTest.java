@@ -0,0 +1,142 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/** The suite of all JUnit tests for the ByteAlphabet class and the
+ *  conversion of binary files.
+ *  @author Sameer Keswani
+ */
+public class ByteAlphabetTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private ByteAlphabet alpha = new ByteAlphabet();
+
+    /** Returns the cycle of BYTES, written in hex. */
+    private String cycle(int... bytes) {
+        StringBuilder result = new StringBuilder("(");
+        for (int b : bytes) {
+            result.append(String.format("%02x", b));
+        }
+        return result.append(')').toString();
+    }
+
+    /** Returns the byte values in an order chosen with RANDOM. */
+    private int[] shuffled(Random random) {
+        int[] result = new int[ByteAlphabet.SIZE];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = i;
+        }
+        for (int i = result.length - 1; i > 0; i -= 1) {
+            int j = random.nextInt(i + 1);
+            int tmp = result[i];
+            result[i] = result[j];
+            result[j] = tmp;
+        }
+        return result;
+    }
+
+    /** Returns a byte configuration of a reflector R and two moving
+     *  rotors M1 and M2 with random wirings. */
+    private String config() {
+        Random random = new Random(61);
+        StringBuilder result = new StringBuilder("3 2\n R R");
+        int[] pairs = shuffled(random);
+        for (int i = 0; i < pairs.length; i += 2) {
+            result.append(' ').append(cycle(pairs[i], pairs[i + 1]));
+        }
+        result.append("\n M1 M80 ").append(cycle(shuffled(random)));
+        result.append("\n M2 M0fff ").append(cycle(shuffled(random)));
+        return result.append('\n').toString();
+    }
+
+    /** Converts the file INPUT into the file OUTPUT with the byte
+     *  configuration in the file CONFIG and settings SETTINGS. */
+    private void convert(File config, String settings, File input,
+                         File output) {
+        Main.main(Main.BYTES_OPTION, config.getPath(), settings,
+                  input.getPath(), output.getPath());
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testLookup() {
+        assertEquals(256, alpha.size());
+        for (int b = 0; b < 256; b += 1) {
+            assertEquals(b, alpha.toInt(alpha.toChar(b)));
+            assertTrue(alpha.contains(alpha.toChar(b)));
+        }
+        assertEquals(-1, alpha.toInt('A'));
+        assertEquals(-1, alpha.toInt('\u00FF'));
+        assertEquals(-1, alpha.toInt('\u0200'));
+        assertFalse(alpha.contains('('));
+    }
+
+    @Test
+    public void testParse() {
+        assertEquals("", alpha.parse(""));
+        assertEquals("" + alpha.toChar(0x00) + alpha.toChar(0xff)
+                     + alpha.toChar(0xab),
+                     alpha.parse("00ffAB"));
+        assertEquals("(" + alpha.toChar(0x12) + alpha.toChar(0x34) + ") ("
+                     + alpha.toChar(0xc0) + ")",
+                     alpha.parse("(1234) (c0)"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testParseOddDigits() {
+        alpha.parse("abc");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testParseNotHex() {
+        alpha.parse("0g");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testParseSplitPair() {
+        alpha.parse("(0) (1)");
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        File dir = Files.createTempDirectory("enigma").toFile();
+        File config = new File(dir, "bytes.conf");
+        File plain = new File(dir, "plain");
+        File cipher = new File(dir, "cipher");
+        File decoded = new File(dir, "decoded");
+        try {
+            Files.write(config.toPath(), config().getBytes("US-ASCII"));
+            byte[] contents = new byte[5000];
+            new Random(62).nextBytes(contents);
+            Files.write(plain.toPath(), contents);
+            String settings = "* R M1 M2 00fe (4142) (00ff)";
+            convert(config, settings, plain, cipher);
+            convert(config, settings, cipher, decoded);
+            byte[] encrypted = Files.readAllBytes(cipher.toPath());
+            assertEquals(contents.length, encrypted.length);
+            assertFalse(Arrays.equals(contents, encrypted));
+            assertArrayEquals(contents,
+                              Files.readAllBytes(decoded.toPath()));
+        } finally {
+            for (File file : new File[] { config, plain, cipher, decoded,
+                                          dir }) {
+                file.delete();
+            }
+        }
+    }
+}
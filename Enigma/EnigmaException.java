@@ -5,7 +5,7 @@ package enigma;
  *  exception, with the message being the error message to be printed.
  *  @author P. N. Hilfinger
  */
-class EnigmaException extends RuntimeException {
+public class EnigmaException extends RuntimeException {
 
     /** An exception whose getMessage() value is MSG. */
     EnigmaException(String msg) {
@@ -19,7 +19,7 @@ class EnigmaException extends RuntimeException {
      *  The use is thus 'throw error(...)', which tells the compiler that
      *  execution will terminate at that point, and avoid insistance on
      *  an explicit return in a value-returning function.)  */
-    static EnigmaException error(String msgFormat, Object... arguments) {
+    public static EnigmaException error(String msgFormat, Object... arguments) {
         return new EnigmaException(String.format(msgFormat, arguments));
     }
 
@@ -0,0 +1,61 @@
+package enigma;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import static enigma.EnigmaException.*;
+
+/** A writer of processed messages, which puts a space after every fifth
+ *  character of a line.  Characters are buffered by the underlying
+ *  writer, so writing a message costs time linear in its length.
+ *  @author Sameer Keswani
+ */
+class GroupedWriter {
+
+    /** Number of characters in each group. */
+    static final int GROUP_SIZE = 5;
+
+    /** A writer sending grouped characters to OUT. */
+    GroupedWriter(Writer out) {
+        _out = out;
+    }
+
+    /** Write C as the next character of the current line. */
+    void write(char c) {
+        try {
+            _out.write(c);
+            _inGroup += 1;
+            if (_inGroup == GROUP_SIZE) {
+                _out.write(' ');
+                _inGroup = 0;
+            }
+        } catch (IOException excp) {
+            throw error("could not write output");
+        }
+    }
+
+    /** End the current line. */
+    void newLine() {
+        try {
+            _out.write(System.lineSeparator());
+            _inGroup = 0;
+        } catch (IOException excp) {
+            throw error("could not write output");
+        }
+    }
+
+    /** Write any buffered output. */
+    void flush() {
+        try {
+            _out.flush();
+        } catch (IOException excp) {
+            throw error("could not write output");
+        }
+    }
+
+    /** Destination of grouped characters. */
+    private final Writer _out;
+
+    /** Number of characters written in the current group. */
+    private int _inGroup;
+}
@@ -1,21 +1,27 @@
 package enigma;
 
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
 
 import static enigma.EnigmaException.*;
 
-/** Class that represents a complete enigma machine.
+/** Class that represents a complete enigma machine.  The settings of
+ *  my rotors are kept by me, not by the rotors, which are immutable and
+ *  may be shared with other machines, so that machines made by copy() can
+ *  run independently on separate threads.
  *  @author Sameer Keswani
  */
-class Machine {
+public class Machine {
 
     /** A new Enigma machine with alphabet ALPHA, 1 < NUMROTORS rotor slots,
      *  and 0 <= PAWLS < NUMROTORS pawls.  ALLROTORS contains all the
      *  available rotors. */
     Machine(Alphabet alpha, int numRotors, int pawls,
-            ArrayList<Rotor> allRotors) {
+            Collection<Rotor> allRotors) {
         _alphabet = alpha;
         _numRotors = numRotors;
         _pawls = pawls;
@@ -30,21 +36,52 @@ class Machine {
 
     }
 
+    /** Returns a new machine with my configuration, rotors, settings and
+     *  plugboard, whose state is independent of mine.  It shares my rotors
+     *  and my plugboard tables, so copying costs little more than copying
+     *  my settings. */
+    public Machine copy() {
+        Machine result = new Machine(_alphabet, _numRotors, _pawls,
+                                     _allRotors);
+        result._machineRotors = _machineRotors;
+        result._settings = _settings.clone();
+        result._plugboard = _plugboard;
+        result._entry = _entry;
+        result._exit = _exit;
+        result._tablesStale = _tablesStale;
+        result._stepper = _stepper;
+        return result;
+    }
+
+    /** Return my alphabet. */
+    public Alphabet alphabet() {
+        return _alphabet;
+    }
+
     /** Return the number of rotor slots I have. */
-    int numRotors() {
+    public int numRotors() {
         return _numRotors;
     }
 
     /** Return the number pawls (and thus rotating rotors) I have. */
-    int numPawls() {
+    public int numPawls() {
         return _pawls;
     }
 
+    /** Return all the rotors available to me. */
+    public Collection<Rotor> rotors() {
+        return _allRotors;
+    }
+
     /** Set my rotor slots to the rotors named ROTORS from my set of
      *  available rotors (ROTORS[0] names the reflector).
      *  Initially, all rotors are set at their 0 setting. */
-    void insertRotors(String[] rotors) {
+    public void insertRotors(String[] rotors) {
         _machineRotors = new ArrayList<Rotor>();
+        _settings = new int[rotors.length];
+        _coreStale = true;
+        _tablesStale = true;
+        _stepper = null;
         for (String name : rotors) {
             for (Rotor rotor : _allRotors) {
                 if (rotor.name().equals(name)) {
@@ -71,77 +108,349 @@ class Machine {
     /** Set my rotors according to SETTING, which must be a string of
      *  numRotors()-1 characters in my alphabet. The first letter refers
      *  to the leftmost rotor setting (not counting the reflector).  */
-    void setRotors(String setting) {
+    public void setRotors(String setting) {
         if (setting.length() != numRotors() - 1) {
             throw new EnigmaException("Setting must have a "
                     + "length of numRotors()-1");
         }
 
         for (int i = 1; i < _numRotors; i += 1) {
-            Rotor modifiedRotor = _machineRotors.get(i);
-            modifiedRotor.set(setting.charAt(i - 1));
-            _machineRotors.set(i, modifiedRotor);
+            int posn = _machineRotors.get(i).setting(setting.charAt(i - 1));
+            _coreStale |= i < _numRotors - 1 && posn != _settings[i];
+            _settings[i] = posn;
         }
 
     }
 
-    /** Set the plugboard to PLUGBOARD. */
-    void setPlugboard(Permutation plugboard) {
-        _plugboard = plugboard;
+    /** Return the settings of my rotors, leftmost (the reflector)
+     *  first. */
+    public int[] settings() {
+        return _settings.clone();
+    }
 
+    /** Set my rotors to SETTINGS, as returned by settings(). */
+    public void setSettings(int[] settings) {
+        for (int i = 0; i < _numRotors; i += 1) {
+            int posn = _machineRotors.get(i).setting(settings[i]);
+            _coreStale |= i < _numRotors - 1 && posn != _settings[i];
+            _settings[i] = posn;
+        }
+    }
+
+    /** Set the plugboard to PLUGBOARD. */
+    public void setPlugboard(Permutation plugboard) {
+        if (plugboard != _plugboard) {
+            _plugboard = plugboard;
+            _tablesStale = true;
+        }
     }
 
     /** Returns the result of converting the input character C (as an
      *  index in the range 0..alphabet size - 1), after first advancing
-     *  the machine. */
-    int convert(int c) {
-        int index = _numRotors - 1;
-        boolean rotateNext = false;
-
-        while (_machineRotors.get(index).rotates()) {
-            Rotor currentRotor = _machineRotors.get(index);
-            Rotor previousRotor = _machineRotors.get(index - 1);
-            if (currentRotor.rotates()) {
-                if (currentRotor.atNotch() && previousRotor.rotates()) {
-                    currentRotor.advance();
-                    rotateNext = true;
-                } else if (rotateNext) {
-                    currentRotor.advance();
-                    rotateNext = false;
-                } else if (index == _numRotors - 1) {
-                    currentRotor.advance();
-                }
+     *  the machine.  Only the rightmost rotor moves on most keypresses,
+     *  so the path through the others and back is kept as the table
+     *  _core, rebuilt only when one of them moves.  My rotors must be set
+     *  through me, not directly, for that table to be kept current. */
+    public int convert(int c) {
+        advance();
+        return convert(c, _settings[_numRotors - 1], core());
+    }
+
+    /** Advance my rotors as one keypress would. */
+    public void advance() {
+        _coreStale |= stepper().step(_settings);
+    }
+
+    /** Advance my rotors as K keypresses would, in time independent of K
+     *  unless a rotor has adjacent notches; see Stepper. */
+    public void advance(long k) {
+        if (k > 0) {
+            int[] settings = settings();
+            stepper().advance(settings, k);
+            setSettings(settings);
+        }
+    }
+
+    /** Returns the Stepper for my rotors, making it if need be. */
+    private Stepper stepper() {
+        if (_stepper == null) {
+            _stepper = new Stepper(_machineRotors);
+        }
+        return _stepper;
+    }
+
+    /** Stores in RESULT the conversion of each character (as an index)
+     *  by my plugboard and rotors at their current settings, without
+     *  advancing them. */
+    public void mapping(int[] result) {
+        int fast = _settings[_numRotors - 1];
+        int[] core = core();
+        for (int c = 0; c < result.length; c += 1) {
+            result[c] = convert(c, fast, core);
+        }
+    }
+
+    /** Returns _core, first rebuilding it and the plugboard tables if
+     *  they are out of date. */
+    private int[] core() {
+        if (_coreStale) {
+            _core = compose(_settings, _core);
+            _coreStale = false;
+        }
+        tabulate();
+        return _core;
+    }
+
+    /** Returns the result of converting the input character C when my
+     *  rightmost rotor has setting FAST and the others compose to CORE. */
+    private int convert(int c, int fast, int[] core) {
+        if (_entry != null) {
+            return _exit[fast][core[_entry[fast][c]]];
+        }
+        Rotor rotor = _machineRotors.get(_numRotors - 1);
+        int back = core[rotor.convertForward(_plugboard.permute(c), fast)];
+        if (_numRotors > 1) {
+            back = rotor.convertBackward(back, fast);
+        }
+        return _plugboard.invert(back);
+    }
+
+    /** Returns the composite permutation of all my rotors but the
+     *  rightmost, at SETTINGS: the contact at which a signal entering them
+     *  from the rightmost rotor at each contact returns to it, having
+     *  passed through the reflector.  Stores it in RESULT unless that is
+     *  null. */
+    private int[] compose(int[] settings, int[] result) {
+        int size = _alphabet.size();
+        if (result == null) {
+            result = new int[size];
+        }
+        for (int c = 0; c < size; c += 1) {
+            int converted = c;
+            for (int i = _numRotors - 2; i > -1; i -= 1) {
+                converted = _machineRotors.get(i).convertForward(converted,
+                                                                 settings[i]);
+            }
+            for (int i = 1; i < _numRotors - 1; i += 1) {
+                converted = _machineRotors.get(i).convertBackward(converted,
+                                                                  settings[i]);
             }
-            index -= 1;
+            result[c] = converted;
         }
+        return result;
+    }
 
-        int converted = _plugboard.permute(c);
+    /** Builds _entry and _exit for my plugboard and rightmost rotor, if
+     *  they are not already built.  They have a row for each setting, so
+     *  for alphabets of more than Rotor.MAX_TABULATED characters they are
+     *  left null and convert works through the rotor and plugboard. */
+    private void tabulate() {
+        if (!_tablesStale) {
+            return;
+        }
+        _tablesStale = false;
+        _entry = _exit = null;
+        int size = _alphabet.size();
+        if (size > Rotor.MAX_TABULATED) {
+            return;
+        }
+        Rotor fast = _machineRotors.get(_numRotors - 1);
+        _entry = new int[size][size];
+        _exit = new int[size][size];
+        for (int s = 0; s < size; s += 1) {
+            for (int c = 0; c < size; c += 1) {
+                _entry[s][c] = fast.convertForward(_plugboard.permute(c), s);
+                int back = _numRotors > 1 ? fast.convertBackward(c, s) : c;
+                _exit[s][c] = _plugboard.invert(back);
+            }
+        }
+    }
 
-        for (int i = _numRotors - 1; i > -1; i -= 1) {
-            converted = _machineRotors.get(i).convertForward(converted);
+    /** Replaces each input character in MSG (as an index in the range
+     *  0..alphabet size - 1) by its conversion, leaving the result and the
+     *  state of the rotors exactly as successive calls of convert(int)
+     *  would.  MSG is divided into chunks of CHUNK_SIZE characters, which
+     *  are converted in parallel in the common fork-join pool, each
+     *  starting from the rotor settings found for it by a Stepper. */
+    void convertParallel(int[] msg) {
+        if (msg.length < 2 * CHUNK_SIZE) {
+            for (int i = 0; i < msg.length; i += 1) {
+                msg[i] = convert(msg[i]);
+            }
+            return;
         }
-        for (int i = 1; i < _numRotors; i += 1) {
-            converted = _machineRotors.get(i).convertBackward(converted);
+        Stepper stepper = stepper();
+        tabulate();
+        int[][] starts = new int[(msg.length - 1) / CHUNK_SIZE + 1][];
+        starts[0] = settings();
+        for (int i = 1; i < starts.length; i += 1) {
+            starts[i] = starts[i - 1].clone();
+            stepper.advance(starts[i], CHUNK_SIZE);
+        }
+        int[] end = starts[starts.length - 1].clone();
+        stepper.advance(end, msg.length - (long) (starts.length - 1)
+                        * CHUNK_SIZE);
+        new ConvertTask(msg, starts, stepper, 0, starts.length).invoke();
+        setSettings(end);
+    }
+
+    /** Converts the chunks of a message numbered LO to HI - 1, splitting
+     *  them among tasks until each has only one. */
+    private class ConvertTask extends RecursiveAction {
+
+        /** A task converting chunks LO to HI - 1 of MSG in place, chunk
+         *  K starting with the rotors at STARTS[K] and stepping them with
+         *  STEPPER. */
+        ConvertTask(int[] msg, int[][] starts, Stepper stepper,
+                    int lo, int hi) {
+            _msg = msg;
+            _starts = starts;
+            _stepper = stepper;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > 1) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new ConvertTask(_msg, _starts, _stepper, _lo, mid),
+                          new ConvertTask(_msg, _starts, _stepper, mid, _hi));
+                return;
+            }
+            int[] settings = _starts[_lo];
+            int fast = _numRotors - 1;
+            int[] core = null;
+            int end = (int) Math.min(_msg.length, (long) _hi * CHUNK_SIZE);
+            for (int i = _lo * CHUNK_SIZE; i < end; i += 1) {
+                if (_stepper.step(settings) || core == null) {
+                    core = compose(settings, core);
+                }
+                _msg[i] = convert(_msg[i], settings[fast], core);
+            }
         }
 
-        converted = _plugboard.invert(converted);
+        /** The message converted. */
+        private final int[] _msg;
+
+        /** The rotor settings at the start of each chunk. */
+        private final int[][] _starts;
 
+        /** Steps the rotor settings. */
+        private final Stepper _stepper;
 
+        /** The first chunk converted. */
+        private final int _lo;
 
+        /** One past the last chunk converted. */
+        private final int _hi;
+    }
 
-        return converted;
+    /** Writes the encoding/decoding of each of LINES to OUT, ending each
+     *  with a line break, exactly as successive calls of convert(line,
+     *  OUT) would.  If they have at least PARALLEL_THRESHOLD characters,
+     *  all in my alphabet, they are converted by convertParallel. */
+    void convert(List<String> lines, GroupedWriter out) {
+        int[] msg = toIndices(lines);
+        if (msg == null) {
+            for (String line : lines) {
+                convert(line, out);
+                out.newLine();
+            }
+            return;
+        }
+        convertParallel(msg);
+        int k = 0;
+        for (String line : lines) {
+            for (int i = 0; i < line.length(); i += 1) {
+                if (!Character.isWhitespace(line.charAt(i))) {
+                    out.write(_alphabet.toChar(msg[k]));
+                    k += 1;
+                }
+            }
+            out.newLine();
+        }
+    }
+
+    /** Returns the indices in my alphabet of the characters of LINES,
+     *  ignoring whitespace, or null if there are fewer than
+     *  PARALLEL_THRESHOLD of them or one is not in my alphabet. */
+    private int[] toIndices(List<String> lines) {
+        int count = 0;
+        for (String line : lines) {
+            for (int i = 0; i < line.length(); i += 1) {
+                char ch = line.charAt(i);
+                if (!Character.isWhitespace(ch)) {
+                    if (!_alphabet.contains(ch)) {
+                        return null;
+                    }
+                    count += 1;
+                }
+            }
+        }
+        if (count < PARALLEL_THRESHOLD) {
+            return null;
+        }
+        int[] result = new int[count];
+        int k = 0;
+        for (String line : lines) {
+            for (int i = 0; i < line.length(); i += 1) {
+                char ch = line.charAt(i);
+                if (!Character.isWhitespace(ch)) {
+                    result[k] = _alphabet.toInt(ch);
+                    k += 1;
+                }
+            }
+        }
+        return result;
     }
 
     /** Returns the encoding/decoding of MSG, updating the state of
-     *  the rotors accordingly. */
-    String convert(String msg) {
-        msg = msg.replaceAll("\\s", "");
-        String translated = "";
+     *  the rotors accordingly.  Whitespace in MSG is ignored. */
+    public String convert(String msg) {
+        StringBuilder translated = new StringBuilder(msg.length());
         for (int i = 0; i < msg.length(); i += 1) {
-            int converted = convert(_alphabet.toInt(msg.charAt(i)));
-            translated += _alphabet.toChar(converted);
+            char ch = msg.charAt(i);
+            if (!Character.isWhitespace(ch)) {
+                translated.append(convert(ch));
+            }
+        }
+        return translated.toString();
+    }
+
+    /** Writes the encoding/decoding of MSG to OUT in one pass, ignoring
+     *  whitespace in MSG and updating the state of the rotors
+     *  accordingly. */
+    void convert(CharSequence msg, GroupedWriter out) {
+        for (int i = 0; i < msg.length(); i += 1) {
+            char ch = msg.charAt(i);
+            if (!Character.isWhitespace(ch)) {
+                out.write(convert(ch));
+            }
+        }
+    }
+
+    /** Writes the encoding/decoding of the bytes remaining in IN to OUT,
+     *  updating the state of the rotors accordingly.  Byte B is taken as
+     *  the character with index B, so my alphabet must have
+     *  ByteAlphabet.SIZE characters. */
+    void convert(ByteBuffer in, ByteBuffer out) {
+        if (_alphabet.size() != ByteAlphabet.SIZE) {
+            throw error("bytes need an alphabet of %d characters",
+                        ByteAlphabet.SIZE);
+        }
+        while (in.hasRemaining()) {
+            out.put((byte) convert(in.get() & 0xff));
+        }
+    }
+
+    /** Returns the encoding/decoding of the character CH, after first
+     *  advancing the machine. */
+    char convert(char ch) {
+        if (!_alphabet.contains(ch)) {
+            throw error("character %c is not in the alphabet", ch);
         }
-        return translated;
+        return _alphabet.toChar(convert(_alphabet.toInt(ch)));
     }
 
     /** Checks to make sure the rotors are in a valid orde. */
@@ -165,6 +474,14 @@ class Machine {
 
     }
 
+    /** Number of characters converted by each task of
+     *  convertParallel. */
+    static final int CHUNK_SIZE = 1 << 16;
+
+    /** Least number of characters that convert(List, GroupedWriter)
+     *  converts in parallel. */
+    static final int PARALLEL_THRESHOLD = 1 << 20;
+
     /** Common alphabet of my rotors. */
     private final Alphabet _alphabet;
 
@@ -177,9 +494,37 @@ class Machine {
     /** Collection of all possible rotors to be chosen from. */
     private Collection<Rotor> _allRotors;
 
-    /**Rotors being used by machine. */
+    /**Rotors being used by machine.  Never modified once inserted, so
+     * that copies may share it. */
     private ArrayList<Rotor> _machineRotors = new ArrayList<Rotor>();
 
+    /** The setting of each of my rotors, leftmost first. */
+    private int[] _settings = new int[0];
+
     /**The plugboard permutation. */
     private Permutation _plugboard;
+
+    /** The composite permutation of my rotors but the rightmost, as
+     *  returned by compose, for their current settings, unless
+     *  _coreStale. */
+    private int[] _core;
+
+    /** True iff _core must be rebuilt. */
+    private boolean _coreStale = true;
+
+    /** _entry[s][c] is the contact at which input character C leaves the
+     *  plugboard and then my rightmost rotor at setting S, or _entry is
+     *  null if my alphabet is too large to tabulate. */
+    private int[][] _entry;
+
+    /** _exit[s][c] is the output character for a signal that returns to
+     *  my rightmost rotor at setting S at contact C. */
+    private int[][] _exit;
+
+    /** True iff _entry and _exit must be rebuilt. */
+    private boolean _tablesStale = true;
+
+    /** The stepping of my rotors, or null if not yet made for the rotors
+     *  last inserted.  It is immutable, so copies share it. */
+    private Stepper _stepper;
 }
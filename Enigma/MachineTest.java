@@ -0,0 +1,155 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/** The suite of all JUnit tests for the Machine class.
+ *  @author Sameer Keswani
+ */
+public class MachineTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final String UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    /** Returns the machine B Beta III IV I of testing/correct/default.conf,
+     *  with rotor I notched at FASTNOTCHES, its rotors set to SETTING and
+     *  a five-pair plugboard. */
+    private Machine machine(String fastNotches, String setting) {
+        Alphabet alpha = new Alphabet(UPPER);
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        rotors.add(new Reflector("B", new Permutation(
+            "(AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP) (RX) (SZ) (TV)",
+            alpha)));
+        rotors.add(new FixedRotor("Beta", new Permutation(
+            "(ALBEVFCYODJWUGNMQTZSKPR) (HIX)", alpha)));
+        rotors.add(new MovingRotor("III", new Permutation(
+            "(ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)", alpha), "V"));
+        rotors.add(new MovingRotor("IV", new Permutation(
+            "(AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)", alpha), "J"));
+        rotors.add(new MovingRotor("I", new Permutation(
+            "(AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)", alpha),
+            fastNotches));
+        Machine machine = new Machine(alpha, 5, 3, rotors);
+        machine.insertRotors(new String[] { "B", "Beta", "III", "IV", "I" });
+        machine.setRotors(setting);
+        machine.setPlugboard(new Permutation("(HQ) (EX) (IP) (TR) (BY)",
+                                             alpha));
+        return machine;
+    }
+
+    /** Returns LENGTH random character indices. */
+    private int[] message(int length) {
+        Random random = new Random(61);
+        int[] result = new int[length];
+        for (int i = 0; i < length; i += 1) {
+            result[i] = random.nextInt(UPPER.length());
+        }
+        return result;
+    }
+
+    /** Check that converting a message of three and a half chunks with
+     *  convertParallel on a machine with rotor I notched at FASTNOTCHES
+     *  and set to SETTING gives the same characters and final settings as
+     *  converting it one character at a time.  TESTID is used in error
+     *  messages. */
+    private void checkParallel(String testId, String fastNotches,
+                               String setting) {
+        int[] msg = message(3 * Machine.CHUNK_SIZE + Machine.CHUNK_SIZE / 2);
+        Machine sequential = machine(fastNotches, setting);
+        int[] expected = new int[msg.length];
+        for (int i = 0; i < msg.length; i += 1) {
+            expected[i] = sequential.convert(msg[i]);
+        }
+        Machine parallel = machine(fastNotches, setting);
+        int[] actual = msg.clone();
+        parallel.convertParallel(actual);
+        assertArrayEquals(testId + " (wrong conversion)", expected, actual);
+        assertArrayEquals(testId + " (wrong final settings)",
+                          sequential.settings(), parallel.settings());
+    }
+
+    /** Returns the settings of MACHINE, not counting the reflector, as
+     *  letters. */
+    private String letters(Machine machine) {
+        StringBuilder result = new StringBuilder();
+        int[] settings = machine.settings();
+        for (int i = 1; i < settings.length; i += 1) {
+            result.append(UPPER.charAt(settings[i]));
+        }
+        return result.toString();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testParallelStartingAtDoubleStep() {
+        Machine machine = machine("Q", "AAOB");
+        machine.advance(Machine.CHUNK_SIZE);
+        assertEquals("IV waits at its notch", "AWJR", letters(machine));
+        checkParallel("double step", "Q", "AAOB");
+    }
+
+    @Test
+    public void testParallelStartingAtNotch() {
+        Machine machine = machine("Q", "AAAA");
+        machine.advance(Machine.CHUNK_SIZE);
+        assertEquals("I is at its notch", "AXVQ", letters(machine));
+        checkParallel("notch", "Q", "AAAA");
+    }
+
+    @Test
+    public void testParallelWithAdjacentNotches() {
+        checkParallel("adjacent notches", "QRZ", "AAIZ");
+    }
+
+    @Test
+    public void testCopiesAreIndependent() {
+        int[] msg = message(500);
+        Machine original = machine("Q", "AAOB");
+        Machine changed = original.copy();
+        Machine kept = original.copy();
+        changed.setRotors("ZZZZ");
+        changed.setPlugboard(new Permutation("(AZ) (BY)",
+                                             changed.alphabet()));
+        changed.convert(msg[0]);
+        Machine expected = machine("Q", "ZZZZ");
+        expected.setPlugboard(new Permutation("(AZ) (BY)",
+                                              expected.alphabet()));
+        expected.convert(msg[0]);
+        Machine fresh = machine("Q", "AAOB");
+        assertEquals("AAOB", letters(original));
+        assertEquals("AAOB", letters(kept));
+        for (int i = 1; i < msg.length; i += 1) {
+            int c = fresh.convert(msg[i]);
+            assertEquals("original at " + i, c, original.convert(msg[i]));
+            assertEquals("kept copy at " + i, c, kept.convert(msg[i]));
+            assertEquals("changed copy at " + i, expected.convert(msg[i]),
+                         changed.convert(msg[i]));
+        }
+    }
+
+    @Test
+    public void testAdvanceMatchesConvert() {
+        Machine stepped = machine("Q", "AAOB");
+        Machine jumped = machine("Q", "AAOB");
+        for (int k = 1; k < 2000; k += 1) {
+            stepped.convert(0);
+            jumped.advance(1);
+            assertArrayEquals("after " + k + " keypresses",
+                              stepped.settings(), jumped.settings());
+        }
+        jumped = machine("Q", "AAOB");
+        jumped.advance(1999);
+        assertArrayEquals("one jump", stepped.settings(), jumped.settings());
+    }
+}
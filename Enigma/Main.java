@@ -1,14 +1,23 @@
 package enigma;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintStream;
 
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+
 import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
 
 import static enigma.EnigmaException.*;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.*;
 
 /** Enigma simulator.
  *  @author Sameer Keswani
@@ -23,7 +32,14 @@ public final class Main {
      *  input.  ARGS[2] is optional; when present, it names an output
      *  file for processed messages.  Otherwise, output goes to the
      *  standard output. Exits normally if there are no errors in the input;
-     *  otherwise with code 1. */
+     *  otherwise with code 1.
+     *
+     *  Alternatively, ARGS may be BYTES_OPTION CONFIG SETTINGS INPUT
+     *  OUTPUT, to convert the file named INPUT, byte for byte, into the
+     *  file named OUTPUT.  The machine has a ByteAlphabet, and CONFIG is a
+     *  configuration file without the alphabet line.  SETTINGS is a
+     *  settings line.  In both, bytes are written as pairs of hexadecimal
+     *  digits. */
     public static void main(String... args) {
         try {
             new Main(args).process();
@@ -36,6 +52,17 @@ public final class Main {
 
     /** Check ARGS and open the necessary files (see comment on main). */
     Main(String[] args) {
+        if (args.length > 0 && args[0].equals(BYTES_OPTION)) {
+            if (args.length != 5) {
+                throw error("usage: java enigma.Main %s CONFIG SETTINGS "
+                            + "INPUT OUTPUT", BYTES_OPTION);
+            }
+            _config = getInput(args[1]);
+            _byteSettings = args[2];
+            _inputName = args[3];
+            _outputName = args[4];
+            return;
+        }
         if (args.length < 1 || args.length > 3) {
             throw error("Only 1, 2, or 3 command-line arguments allowed");
         }
@@ -53,6 +80,8 @@ public final class Main {
         } else {
             _output = System.out;
         }
+        _grouped = new GroupedWriter(new BufferedWriter(
+                new OutputStreamWriter(_output)));
     }
 
     /** Return a Scanner reading from the file named NAME. */
@@ -77,72 +106,140 @@ public final class Main {
      *  file _config and apply it to the messages in _input, sending the
      *  results to _output. */
     private void process() {
+        if (_byteSettings != null) {
+            Machine machine = readConfig();
+            setUp(machine, _byteSettings);
+            convertFile(machine);
+            return;
+        }
         if (!_input.hasNext()) {
             throw error("Need to provide input.");
         }
         Machine machine = readConfig();
-        boolean hasAsterisk = false;
-        while (_input.hasNextLine()) {
-            String line = _input.nextLine();
-            if (line.isEmpty()) {
-                printMessageLine(line);
-            } else if (line.charAt(0) == '*') {
-                hasAsterisk = true;
-                setUp(machine, line);
-            } else {
-                if (!hasAsterisk) {
-                    throw error("Need * at first line");
-                } else {
-                    printMessageLine(machine.convert(line));
-                }
+        try {
+            while (_input.hasNextLine()) {
+                processLine(machine, _input.nextLine());
+            }
+            convertPending(machine);
+        } finally {
+            _grouped.flush();
+        }
+    }
+
+    /** Apply the input LINE to MACHINE: a settings line beginning with '*'
+     *  sets it up, and any other line is a message to convert.  Message
+     *  lines are collected into blocks of up to BLOCK_SIZE characters, so
+     *  that the machine can convert long messages in parallel. */
+    private void processLine(Machine machine, String line) {
+        if (line.isEmpty()) {
+            _pending.add(line);
+        } else if (line.charAt(0) == '*') {
+            convertPending(machine);
+            _hasSettings = true;
+            setUp(machine, line);
+        } else if (!_hasSettings) {
+            convertPending(machine);
+            throw error("Need * at first line");
+        } else {
+            _pending.add(line);
+            _pendingSize += line.length();
+            if (_pendingSize >= BLOCK_SIZE) {
+                convertPending(machine);
             }
+        }
+    }
 
+    /** Convert the file named _inputName into the file named _outputName
+     *  with MACHINE, mapping both into memory MAP_SIZE bytes at a time. */
+    private void convertFile(Machine machine) {
+        try (FileChannel in = FileChannel.open(Paths.get(_inputName), READ);
+             FileChannel out = FileChannel.open(Paths.get(_outputName),
+                 READ, WRITE, CREATE, TRUNCATE_EXISTING)) {
+            long size = in.size();
+            for (long posn = 0; posn < size; posn += MAP_SIZE) {
+                long length = Math.min(MAP_SIZE, size - posn);
+                machine.convert(in.map(READ_ONLY, posn, length),
+                                out.map(READ_WRITE, posn, length));
+            }
+        } catch (IOException excp) {
+            throw error("could not convert %s to %s", _inputName,
+                        _outputName);
         }
+    }
 
+    /** Convert the message lines collected so far with MACHINE. */
+    private void convertPending(Machine machine) {
+        machine.convert(_pending, _grouped);
+        _pending.clear();
+        _pendingSize = 0;
     }
 
     /** Return an Enigma machine configured from the contents of configuration
      *  file _config. */
     private Machine readConfig() {
+        Machine machine = _byteSettings == null ? readConfig(_config)
+            : readConfig(_config, new ByteAlphabet());
+        _alphabet = machine.alphabet();
+        _numRotors = machine.numRotors();
+        _numPawls = machine.numPawls();
+        _allRotors = new ArrayList<>(machine.rotors());
+        return machine;
+    }
+
+    /** Return an Enigma machine, with no rotors yet inserted, configured
+     *  from the configuration read from CONFIG. */
+    public static Machine readConfig(Scanner config) {
+        try {
+            return readConfig(config, new Alphabet(config.nextLine()));
+        } catch (NoSuchElementException excp) {
+            throw error("configuration file truncated");
+        }
+    }
+
+    /** Return an Enigma machine with alphabet ALPHABET, with no rotors yet
+     *  inserted, configured from the rest of the configuration read from
+     *  CONFIG, which follows the alphabet line. */
+    static Machine readConfig(Scanner config, Alphabet alphabet) {
         try {
-            _alphabet = new Alphabet(_config.nextLine());
-            _numRotors = _config.nextInt();
-            _numPawls = _config.nextInt();
-
-            _allRotors = new ArrayList<>();
-            while (_config.hasNext()) {
-                Rotor newRotor = readRotor();
-                _allRotors.add(newRotor);
+            int numRotors = config.nextInt();
+            int numPawls = config.nextInt();
+
+            ArrayList<Rotor> allRotors = new ArrayList<>();
+            while (config.hasNext()) {
+                Rotor newRotor = readRotor(config, alphabet);
+                allRotors.add(newRotor);
             }
-            for (Rotor rotor1 : _allRotors) {
-                for (Rotor rotor2 : _allRotors) {
+            for (Rotor rotor1 : allRotors) {
+                for (Rotor rotor2 : allRotors) {
                     if ((rotor1.name() == rotor2.name()) && rotor1 != rotor2) {
                         throw error("No duplicate rotors allowed in allRotors");
                     }
                 }
             }
-            return new Machine(_alphabet, _numRotors, _numPawls, _allRotors);
+            return new Machine(alphabet, numRotors, numPawls, allRotors);
         } catch (NoSuchElementException excp) {
             throw error("configuration file truncated");
         }
     }
 
-    /** Return a rotor, reading its description from _config. */
-    private Rotor readRotor() {
+    /** Return a rotor with alphabet ALPHABET, reading its description from
+     *  CONFIG. */
+    private static Rotor readRotor(Scanner config, Alphabet alphabet) {
         try {
-            String rotorName = _config.next();
+            String rotorName = config.next();
 
-            String rotorTypeAndNotch = _config.next();
+            String rotorTypeAndNotch = config.next();
             char rotorType = rotorTypeAndNotch.charAt(0);
-            String notches = rotorTypeAndNotch.substring(1);
+            String notches = alphabet.parse(rotorTypeAndNotch.substring(1));
 
             String permCycles = "";
 
-            while (_config.hasNext("\\(.*\\)")) {
-                permCycles += _config.next();
+            while (config.hasNext("\\(.*\\)")) {
+                permCycles += config.next();
             }
 
-            Permutation permutation = new Permutation(permCycles, _alphabet);
+            Permutation permutation =
+                new Permutation(alphabet.parse(permCycles), alphabet);
             Rotor rotor;
             if (rotorType == 'R') {
                 Reflector reflector = new Reflector(rotorName, permutation);
@@ -200,7 +297,7 @@ public final class Main {
             }
         }
         M.insertRotors(rotorNames);
-        String notches = setUp.get(M.numRotors());
+        String notches = _alphabet.parse(setUp.get(M.numRotors()));
         for (int i = 0; i < notches.length(); i += 1) {
             if (!_alphabet.contains(notches.charAt(i))) {
                 throw error("notches need to be in alphabet");
@@ -216,31 +313,21 @@ public final class Main {
         for (int i = M.numRotors() + 1; i < setUp.size(); i += 1) {
             plugboardSettings += setUp.get(i);
         }
-        M.setPlugboard(new Permutation(plugboardSettings, _alphabet));
+        M.setPlugboard(new Permutation(_alphabet.parse(plugboardSettings),
+                                       _alphabet));
 
         M.checkMachineRotors();
 
     }
 
-    /** Print MSG in groups of five (except that the last group may
-     *  have fewer letters). */
-    private void printMessageLine(String msg) {
-        msg.replaceAll("\\s", "");
-        int perGroup = 5;
-        for (int i = 0; i < msg.length(); i += 1) {
-            if (perGroup > -1) {
-                _output.print(msg.charAt(i));
-                perGroup -= 1;
-            }
-            if (perGroup == 0) {
-                perGroup = 5;
-                _output.print(' ');
-            }
-        }
-        _output.println();
+    /** Most characters of message lines converted together. */
+    static final int BLOCK_SIZE = 1 << 24;
 
+    /** First argument selecting the conversion of a binary file. */
+    static final String BYTES_OPTION = "--bytes";
 
-    }
+    /** Most bytes of a file mapped into memory at once. */
+    static final long MAP_SIZE = 1 << 26;
 
     /** Alphabet used in this machine. */
     private Alphabet _alphabet;
@@ -254,6 +341,28 @@ public final class Main {
     /** File for encoded/decoded messages. */
     private PrintStream _output;
 
+    /** Buffered writer of _output that groups message characters. */
+    private GroupedWriter _grouped;
+
+    /** True once a settings line has been processed. */
+    private boolean _hasSettings;
+
+    /** Message lines read but not yet converted. */
+    private final List<String> _pending = new ArrayList<>();
+
+    /** Total length of _pending. */
+    private int _pendingSize;
+
+    /** The settings line of a binary file conversion, or null if
+     *  converting messages. */
+    private String _byteSettings;
+
+    /** Name of the binary file converted. */
+    private String _inputName;
+
+    /** Name of the converted binary file written. */
+    private String _outputName;
+
     /** Number of pawls for current machine. */
     private int _numPawls;
 
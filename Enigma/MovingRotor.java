@@ -9,36 +9,30 @@ class MovingRotor extends Rotor {
 
     /** A rotor named NAME whose permutation in its default setting is
      *  PERM, and whose notches are at the positions indicated in NOTCHES.
-     *  The Rotor is initally in its 0 setting (first character of its
-     *  alphabet).
      */
     MovingRotor(String name, Permutation perm, String notches) {
         super(name, perm);
-        _notches = notches;
+        _notches = new boolean[size()];
+        for (int i = 0; i < notches.length(); i += 1) {
+            char ch = notches.charAt(i);
+            if (!alphabet().contains(ch)) {
+                throw error("notch %c is not in the alphabet", ch);
+            }
+            _notches[alphabet().toInt(ch)] = true;
+        }
     }
     @Override
-    boolean rotates() {
+    public boolean rotates() {
         return true;
     }
 
     @Override
-    boolean atNotch() {
-        char ch = alphabet().toChar(setting());
-        for (int i = 0; i < _notches.length(); i += 1) {
-            if (_notches.charAt(i) == ch) {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    @Override
-    void advance() {
-        set(setting() + 1);
+    boolean notchAt(int posn) {
+        return _notches[posn];
     }
 
-    /**The notches of a rotor. */
-    private String _notches;
+    /** _notches[p] is true iff I have a notch at position P. */
+    private final boolean[] _notches;
 
 
 
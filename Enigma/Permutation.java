@@ -6,37 +6,84 @@ import static enigma.EnigmaException.*;
  *  to the characters of an alphabet.
  *  @author Sameer Keswani
  */
-class Permutation {
+public class Permutation {
 
     /** Set this Permutation to that specified by CYCLES, a string in the
      *  form "(cccc) (cc) ..." where the c's are characters in ALPHABET, which
      *  is interpreted as a permutation in cycle notation.  Characters in the
      *  alphabet that are not included in any cycle map to themselves.
-     *  Whitespace is ignored. */
-    Permutation(String cycles, Alphabet alphabet) {
+     *  Whitespace is ignored.  The cycles are compiled here, once, into
+     *  tables of the forward and inverse mappings. */
+    public Permutation(String cycles, Alphabet alphabet) {
         _alphabet = alphabet;
-        _cycles = cycles;
-
-        for (int i = 0; i < alphabet.size(); i += 1) {
-            boolean isSelfMap = true;
-            for (int j = 0; j < cycles.length(); j += 1) {
-                if (cycles.charAt(j) == alphabet.toChar(i)) {
-                    isSelfMap = false;
+        int n = alphabet.size();
+        _forward = new int[n];
+        _inverse = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            _forward[i] = i;
+            _inverse[i] = i;
+        }
+        boolean[] seen = new boolean[n];
+        int first = -1, prev = -1;
+        for (int i = 0; i < cycles.length(); i += 1) {
+            char ch = cycles.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                continue;
+            } else if (ch == '(') {
+                if (first != -1) {
+                    throw error("nested cycle in %s", cycles);
+                }
+                first = prev = -2;
+            } else if (ch == ')') {
+                if (first == -1) {
+                    throw error("unbalanced cycle in %s", cycles);
+                }
+                if (first >= 0) {
+                    link(prev, first);
+                }
+                first = prev = -1;
+            } else if (first == -1) {
+                throw error("character outside a cycle in %s", cycles);
+            } else {
+                if (!alphabet.contains(ch)) {
+                    throw error("character does not exist in alphabet");
+                }
+                int index = alphabet.toInt(ch);
+                if (seen[index]) {
+                    throw error("character repeated in cycles %s", cycles);
+                }
+                seen[index] = true;
+                if (first == -2) {
+                    first = index;
+                } else {
+                    link(prev, index);
                 }
+                prev = index;
             }
-            if (isSelfMap) {
-                _selfMap += alphabet.toChar(i);
+        }
+        if (first != -1) {
+            throw error("unbalanced cycle in %s", cycles);
+        }
+        boolean deranged = true;
+        for (int i = 0; i < n; i += 1) {
+            if (_forward[i] == i) {
+                deranged = false;
             }
         }
+        _derangement = deranged;
+    }
 
-
-
-
-
+    /** Record that FROM maps to TO. */
+    private void link(int from, int to) {
+        _forward[from] = to;
+        _inverse[to] = from;
     }
 
     /** Return the value of P modulo the size of this permutation. */
     final int wrap(int p) {
+        if (p >= 0 && p < size()) {
+            return p;
+        }
         int r = p % size();
         if (r < 0) {
             r += size();
@@ -52,55 +99,13 @@ class Permutation {
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        int index = wrap(p);
-        char ch = _alphabet.toChar(index);
-        char first = (char) 0;
-        char permuted = (char) 0;
-
-        if (!checkIfInSelfMap(ch)) {
-            for (int i = 0; i < _cycles.length(); i += 1) {
-                if (_cycles.charAt(i) == '(') {
-                    first = _cycles.charAt(i + 1);
-                } else if ((_cycles.charAt(i) == ch)) {
-                    if ((_cycles.charAt(i + 1) == ')')) {
-                        permuted = first;
-                    } else {
-                        permuted = _cycles.charAt(i + 1);
-                    }
-                }
-            }
-        } else {
-            permuted = ch;
-        }
-
-        return _alphabet.toInt(permuted);
+        return _forward[wrap(p)];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size. */
     int invert(int c) {
-        int index = wrap(c);
-        char ch = _alphabet.toChar(index);
-        char inverted = (char) 0;
-        char last = (char) 0;
-
-
-        if (!checkIfInSelfMap(ch)) {
-            for (int i = _cycles.length() - 1; i >= 0; i -= 1) {
-                if (_cycles.charAt(i) == ')') {
-                    last = _cycles.charAt(i - 1);
-                } else if ((_cycles.charAt(i) == ch)) {
-                    if ((_cycles.charAt(i - 1) == '(')) {
-                        inverted = last;
-                    } else {
-                        inverted = _cycles.charAt(i - 1);
-                    }
-                }
-            }
-        } else {
-            inverted = ch;
-        }
-        return _alphabet.toInt(inverted);
+        return _inverse[wrap(c)];
     }
 
 
@@ -136,30 +141,19 @@ class Permutation {
     /** Return true iff this permutation is a derangement (i.e., a
      *  permutation for which no value maps to itself). */
     boolean derangement() {
-        if (_selfMap.length() == 0) {
-            return true;
-        }
-        return false;
+        return _derangement;
     }
 
     /** Alphabet of this permutation. */
     private Alphabet _alphabet;
 
-    /**The alphabet letters that map to themseleves. */
-    private String _selfMap = "";
+    /** _forward[i] is the image of i under this permutation. */
+    private final int[] _forward;
 
-    /** The cycle of letters mapped to each other. */
-    private String _cycles;
+    /** _inverse[i] is the index that this permutation maps to i. */
+    private final int[] _inverse;
 
-    /** @param c @return true/false.
-     * Check if a letter is mapped to itself.*/
-    boolean checkIfInSelfMap(char c) {
-        for (int i = 0; i < _selfMap.length(); i += 1) {
-            if (_selfMap.charAt(i) == c) {
-                return true;
-            }
-        }
-        return false;
-    }
+    /** True iff no index maps to itself. */
+    private final boolean _derangement;
 
 }
@@ -167,6 +167,19 @@ public class PermutationTest {
 
         Permutation perm3 = new Permutation("", new Alphabet(UPPER_STRING));
         assertFalse(perm3.derangement());
+
+        Permutation perm4 = new Permutation("(AB) (C) (D)", a1);
+        assertFalse(perm4.derangement());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testCharacterNotInAlphabet() {
+        new Permutation("(AB) (CE)", new Alphabet("ABCD"));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testRepeatedCharacter() {
+        new Permutation("(AB) (CA)", new Alphabet("ABCD"));
     }
 
 }
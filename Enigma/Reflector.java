@@ -14,15 +14,16 @@ class Reflector extends FixedRotor {
     }
 
     @Override
-    boolean reflecting() {
+    public boolean reflecting() {
         return true;
     }
 
     @Override
-    void set(int posn) {
+    int setting(int posn) {
         if (posn != 0) {
             throw error("reflector has only one position");
         }
+        return 0;
     }
 
 }
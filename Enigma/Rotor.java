@@ -2,20 +2,37 @@ package enigma;
 
 import static enigma.EnigmaException.*;
 
-/** Superclass that represents a rotor in the enigma machine.
+/** Superclass that represents the wiring of a rotor in the enigma
+ *  machine.  A rotor holds no position: the machines it is inserted in
+ *  keep their own settings for it and pass them in, so one rotor may be
+ *  shared by any number of machines on any number of threads.  Unless
+ *  its alphabet has more than MAX_TABULATED characters, its conversions
+ *  at every setting are tabulated when it is made.
  *  @author Sameer Keswani
  */
-class Rotor {
+public class Rotor {
 
     /** A rotor named NAME whose permutation is given by PERM. */
     Rotor(String name, Permutation perm) {
         _name = name;
         _permutation = perm;
-        _setting = 0;
+        int size = perm.size();
+        if (size > MAX_TABULATED) {
+            _forward = _backward = null;
+            return;
+        }
+        _forward = new int[size][size];
+        _backward = new int[size][size];
+        for (int s = 0; s < size; s += 1) {
+            for (int p = 0; p < size; p += 1) {
+                _forward[s][p] = wrap(perm.permute(wrap(p + s)) - s);
+                _backward[s][p] = wrap(perm.invert(wrap(p + s)) - s);
+            }
+        }
     }
 
     /** Return my name. */
-    String name() {
+    public String name() {
         return _name;
     }
 
@@ -35,73 +52,80 @@ class Rotor {
     }
 
     /** Return true iff I have a ratchet and can move. */
-    boolean rotates() {
+    public boolean rotates() {
         return false;
     }
 
     /** Return true iff I reflect. */
-    boolean reflecting() {
+    public boolean reflecting() {
         return false;
     }
 
-    /** Return my current setting. */
-    int setting() {
-        return _setting;
-    }
-
-    /** Set setting() to POSN.  */
-    void set(int posn) {
-        _setting = posn % size();
+    /** Return the setting I have when set to POSN. */
+    int setting(int posn) {
+        return wrap(posn);
     }
 
-    /** Set setting() to character CPOSN. */
-    void set(char cposn) {
-        int posn = alphabet().toInt(cposn);
-        _setting = posn % size();
+    /** Return the setting I have when set to character CPOSN. */
+    int setting(char cposn) {
+        if (!alphabet().contains(cposn)) {
+            throw error("character %c is not in the alphabet", cposn);
+        }
+        return setting(alphabet().toInt(cposn));
     }
 
     /** Return the conversion of P (an integer in the range 0..size()-1)
-     *  according to my permutation. */
-    int convertForward(int p) {
-        int contactEntered = (p + _setting) % size();
-        int permuted = _permutation.permute(contactEntered);
-        return wrap(permuted - _setting);
+     *  according to my permutation when my setting is SETTING. */
+    int convertForward(int p, int setting) {
+        if (_forward != null) {
+            return _forward[setting][p];
+        }
+        return wrap(_permutation.permute(wrap(p + setting)) - setting);
     }
 
     /** Return the conversion of E (an integer in the range 0..size()-1)
-     *  according to the inverse of my permutation. */
-    int convertBackward(int e) {
-        int contactEntered = (e + _setting) % size();
-        int inverted = _permutation.invert(contactEntered);
-        return wrap(inverted - _setting);
+     *  according to the inverse of my permutation when my setting is
+     *  SETTING. */
+    int convertBackward(int e, int setting) {
+        if (_backward != null) {
+            return _backward[setting][e];
+        }
+        return wrap(_permutation.invert(wrap(e + setting)) - setting);
     }
 
     /** Returns true iff I am positioned to allow the rotor to my left
-     *  to advance. */
-    boolean atNotch() {
+     *  to advance when my setting is POSN. */
+    boolean notchAt(int posn) {
         return false;
     }
 
-    /** Advance me one position, if possible. By default, does nothing. */
-    void advance() {
-    }
-
     @Override
     public String toString() {
         return "Rotor " + _name;
     }
 
+    /** Largest alphabet for which conversions are tabulated, as the
+     *  tables have a row for each setting. */
+    static final int MAX_TABULATED = ByteAlphabet.SIZE;
+
     /** My name. */
     private final String _name;
 
     /** The permutation implemented by this rotor in its 0 position. */
-    private Permutation _permutation;
+    private final Permutation _permutation;
+
+    /** _forward[s][p] is convertForward(P, S), or _forward is null if my
+     *  alphabet is too large to tabulate. */
+    private final int[][] _forward;
 
-    /** The setting of the rotor. */
-    private int _setting;
+    /** _backward[s][e] is convertBackward(E, S), or null. */
+    private final int[][] _backward;
 
     /** Return the value of P modulo the size of this permutation. */
     final int wrap(int p) {
+        if (p >= 0 && p < size()) {
+            return p;
+        }
         int r = p % size();
         if (r < 0) {
             r += size();
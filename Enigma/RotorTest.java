@@ -10,7 +10,7 @@ import static org.junit.Assert.*;
 public class RotorTest {
 
     private Permutation perm1 = new Permutation("(DABC)", new Alphabet("ABCD"));
-    private Permutation perm2 = new Permutation("(ABCDFELPQT", new Alphabet());
+    private Permutation perm2 = new Permutation("(ABCDFELPQT)", new Alphabet());
 
     @Test
     public void testName() {
@@ -36,57 +36,37 @@ public class RotorTest {
     @Test
     public void testSetting() {
         Rotor rotor1 = new Rotor("I", perm1);
-        assertEquals(0, rotor1.setting());
-        rotor1.set(3);
-        assertEquals(3, rotor1.setting());
-        rotor1.set(5);
-        assertEquals(1, rotor1.setting());
-        rotor1.set('A');
-        assertEquals(0, rotor1.setting());
+        assertEquals(3, rotor1.setting(3));
+        assertEquals(1, rotor1.setting(5));
+        assertEquals(0, rotor1.setting('A'));
 
 
         Rotor rotor2 = new Rotor("II", perm2);
-        assertEquals(0, rotor2.setting());
-        rotor2.set(3);
-        assertEquals(3, rotor2.setting());
-        rotor2.set(5);
-        assertEquals(5, rotor2.setting());
-        rotor2.set(26);
-        assertEquals(0, rotor2.setting());
+        assertEquals(3, rotor2.setting(3));
+        assertEquals(5, rotor2.setting(5));
+        assertEquals(0, rotor2.setting(26));
     }
 
     @Test
     public void testConvertForward() {
         Rotor rotor1 = new Rotor("I", perm1);
-        assertEquals(3, rotor1.convertForward(2));
-        rotor1.set(rotor1.setting() + 1);
-        assertEquals(0, rotor1.convertForward(3));
+        assertEquals(3, rotor1.convertForward(2, 0));
+        assertEquals(0, rotor1.convertForward(3, 1));
 
 
         Rotor rotor2 = new Rotor("II", perm2);
-        assertEquals(1, rotor2.convertForward(0));
-        rotor2.set(3);
-        assertEquals(8, rotor2.convertForward(1));
+        assertEquals(1, rotor2.convertForward(0, 0));
+        assertEquals(8, rotor2.convertForward(1, 3));
     }
 
     @Test
     public void testConvertBackward() {
         Rotor rotor1 = new Rotor("I", perm1);
-        assertEquals(2, rotor1.convertBackward(3));
-        rotor1.set(rotor1.setting() + 1);
-        assertEquals(1, rotor1.convertBackward(2));
+        assertEquals(2, rotor1.convertBackward(3, 0));
+        assertEquals(1, rotor1.convertBackward(2, 1));
 
         Rotor rotor2 = new Rotor("II", perm2);
-        assertEquals(0, rotor2.convertBackward(1));
-        rotor2.set(3);
-        assertEquals(1, rotor2.convertBackward(8));
+        assertEquals(0, rotor2.convertBackward(1, 0));
+        assertEquals(1, rotor2.convertBackward(8, 3));
     }
-
-
-
-
-
-
-
-
 }
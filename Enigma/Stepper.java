@@ -0,0 +1,267 @@
+package enigma;
+
+import java.util.Arrays;
+import java.util.List;
+
+/** The stepping of a machine's rotors, computed on arrays of rotor
+ *  settings rather than on the rotors themselves, so that the settings
+ *  any number of keypresses ahead can be found without pressing the keys.
+ *
+ *  A moving rotor steps when it is the rightmost one, when the rotor to
+ *  its right is at a notch, or when it is at a notch itself and the rotor
+ *  to its left also moves (the double step).  Call a step caused by the
+ *  rotor to the right a push.  A push that lands a rotor on a notch is
+ *  followed at the next keypress by its double step, which pushes the
+ *  rotor to its left.  So the pushes a rotor has had after K keypresses
+ *  are the pushes that landed the rotor to its right on a notch by
+ *  keypress K - 1, and those of the rotor next to the rightmost, which
+ *  moves on every keypress, are the number of times the rightmost passed
+ *  a notch.  If no rotor has two adjacent notches, no rotor is ever
+ *  pushed while it waits at a notch, each push moves a rotor to its next
+ *  setting that is not a notch, and advance counts the pushes of each
+ *  rotor in turn arithmetically, in time independent of K.  Otherwise it
+ *  presses the keys one at a time until the settings repeat, and skips
+ *  the rest of the cycle.
+ *  @author Sameer Keswani
+ */
+class Stepper {
+
+    /** Stepping for the machine rotors ROTORS, leftmost (the reflector)
+     *  first. */
+    Stepper(List<Rotor> rotors) {
+        _size = rotors.get(0).size();
+        _last = rotors.size() - 1;
+        _first = _last + 1;
+        while (_first > 1 && rotors.get(_first - 1).rotates()) {
+            _first -= 1;
+        }
+        _notches = new boolean[rotors.size()][];
+        for (int i = _first; i <= _last; i += 1) {
+            _notches[i] = new boolean[_size];
+            for (int p = 0; p < _size; p += 1) {
+                _notches[i][p] = rotors.get(i).notchAt(p);
+            }
+        }
+        boolean regular = true;
+        for (int i = _first + 1; i <= _last; i += 1) {
+            for (int p = 0; p < _size; p += 1) {
+                regular &= !_notches[i][p] || !_notches[i][next(p)];
+            }
+        }
+        _regular = regular;
+        _rests = new int[rotors.size()][];
+        _restIndex = new int[rotors.size()][];
+        _landings = new int[rotors.size()][];
+        if (_regular && _first < _last) {
+            tabulate();
+        }
+    }
+
+    /** Fills in _rests, _restIndex and _landings for the rotors that
+     *  double-step, and _landings[_last] for the rightmost one. */
+    private void tabulate() {
+        _landings[_last] = new int[_size + 1];
+        for (int p = 0; p < _size; p += 1) {
+            _landings[_last][p + 1] = _landings[_last][p]
+                + (_notches[_last][p] ? 1 : 0);
+        }
+        for (int i = _first + 1; i < _last; i += 1) {
+            int rests = 0;
+            for (int p = 0; p < _size; p += 1) {
+                rests += _notches[i][p] ? 0 : 1;
+            }
+            _rests[i] = new int[rests];
+            _restIndex[i] = new int[_size];
+            _landings[i] = new int[rests + 1];
+            int r = 0;
+            for (int p = 0; p < _size; p += 1) {
+                _restIndex[i][p] = _notches[i][p] ? -1 : r;
+                if (!_notches[i][p]) {
+                    _rests[i][r] = p;
+                    _landings[i][r + 1] = _landings[i][r]
+                        + (_notches[i][next(p)] ? 1 : 0);
+                    r += 1;
+                }
+            }
+        }
+    }
+
+    /** Advances SETTINGS as one keypress would advance the rotors.
+     *  Returns true iff a rotor other than the rightmost one moved. */
+    boolean step(int[] settings) {
+        boolean carry = false, slow = false;
+        for (int i = _last; i >= _first; i -= 1) {
+            boolean notch = _notches[i][settings[i]] && i > _first;
+            if (notch || carry || i == _last) {
+                settings[i] = next(settings[i]);
+                slow |= i < _last;
+            }
+            carry = notch;
+        }
+        return slow;
+    }
+
+    /** Advances SETTINGS as K keypresses would advance the rotors. */
+    void advance(int[] settings, long k) {
+        if (_first > _last) {
+            return;
+        } else if (_first == _last) {
+            settings[_last] = (int) ((settings[_last] + k % _size) % _size);
+            return;
+        } else if (!_regular) {
+            walk(settings, k);
+            return;
+        }
+        if (k > 0 && waiting(settings)) {
+            step(settings);
+            k -= 1;
+        }
+        int[] start = settings.clone();
+        int[] from = new int[settings.length];
+        int[] pending = new int[settings.length];
+        for (int i = _first + 1; i < _last; i += 1) {
+            if (_notches[i][start[i]]) {
+                pending[i] = 1;
+                from[i] = _restIndex[i][previous(start[i])];
+            } else {
+                from[i] = _restIndex[i][start[i]];
+            }
+        }
+        for (int i = _first + 1; i < _last; i += 1) {
+            int rests = _rests[i].length;
+            long pushes = pushes(i, k, start, from, pending);
+            int r = (int) ((from[i] + pushes % rests) % rests);
+            settings[i] = _rests[i][r];
+            if (pushes > pushes(i, k - 1, start, from, pending)) {
+                int landing = next(_rests[i][r == 0 ? rests - 1 : r - 1]);
+                if (_notches[i][landing]) {
+                    settings[i] = landing;
+                }
+            }
+        }
+        long pushes = pushes(_first, k, start, from, pending);
+        settings[_first] = (int) ((start[_first] + pushes % _size) % _size);
+        settings[_last] = (int) ((start[_last] + k % _size) % _size);
+    }
+
+    /** Advances SETTINGS as K keypresses would, one keypress at a time
+     *  until they repeat.  They are compared with a copy saved after each
+     *  power of two keypresses (Brent's method), so that a repeat is found
+     *  within twice the length of the cycle and then whole cycles are
+     *  skipped. */
+    private void walk(int[] settings, long k) {
+        int[] saved = settings.clone();
+        long power = 1, length = 0;
+        for (long i = 0; i < k; i += 1) {
+            step(settings);
+            length += 1;
+            if (Arrays.equals(settings, saved)) {
+                for (long j = (k - i - 1) % length; j > 0; j -= 1) {
+                    step(settings);
+                }
+                return;
+            } else if (length == power) {
+                System.arraycopy(settings, 0, saved, 0, saved.length);
+                power *= 2;
+                length = 0;
+            }
+        }
+    }
+
+    /** Returns true iff a rotor that double-steps is at a notch in
+     *  SETTINGS. */
+    private boolean waiting(int[] settings) {
+        for (int i = _first + 1; i < _last; i += 1) {
+            if (_notches[i][settings[i]]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the number of pushes that rotor I, which is not the
+     *  rightmost, has had after K keypresses from the settings START.
+     *  FROM[i] is the index in _rests[i] of the setting from which its
+     *  pushes count, and PENDING[i] is 1 if it was at a notch in START,
+     *  counted as a push it had before the first keypress. */
+    private long pushes(int i, long k, int[] start, int[] from,
+                        int[] pending) {
+        if (k < 0) {
+            return 0;
+        }
+        long result = pending[i];
+        if (i + 1 == _last) {
+            result += passed(start[_last], k);
+        } else {
+            result += landed(i + 1, from[i + 1],
+                             pushes(i + 1, k - 1, start, from, pending));
+        }
+        return result;
+    }
+
+    /** Returns the number of notches that the rightmost rotor passes in
+     *  K keypresses from setting S. */
+    private long passed(int s, long k) {
+        int[] sums = _landings[_last];
+        int rest = (int) (k % _size);
+        long result = k / _size * sums[_size];
+        if (s + rest <= _size) {
+            return result + sums[s + rest] - sums[s];
+        }
+        return result + sums[_size] - sums[s] + sums[s + rest - _size];
+    }
+
+    /** Returns the number of the first PUSHES pushes of rotor I, from the
+     *  setting _rests[i][FROM], that land it on a notch. */
+    private long landed(int i, int from, long pushes) {
+        int[] sums = _landings[i];
+        int rests = _rests[i].length;
+        int rest = (int) (pushes % rests);
+        long result = pushes / rests * sums[rests];
+        if (from + rest <= rests) {
+            return result + sums[from + rest] - sums[from];
+        }
+        return result + sums[rests] - sums[from] + sums[from + rest - rests];
+    }
+
+    /** Returns the setting after P. */
+    private int next(int p) {
+        return p + 1 == _size ? 0 : p + 1;
+    }
+
+    /** Returns the setting before P. */
+    private int previous(int p) {
+        return p == 0 ? _size - 1 : p - 1;
+    }
+
+    /** Size of the rotors' alphabet. */
+    private final int _size;
+
+    /** Index of the leftmost moving rotor, or the number of rotors if
+     *  none moves. */
+    private int _first;
+
+    /** Index of the rightmost rotor. */
+    private final int _last;
+
+    /** _notches[i][p] is true iff moving rotor I is at a notch with
+     *  setting P. */
+    private final boolean[][] _notches;
+
+    /** True iff no moving rotor but the leftmost has two adjacent
+     *  notches, so that advance may count pushes. */
+    private final boolean _regular;
+
+    /** _rests[i] lists in order the settings of rotor I that are not
+     *  notches, for each rotor that double-steps. */
+    private final int[][] _rests;
+
+    /** _restIndex[i][p] is the index of P in _rests[i], or -1 if P is
+     *  a notch of rotor I. */
+    private final int[][] _restIndex;
+
+    /** _landings[i][r] is the number of the first R settings in _rests[i]
+     *  from which a push lands rotor I on a notch.  _landings[_last][p]
+     *  is the number of notches of the rightmost rotor below P. */
+    private final int[][] _landings;
+}
@@ -0,0 +1,116 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/** The suite of all JUnit tests for the Stepper class.
+ *  @author Sameer Keswani
+ */
+public class StepperTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    private static final String UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    /** Returns the rotors of a machine on the first SIZE upper-case
+     *  letters: a reflector, a fixed rotor, and a moving rotor with each
+     *  of NOTCHES as its notches, leftmost first. */
+    private ArrayList<Rotor> rotors(int size, String... notches) {
+        Alphabet alpha = new Alphabet(UPPER.substring(0, size));
+        Permutation id = new Permutation("", alpha);
+        ArrayList<Rotor> result = new ArrayList<>();
+        result.add(new Reflector("R", id));
+        result.add(new FixedRotor("F", id));
+        for (int i = 0; i < notches.length; i += 1) {
+            result.add(new MovingRotor("M" + i, id, notches[i]));
+        }
+        return result;
+    }
+
+    /** Check that advancing each of STARTS by every number of keypresses
+     *  up to LIMIT with the Stepper of ROTORS gives the settings that
+     *  stepping one keypress at a time does. */
+    private void checkAdvance(ArrayList<Rotor> rotors, int limit,
+                              int[]... starts) {
+        Stepper stepper = new Stepper(rotors);
+        for (int[] start : starts) {
+            int[] stepped = start.clone();
+            for (int k = 0; k <= limit; k += 1) {
+                int[] jumped = start.clone();
+                stepper.advance(jumped, k);
+                assertArrayEquals(Arrays.toString(start) + " after " + k
+                                  + " keypresses", stepped, jumped);
+                stepper.step(stepped);
+            }
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testStep() {
+        Stepper stepper = new Stepper(rotors(26, "V", "E", "Q"));
+        int[] settings = { 0, 0, 0, 3, 16 };
+        assertTrue(stepper.step(settings));
+        assertArrayEquals(new int[] { 0, 0, 0, 4, 17 }, settings);
+        assertTrue(stepper.step(settings));
+        assertArrayEquals(new int[] { 0, 0, 1, 5, 18 }, settings);
+        assertFalse(stepper.step(settings));
+        assertArrayEquals(new int[] { 0, 0, 1, 5, 19 }, settings);
+    }
+
+    @Test
+    public void testAdvanceSingleNotches() {
+        checkAdvance(rotors(26, "V", "E", "Q"), 3000,
+                     new int[] { 0, 0, 0, 0, 0 },
+                     new int[] { 0, 0, 21, 4, 16 },
+                     new int[] { 0, 0, 3, 4, 15 },
+                     new int[] { 0, 0, 7, 3, 16 });
+    }
+
+    @Test
+    public void testAdvanceManyPawls() {
+        checkAdvance(rotors(6, "A", "C", "AD", "BE", "F", "C"), 3000,
+                     new int[] { 0, 0, 0, 2, 3, 4, 5, 2 },
+                     new int[] { 0, 0, 5, 2, 0, 1, 5, 1 },
+                     new int[] { 0, 0, 1, 1, 3, 4, 4, 5 });
+    }
+
+    @Test
+    public void testAdvanceAdjacentNotches() {
+        checkAdvance(rotors(5, "AB", "CD", "E"), 500,
+                     new int[] { 0, 0, 0, 2, 4 },
+                     new int[] { 0, 0, 1, 3, 3 });
+        checkAdvance(rotors(5, "A", "B", "DE"), 500,
+                     new int[] { 0, 0, 0, 0, 3 });
+    }
+
+    @Test
+    public void testAdvanceFar() {
+        Stepper stepper = new Stepper(rotors(26, "V", "E", "Q", "Z",
+                                             "M", "A", "G"));
+        int[] settings = new int[9];
+        stepper.advance(settings, Long.MAX_VALUE);
+        int[] halves = new int[9];
+        stepper.advance(halves, Long.MAX_VALUE / 2);
+        stepper.advance(halves, Long.MAX_VALUE - Long.MAX_VALUE / 2);
+        assertArrayEquals(settings, halves);
+
+        Stepper adjacent = new Stepper(rotors(26, "V", "EF", "Q", "Z"));
+        settings = new int[6];
+        adjacent.advance(settings, 1L << 40);
+        halves = new int[6];
+        adjacent.advance(halves, 1L << 39);
+        adjacent.advance(halves, 1L << 39);
+        assertArrayEquals(settings, halves);
+    }
+}
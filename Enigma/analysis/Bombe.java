@@ -0,0 +1,399 @@
+package enigma.analysis;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+import enigma.Alphabet;
+import enigma.EnigmaException;
+import enigma.Machine;
+import enigma.Permutation;
+
+import static enigma.EnigmaException.*;
+
+/** A crib attack in the manner of the Turing-Welchman Bombe, which
+ *  recovers the rotors, their settings and much of the plugboard of a
+ *  machine from a ciphertext and a few words of its plaintext (the crib).
+ *  Usage:
+ *
+ *      java enigma.analysis.Bombe CONFIG CIPHERTEXT CRIB [OPTION...]
+ *
+ *  CONFIG is a configuration file, as read by enigma.Main, giving the
+ *  alphabet, the number of rotor slots and pawls, and the rotors that
+ *  may be used.  CIPHERTEXT names a file containing the message, and
+ *  CRIB is the known plaintext; whitespace in both is ignored.  The
+ *  options are
+ *
+ *      --offset=N     the crib's position in the message (default: every
+ *                     position at which no character would encrypt to
+ *                     itself)
+ *      --rotors=LIST  the rotors to try, one name or ? per slot, as in
+ *                     "B Beta ? ? ?" (default: all ?)
+ *      --setting=S    the starting settings to try, one character or ?
+ *                     per rotor after the reflector (default: all ?)
+ *      --min-score=N  the least number of crib characters a candidate
+ *                     must reproduce to be reported (default: half)
+ *      --limit=N      the most candidates printed (default 20)
+ *      --threads=N    the number of worker threads (default: one per
+ *                     processor)
+ *
+ *  For each crib position, rotor order and setting, every machine it
+ *  uses is built from the configuration by enigma.Main, the machine is
+ *  stepped to each position of the crib, and the Menu of the crib is
+ *  checked for a plugboard consistent with it.  Settings that survive
+ *  are decrypted with the plugboard found and reported, best first, with
+ *  the time into the search at which each was found.  The search is
+ *  divided among the threads of a fork-join pool, one task for each
+ *  rotor order, crib position and choice of all but the last
+ *  SearchSpace.LEAF_WILDCARDS wildcard settings.  The rotors have no ring
+ *  settings in this simulator, so the settings found are the rotor
+ *  positions themselves.
+ *  @author Sameer Keswani
+ */
+public final class Bombe {
+
+    /** Runs the attack described by ARGS (see the class comment), and
+     *  exits with code 1 if they are erroneous. */
+    public static void main(String... args) {
+        try {
+            run(args);
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Runs the attack described by ARGS. */
+    private static void run(String... args) {
+        if (args.length < 3) {
+            throw error("usage: java enigma.analysis.Bombe CONFIG "
+                        + "CIPHERTEXT CRIB [OPTION...]");
+        }
+        Bombe bombe = new Bombe(read(args[0]), read(args[1]), args[2]);
+        int limit = 20;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 3; i < args.length; i += 1) {
+            String arg = args[i];
+            int eq = arg.indexOf('=');
+            String option = eq < 0 ? arg : arg.substring(0, eq);
+            String value = eq < 0 ? "" : arg.substring(eq + 1);
+            switch (option) {
+            case "--offset":
+                bombe.setOffset(number(option, value));
+                break;
+            case "--rotors":
+                bombe.setRotors(value);
+                break;
+            case "--setting":
+                bombe.setSetting(value);
+                break;
+            case "--min-score":
+                bombe.setMinScore(number(option, value));
+                break;
+            case "--limit":
+                limit = number(option, value);
+                break;
+            case "--threads":
+                threads = Math.max(1, number(option, value));
+                break;
+            default:
+                throw error("unknown option %s", arg);
+            }
+        }
+
+        System.out.println(bombe.describe());
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<Candidate> found;
+        try {
+            found = bombe.search(pool);
+        } finally {
+            pool.shutdown();
+        }
+        Collections.sort(found);
+        for (Candidate candidate : found.subList(0,
+                 Math.min(limit, found.size()))) {
+            System.out.println(candidate);
+        }
+        double seconds = bombe.nanos() / 1e9;
+        System.out.printf("Tested %d settings in %.3fs (%.0f/s) on %d "
+                          + "threads: %d candidates.%n", bombe.tested(),
+                          seconds, bombe.tested() / Math.max(seconds, 1e-9),
+                          threads, found.size());
+    }
+
+    /** Returns the contents of the file named NAME. */
+    private static String read(String name) {
+        try {
+            return new String(Files.readAllBytes(Paths.get(name)),
+                              StandardCharsets.UTF_8);
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Returns VALUE, the value of OPTION, as a non-negative number. */
+    private static int number(String option, String value) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result >= 0) {
+                return result;
+            }
+        } catch (NumberFormatException excp) {
+            throw error("%s needs a number", option);
+        }
+        throw error("%s needs a number", option);
+    }
+
+    /** An attack with the machines configured by the configuration text
+     *  CONFIG on the message CIPHERTEXT, using the crib CRIB. */
+    public Bombe(String config, String ciphertext, String crib) {
+        _ciphertext = ciphertext.replaceAll("\\s", "");
+        _crib = crib.replaceAll("\\s", "");
+        _space = new SearchSpace(config);
+        _alphabet = _space.alphabet();
+        if (_crib.isEmpty()) {
+            throw error("empty crib");
+        }
+        for (int i = 0; i < _ciphertext.length(); i += 1) {
+            if (!_alphabet.contains(_ciphertext.charAt(i))) {
+                throw error("character %c is not in the alphabet",
+                            _ciphertext.charAt(i));
+            }
+        }
+        _minScore = (_crib.length() + 1) / 2;
+    }
+
+    /** Tries only crib position OFFSET. */
+    public void setOffset(int offset) {
+        if (!Menu.fits(_crib, _ciphertext, offset)) {
+            throw error("crib cannot be at position %d", offset);
+        }
+        _offset = offset;
+    }
+
+    /** Tries only the rotors named in PATTERN, one name or wildcard for
+     *  each rotor slot, separated by whitespace. */
+    public void setRotors(String pattern) {
+        _space.setRotors(pattern);
+    }
+
+    /** Tries only the starting settings matching PATTERN, one character
+     *  of the alphabet or wildcard for each rotor after the reflector. */
+    public void setSetting(String pattern) {
+        _space.setSetting(pattern);
+    }
+
+    /** Reports only candidates reproducing at least MINSCORE characters
+     *  of the crib. */
+    public void setMinScore(int minScore) {
+        _minScore = minScore;
+    }
+
+    /** Returns a summary of the search: the menus, rotor orders and
+     *  settings to be tried. */
+    public String describe() {
+        StringBuilder result = new StringBuilder();
+        List<Menu> menus = menus();
+        for (Menu menu : menus) {
+            result.append(String.format("Crib at %d: %d characters, "
+                    + "centre %c, %d loops.%n", menu.offset(), menu.length(),
+                    _alphabet.toChar(menu.centre()), menu.loops()));
+        }
+        result.append(String.format("%d crib positions, %d rotor orders, "
+                + "%d settings each.", menus.size(), _space.orders().size(),
+                _space.settingsPerOrder()));
+        return result.toString();
+    }
+
+    /** Tries every crib position, rotor order and setting allowed, in
+     *  POOL, and returns the candidates found. */
+    public List<Candidate> search(ForkJoinPool pool) {
+        List<Job> jobs = new ArrayList<>();
+        List<String[]> orders = _space.orders();
+        for (Menu menu : menus()) {
+            for (String[] order : orders) {
+                for (int[] setting : _space.templates()) {
+                    jobs.add(new Job(order, menu, setting));
+                }
+            }
+        }
+        _tested.reset();
+        _start = System.nanoTime();
+        List<Candidate> result = jobs.isEmpty() ? new ArrayList<>()
+            : pool.invoke(new SearchTask(jobs, 0, jobs.size()));
+        _nanos = System.nanoTime() - _start;
+        return result;
+    }
+
+    /** Returns the number of settings tested by the last search. */
+    public long tested() {
+        return _tested.sum();
+    }
+
+    /** Returns the duration of the last search in nanoseconds. */
+    public long nanos() {
+        return _nanos;
+    }
+
+    /** Returns the menus for each crib position tried. */
+    private List<Menu> menus() {
+        List<Menu> result = new ArrayList<>();
+        for (int offset = 0; offset + _crib.length() <= _ciphertext.length();
+             offset += 1) {
+            if ((_offset < 0 || offset == _offset)
+                && Menu.fits(_crib, _ciphertext, offset)) {
+                result.add(new Menu(_alphabet, _crib, _ciphertext, offset));
+            }
+        }
+        return result;
+    }
+
+    /** Returns the candidates found by trying every setting matching the
+     *  pattern of JOB, with its rotors and crib position. */
+    private List<Candidate> test(Job job) {
+        Machine machine = _space.machine();
+        Permutation unplugged = new Permutation("", _alphabet);
+        machine.insertRotors(job._order);
+        machine.setPlugboard(unplugged);
+        Menu menu = job._menu;
+        int[][] scramblers = new int[menu.length()][_alphabet.size()];
+        int[] settings = job._setting.clone();
+        int[] wild = SearchSpace.wildcards(settings);
+        List<Candidate> result = new ArrayList<>();
+        long count = 0;
+        do {
+            machine.setSettings(settings);
+            machine.advance(menu.offset());
+            for (int[] scrambler : scramblers) {
+                machine.advance();
+                machine.mapping(scrambler);
+            }
+            for (int[] partners : menu.stops(scramblers)) {
+                Candidate candidate =
+                    candidate(machine, job, settings, partners);
+                if (candidate.score() >= _minScore) {
+                    result.add(candidate);
+                }
+                machine.setPlugboard(unplugged);
+            }
+            count += 1;
+        } while (_space.next(settings, wild));
+        _tested.add(count);
+        return result;
+    }
+
+    /** Returns the candidate with the rotors and crib position of JOB,
+     *  starting settings SETTINGS and the plugboard given by PARTNERS,
+     *  found with MACHINE. */
+    private Candidate candidate(Machine machine, Job job, int[] settings,
+                                int[] partners) {
+        String plugboard = _space.plugboard(partners);
+        Menu menu = job._menu;
+        machine.setSettings(settings);
+        machine.setPlugboard(new Permutation(plugboard, _alphabet));
+        int end = Math.max(menu.offset() + menu.length(), Candidate.PREVIEW);
+        String plaintext = machine.convert(
+            _ciphertext.substring(0, Math.min(end, _ciphertext.length())));
+        int score = 0;
+        for (int j = 0; j < menu.length(); j += 1) {
+            if (plaintext.charAt(menu.offset() + j) == _crib.charAt(j)) {
+                score += 1;
+            }
+        }
+        return new Candidate(job._order, _space.setting(settings),
+                             plugboard, menu.offset(), score, menu.length(),
+                             plaintext, System.nanoTime() - _start);
+    }
+
+    /** The settings matching one pattern, to be tried with one rotor order
+     *  and crib position. */
+    private static final class Job {
+
+        /** A job trying SETTING with the rotors ORDER and the crib as in
+         *  MENU. */
+        Job(String[] order, Menu menu, int[] setting) {
+            _order = order;
+            _menu = menu;
+            _setting = setting;
+        }
+
+        /** The rotor names. */
+        private final String[] _order;
+
+        /** The menu of the crib at its position. */
+        private final Menu _menu;
+
+        /** The settings template, as from SearchSpace.templates. */
+        private final int[] _setting;
+    }
+
+    /** Runs the jobs numbered LO to HI - 1 of a list, splitting them among
+     *  tasks until each has only one. */
+    private final class SearchTask extends RecursiveTask<List<Candidate>> {
+
+        /** A task running JOBS[LO .. HI - 1]. */
+        SearchTask(List<Job> jobs, int lo, int hi) {
+            _jobs = jobs;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected List<Candidate> compute() {
+            if (_hi - _lo == 1) {
+                return test(_jobs.get(_lo));
+            }
+            int mid = (_lo + _hi) >>> 1;
+            SearchTask left = new SearchTask(_jobs, _lo, mid);
+            left.fork();
+            List<Candidate> result =
+                new SearchTask(_jobs, mid, _hi).compute();
+            result.addAll(left.join());
+            return result;
+        }
+
+        /** The jobs. */
+        private final List<Job> _jobs;
+
+        /** The first job run. */
+        private final int _lo;
+
+        /** One past the last job run. */
+        private final int _hi;
+    }
+
+    /** The message, without whitespace. */
+    private final String _ciphertext;
+
+    /** The crib, without whitespace. */
+    private final String _crib;
+
+    /** The rotor orders and settings tried. */
+    private final SearchSpace _space;
+
+    /** The alphabet of the configuration. */
+    private final Alphabet _alphabet;
+
+    /** The crib position tried, or -1 for all. */
+    private int _offset = -1;
+
+    /** Least score of a reported candidate. */
+    private int _minScore;
+
+    /** Number of settings tested in the current search. */
+    private final LongAdder _tested = new LongAdder();
+
+    /** System.nanoTime() at the start of the current search. */
+    private long _start;
+
+    /** Duration of the last search. */
+    private long _nanos;
+}
@@ -0,0 +1,97 @@
+package enigma.analysis;
+
+/** A machine setting that survived the tests of the menu: the rotors,
+ *  their starting settings, the plugboard the menu implies, how much of
+ *  the crib that setting reproduces, and when it was found.
+ *  @author Sameer Keswani
+ */
+class Candidate implements Comparable<Candidate> {
+
+    /** A candidate with rotors named ROTORS, leftmost (the reflector)
+     *  first, at the starting settings SETTING, with plugboard PLUGBOARD
+     *  in cycle notation, under which the crib at OFFSET decrypts with
+     *  SCORE of its LENGTH characters right, giving PLAINTEXT.  It was
+     *  found NANOS nanoseconds into the search. */
+    Candidate(String[] rotors, String setting, String plugboard, int offset,
+              int score, int length, String plaintext, long nanos) {
+        _rotors = rotors.clone();
+        _setting = setting;
+        _plugboard = plugboard;
+        _offset = offset;
+        _score = score;
+        _length = length;
+        _plaintext = plaintext;
+        _nanos = nanos;
+    }
+
+    /** Returns the settings line that would set a machine up this way, in
+     *  the form read by enigma.Main. */
+    String settingsLine() {
+        StringBuilder result = new StringBuilder("*");
+        for (String name : _rotors) {
+            result.append(' ').append(name);
+        }
+        result.append(' ').append(_setting);
+        if (!_plugboard.isEmpty()) {
+            result.append(' ').append(_plugboard);
+        }
+        return result.toString();
+    }
+
+    /** Returns the number of crib characters reproduced. */
+    int score() {
+        return _score;
+    }
+
+    /** Returns the time into the search at which I was found, in
+     *  nanoseconds. */
+    long nanos() {
+        return _nanos;
+    }
+
+    /** Orders candidates by decreasing score, then by the time at which
+     *  they were found. */
+    @Override
+    public int compareTo(Candidate other) {
+        if (_score != other._score) {
+            return Integer.compare(other._score, _score);
+        }
+        return Long.compare(_nanos, other._nanos);
+    }
+
+    @Override
+    public String toString() {
+        String plaintext = _plaintext.length() > PREVIEW
+            ? _plaintext.substring(0, PREVIEW) + "..." : _plaintext;
+        return String.format("%9.3fs  %d/%d at %d  %s%n           %s",
+                             _nanos / 1e9, _score, _length, _offset,
+                             settingsLine(), plaintext);
+    }
+
+    /** Number of characters of plaintext shown by toString. */
+    static final int PREVIEW = 60;
+
+    /** Names of the rotors, the reflector first. */
+    private final String[] _rotors;
+
+    /** Starting settings of the rotors after the reflector. */
+    private final String _setting;
+
+    /** Plugboard, in cycle notation. */
+    private final String _plugboard;
+
+    /** Position of the crib in the ciphertext. */
+    private final int _offset;
+
+    /** Number of crib characters reproduced. */
+    private final int _score;
+
+    /** Length of the crib. */
+    private final int _length;
+
+    /** Decryption of the ciphertext. */
+    private final String _plaintext;
+
+    /** Time into the search at which this was found. */
+    private final long _nanos;
+}
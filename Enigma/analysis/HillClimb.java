@@ -0,0 +1,666 @@
+package enigma.analysis;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+import enigma.Alphabet;
+import enigma.EnigmaException;
+import enigma.Machine;
+import enigma.Permutation;
+
+import static enigma.EnigmaException.*;
+
+/** A ciphertext-only attack, which recovers the rotors, their settings
+ *  and the plugboard of a machine from a message alone, by the method of
+ *  Gillogly and of Weierud and Sullivan.  Usage:
+ *
+ *      java enigma.analysis.HillClimb CONFIG CIPHERTEXT [OPTION...]
+ *
+ *  CONFIG is a configuration file, as read by enigma.Main, and CIPHERTEXT
+ *  names a file containing the message; whitespace in it is ignored.
+ *  The options are
+ *
+ *      --rotors=LIST  the rotors to try, one name or ? per slot, as in
+ *                     "B Beta ? ? ?" (default: all ?)
+ *      --setting=S    the starting settings to try, one character or ?
+ *                     per rotor after the reflector (default: all ?)
+ *      --ngrams=FILE  a sample of the plaintext language, from which to
+ *                     learn n-gram statistics (default: none, so that
+ *                     only the index of coincidence is used)
+ *      --n=N          the length of the n-grams (default 3)
+ *      --keep=K       the number of settings climbed (default 20)
+ *      --restarts=R   the number of climbs from each (default 16)
+ *      --max-pairs=P  the most plugboard pairs (default 10)
+ *      --seed=S       the seed of the random restarts (default 0)
+ *      --limit=N      the most solutions printed (default 5)
+ *      --threads=N    the number of worker threads (default: one per
+ *                     processor)
+ *
+ *  The first stage decrypts the message with every rotor order and
+ *  starting setting allowed and no plugboard, and keeps the K settings
+ *  giving the highest index of coincidence.  The second climbs from each
+ *  of those R times: starting from no plugboard, or from random pairs,
+ *  it repeatedly tries connecting or disconnecting each pair of
+ *  characters, keeping any change that raises the score, first the index
+ *  of coincidence and then the n-gram log-likelihood, until none does.
+ *  Both stages run in a fork-join pool.  Since the plugboard is outside
+ *  the rotors, the second stage records the rotors' permutation at each
+ *  position of the message once, and each trial decryption is then
+ *  three array lookups per character into preallocated arrays.  The best
+ *  climb from each setting is reported, best first, as the settings line
+ *  for enigma.Main, with the decryption by a machine so set up and the
+ *  time into the search at which it was found.
+ *  @author Sameer Keswani
+ */
+public final class HillClimb {
+
+    /** Runs the attack described by ARGS (see the class comment), and
+     *  exits with code 1 if they are erroneous. */
+    public static void main(String... args) {
+        try {
+            run(args);
+            return;
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+        }
+        System.exit(1);
+    }
+
+    /** Runs the attack described by ARGS. */
+    private static void run(String... args) {
+        if (args.length < 2) {
+            throw error("usage: java enigma.analysis.HillClimb CONFIG "
+                        + "CIPHERTEXT [OPTION...]");
+        }
+        HillClimb climb = new HillClimb(read(args[0]), read(args[1]));
+        String sample = null;
+        int n = 3;
+        int limit = 5;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 2; i < args.length; i += 1) {
+            String arg = args[i];
+            int eq = arg.indexOf('=');
+            String option = eq < 0 ? arg : arg.substring(0, eq);
+            String value = eq < 0 ? "" : arg.substring(eq + 1);
+            switch (option) {
+            case "--rotors":
+                climb._space.setRotors(value);
+                break;
+            case "--setting":
+                climb._space.setSetting(value);
+                break;
+            case "--ngrams":
+                sample = read(value);
+                break;
+            case "--n":
+                n = number(option, value);
+                break;
+            case "--keep":
+                climb.setKeep(number(option, value));
+                break;
+            case "--restarts":
+                climb.setRestarts(number(option, value));
+                break;
+            case "--max-pairs":
+                climb.setMaxPairs(number(option, value));
+                break;
+            case "--seed":
+                climb.setSeed(number(option, value));
+                break;
+            case "--limit":
+                limit = number(option, value);
+                break;
+            case "--threads":
+                threads = Math.max(1, number(option, value));
+                break;
+            default:
+                throw error("unknown option %s", arg);
+            }
+        }
+        if (sample != null) {
+            climb.setNGrams(new NGrams(climb._alphabet, n, sample));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        List<Solution> found;
+        try {
+            found = climb.solve(pool);
+        } finally {
+            pool.shutdown();
+        }
+        for (Solution solution : found.subList(0,
+                 Math.min(limit, found.size()))) {
+            System.out.println(solution);
+        }
+    }
+
+    /** Returns the contents of the file named NAME. */
+    private static String read(String name) {
+        try {
+            return new String(Files.readAllBytes(Paths.get(name)),
+                              StandardCharsets.UTF_8);
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** Returns VALUE, the value of OPTION, as a non-negative number. */
+    private static int number(String option, String value) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result >= 0) {
+                return result;
+            }
+        } catch (NumberFormatException excp) {
+            throw error("%s needs a number", option);
+        }
+        throw error("%s needs a number", option);
+    }
+
+    /** An attack with the machines configured by the configuration text
+     *  CONFIG on the message CIPHERTEXT. */
+    HillClimb(String config, String ciphertext) {
+        _space = new SearchSpace(config);
+        _alphabet = _space.alphabet();
+        _ciphertext = ciphertext.replaceAll("\\s", "");
+        if (_ciphertext.length() < 2) {
+            throw error("ciphertext too short");
+        }
+        _cipher = new int[_ciphertext.length()];
+        for (int i = 0; i < _cipher.length; i += 1) {
+            char ch = _ciphertext.charAt(i);
+            if (!_alphabet.contains(ch)) {
+                throw error("character %c is not in the alphabet", ch);
+            }
+            _cipher[i] = _alphabet.toInt(ch);
+        }
+    }
+
+    /** Returns the rotor orders and settings tried. */
+    SearchSpace space() {
+        return _space;
+    }
+
+    /** Keeps the best KEEP settings, at least one, from the first
+     *  stage. */
+    void setKeep(int keep) {
+        _keep = Math.max(1, keep);
+    }
+
+    /** Climbs RESTARTS times, at least once, from each setting kept. */
+    void setRestarts(int restarts) {
+        _restarts = Math.max(1, restarts);
+    }
+
+    /** Allows at most MAXPAIRS plugboard pairs. */
+    void setMaxPairs(int maxPairs) {
+        _maxPairs = maxPairs;
+    }
+
+    /** Seeds the random restarts with SEED. */
+    void setSeed(long seed) {
+        _seed = seed;
+    }
+
+    /** Scores plugboards by NGRAMS after the index of coincidence, or
+     *  only by the latter if NGRAMS is null. */
+    void setNGrams(NGrams ngrams) {
+        _ngrams = ngrams;
+    }
+
+    /** Runs both stages in POOL, printing a summary of each, and returns
+     *  the best solution from each setting climbed, best first. */
+    List<Solution> solve(ForkJoinPool pool) {
+        List<Start> jobs = new ArrayList<>();
+        for (String[] order : _space.orders()) {
+            for (int[] template : _space.templates()) {
+                jobs.add(new Start(order, template, 0));
+            }
+        }
+        _start = System.nanoTime();
+        List<Start> starts = jobs.isEmpty() ? new ArrayList<>()
+            : pool.invoke(new RankTask(jobs, 0, jobs.size()));
+        double seconds = (System.nanoTime() - _start) / 1e9;
+        System.out.printf("Stage 1: tested %d settings of %d rotor orders "
+                          + "in %.3fs (%.0f/s); kept %d.%n", _tested.sum(),
+                          _space.orders().size(), seconds,
+                          _tested.sum() / Math.max(seconds, 1e-9),
+                          starts.size());
+
+        long stage = System.nanoTime();
+        List<Climb> climbs = new ArrayList<>();
+        for (Start start : starts) {
+            int[][] scramblers = scramblers(start);
+            for (int r = 0; r < _restarts; r += 1) {
+                climbs.add(new Climb(start, scramblers, r, climbs.size()));
+            }
+        }
+        List<Solution> solutions = climbs.isEmpty() ? new ArrayList<>()
+            : pool.invoke(new ClimbTask(climbs, 0, climbs.size()));
+        List<Solution> result = new ArrayList<>();
+        for (Start start : starts) {
+            Solution best = null;
+            for (Solution solution : solutions) {
+                if (solution._start == start
+                    && (best == null || solution._score > best._score)) {
+                    best = solution;
+                }
+            }
+            if (best != null) {
+                result.add(best.verified(this));
+            }
+        }
+        Collections.sort(result);
+        System.out.printf("Stage 2: %d climbs in %.3fs.%n", climbs.size(),
+                          (System.nanoTime() - stage) / 1e9);
+        return result;
+    }
+
+    /** Returns the best starts, by index of coincidence without a
+     *  plugboard, among those matching the template of JOB with its
+     *  rotors: at most _keep of them, best first. */
+    private List<Start> rank(Start job) {
+        Machine machine = _space.machine();
+        machine.insertRotors(job._order);
+        machine.setPlugboard(new Permutation("", _alphabet));
+        int[] settings = job._settings.clone();
+        int[] wild = SearchSpace.wildcards(settings);
+        int[] plain = new int[_cipher.length];
+        int[] counts = new int[_alphabet.size()];
+        PriorityQueue<Start> best = new PriorityQueue<>();
+        long count = 0;
+        do {
+            machine.setSettings(settings);
+            for (int i = 0; i < _cipher.length; i += 1) {
+                plain[i] = machine.convert(_cipher[i]);
+            }
+            double ioc = NGrams.indexOfCoincidence(plain, plain.length,
+                                                   counts);
+            if (best.size() < _keep || ioc > best.peek()._ioc) {
+                best.add(new Start(job._order, settings.clone(), ioc));
+                if (best.size() > _keep) {
+                    best.poll();
+                }
+            }
+            count += 1;
+        } while (_space.next(settings, wild));
+        _tested.add(count);
+        List<Start> result = new ArrayList<>(best);
+        Collections.sort(result, Collections.reverseOrder());
+        return result;
+    }
+
+    /** Returns the permutation, without the plugboard, performed by the
+     *  machine set up as START at each position of the message. */
+    private int[][] scramblers(Start start) {
+        Machine machine = _space.machine();
+        machine.insertRotors(start._order);
+        machine.setPlugboard(new Permutation("", _alphabet));
+        machine.setSettings(start._settings);
+        int[][] result = new int[_cipher.length][_alphabet.size()];
+        for (int[] scrambler : result) {
+            machine.advance();
+            machine.mapping(scrambler);
+        }
+        return result;
+    }
+
+    /** Returns the best solution found by climbing as described by
+     *  CLIMB. */
+    private Solution climb(Climb climb) {
+        int size = _alphabet.size();
+        SplittableRandom random =
+            new SplittableRandom(_seed * 1000003L + climb._number);
+        int[] partners = new int[size];
+        for (int a = 0; a < size; a += 1) {
+            partners[a] = a;
+        }
+        for (int k = climb._restart == 0 ? 0 : random.nextInt(_maxPairs + 1);
+             k > 0; k -= 1) {
+            int a = random.nextInt(size), b = random.nextInt(size);
+            if (a != b && partners[a] == a && partners[b] == b) {
+                partners[a] = b;
+                partners[b] = a;
+            }
+        }
+        Scorer scorer = new Scorer(climb._scramblers);
+        scorer.climb(partners, false);
+        if (_ngrams != null) {
+            scorer.climb(partners, true);
+        }
+        return new Solution(climb._start, partners,
+                            scorer.score(partners, _ngrams != null),
+                            scorer.score(partners, false),
+                            System.nanoTime() - _start);
+    }
+
+    /** Scores trial plugboards by decrypting the message with them, in
+     *  arrays allocated once. */
+    final class Scorer {
+
+        /** A scorer for the message when the rotors perform SCRAMBLERS[J]
+         *  at each position J. */
+        Scorer(int[][] scramblers) {
+            _scramblers = scramblers;
+            _plain = new int[_cipher.length];
+            _counts = new int[_alphabet.size()];
+        }
+
+        /** Changes PARTNERS, a plugboard giving the partner of each
+         *  character, until connecting or disconnecting no pair raises
+         *  its score, by n-grams iff NGRAMS. */
+        void climb(int[] partners, boolean ngrams) {
+            int size = partners.length;
+            int pairs = 0;
+            for (int a = 0; a < size; a += 1) {
+                pairs += partners[a] > a ? 1 : 0;
+            }
+            double best = score(partners, ngrams);
+            boolean improved = true;
+            while (improved) {
+                improved = false;
+                for (int a = 0; a < size; a += 1) {
+                    for (int b = a + 1; b < size; b += 1) {
+                        int pa = partners[a], pb = partners[b];
+                        int change = pa == b ? -1
+                            : 1 - (pa != a ? 1 : 0) - (pb != b ? 1 : 0);
+                        if (pairs + change > _maxPairs) {
+                            continue;
+                        }
+                        partners[pa] = pa;
+                        partners[pb] = pb;
+                        if (pa != b) {
+                            partners[a] = b;
+                            partners[b] = a;
+                        }
+                        double score = score(partners, ngrams);
+                        if (score > best) {
+                            best = score;
+                            pairs += change;
+                            improved = true;
+                        } else {
+                            partners[a] = pa;
+                            partners[pa] = a;
+                            partners[b] = pb;
+                            partners[pb] = b;
+                        }
+                    }
+                }
+            }
+        }
+
+        /** Returns the score of the decryption with plugboard PARTNERS:
+         *  its n-gram log-likelihood if NGRAMS, and otherwise its index of
+         *  coincidence. */
+        double score(int[] partners, boolean ngrams) {
+            int[] cipher = _cipher;
+            int[] plain = _plain;
+            int[][] scramblers = _scramblers;
+            for (int i = 0; i < cipher.length; i += 1) {
+                plain[i] = partners[scramblers[i][partners[cipher[i]]]];
+            }
+            if (ngrams) {
+                return _ngrams.score(plain, plain.length);
+            }
+            return NGrams.indexOfCoincidence(plain, plain.length, _counts);
+        }
+
+        /** The rotors' permutation at each position. */
+        private final int[][] _scramblers;
+
+        /** The decryption. */
+        private final int[] _plain;
+
+        /** Work array for the index of coincidence. */
+        private final int[] _counts;
+    }
+
+    /** A rotor order and settings, or a template of settings, with the
+     *  index of coincidence of the message decrypted with them without a
+     *  plugboard. */
+    private static final class Start implements Comparable<Start> {
+
+        /** The settings SETTINGS for the rotors named ORDER, with index of
+         *  coincidence IOC. */
+        Start(String[] order, int[] settings, double ioc) {
+            _order = order;
+            _settings = settings;
+            _ioc = ioc;
+        }
+
+        @Override
+        public int compareTo(Start other) {
+            return Double.compare(_ioc, other._ioc);
+        }
+
+        /** The rotor names. */
+        private final String[] _order;
+
+        /** The settings, with the reflector's first. */
+        private final int[] _settings;
+
+        /** The index of coincidence. */
+        private final double _ioc;
+    }
+
+    /** One climb from a start, with the rotor permutations at each
+     *  position of the message. */
+    private static final class Climb {
+
+        /** The climb numbered RESTART from START, whose rotors perform
+         *  SCRAMBLERS, and NUMBER among all climbs. */
+        Climb(Start start, int[][] scramblers, int restart, int number) {
+            _start = start;
+            _scramblers = scramblers;
+            _restart = restart;
+            _number = number;
+        }
+
+        /** The rotors and settings. */
+        private final Start _start;
+
+        /** The rotors' permutation at each position. */
+        private final int[][] _scramblers;
+
+        /** The number of this climb among those from _start. */
+        private final int _restart;
+
+        /** The number of this climb among all. */
+        private final int _number;
+    }
+
+    /** The result of a climb. */
+    static final class Solution implements Comparable<Solution> {
+
+        /** A solution with the rotors and settings of START, the plugboard
+         *  PARTNERS, score SCORE and index of coincidence IOC, found NANOS
+         *  nanoseconds into the search. */
+        Solution(Start start, int[] partners, double score, double ioc,
+                 long nanos) {
+            _start = start;
+            _partners = partners;
+            _score = score;
+            _ioc = ioc;
+            _nanos = nanos;
+        }
+
+        /** Returns this solution with the plaintext and settings line
+         *  produced by a machine of ATTACK set up as it says. */
+        Solution verified(HillClimb attack) {
+            Machine machine = attack._space.machine();
+            machine.insertRotors(_start._order);
+            machine.setSettings(_start._settings);
+            _plugboard = attack._space.plugboard(_partners);
+            machine.setPlugboard(new Permutation(_plugboard,
+                                                 attack._alphabet));
+            _plaintext = machine.convert(attack._ciphertext);
+            _setting = attack._space.setting(_start._settings);
+            return this;
+        }
+
+        /** Orders solutions by decreasing score. */
+        @Override
+        public int compareTo(Solution other) {
+            return Double.compare(other._score, _score);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder line = new StringBuilder("*");
+            for (String name : _start._order) {
+                line.append(' ').append(name);
+            }
+            line.append(' ').append(_setting);
+            if (!_plugboard.isEmpty()) {
+                line.append(' ').append(_plugboard);
+            }
+            String plaintext = _plaintext.length() > Candidate.PREVIEW
+                ? _plaintext.substring(0, Candidate.PREVIEW) + "..."
+                : _plaintext;
+            return String.format("%9.3fs  score %.2f  IoC %.4f  %s%n"
+                                 + "           %s", _nanos / 1e9, _score,
+                                 _ioc, line, plaintext);
+        }
+
+        /** The rotors and settings. */
+        private final Start _start;
+
+        /** The partner of each character on the plugboard. */
+        private final int[] _partners;
+
+        /** The score of the decryption. */
+        private final double _score;
+
+        /** The index of coincidence of the decryption. */
+        private final double _ioc;
+
+        /** Time into the search at which this was found. */
+        private final long _nanos;
+
+        /** The plugboard in cycle notation, once verified. */
+        private String _plugboard;
+
+        /** The starting settings as characters, once verified. */
+        private String _setting;
+
+        /** The decryption, once verified. */
+        private String _plaintext;
+    }
+
+    /** Ranks the settings of the jobs numbered LO to HI - 1 of a list,
+     *  splitting them among tasks until each has one, and returns the
+     *  best _keep. */
+    private final class RankTask extends RecursiveTask<List<Start>> {
+
+        /** A task ranking JOBS[LO .. HI - 1]. */
+        RankTask(List<Start> jobs, int lo, int hi) {
+            _jobs = jobs;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected List<Start> compute() {
+            if (_hi - _lo == 1) {
+                return rank(_jobs.get(_lo));
+            }
+            int mid = (_lo + _hi) >>> 1;
+            RankTask left = new RankTask(_jobs, _lo, mid);
+            left.fork();
+            List<Start> result = new RankTask(_jobs, mid, _hi).compute();
+            result.addAll(left.join());
+            Collections.sort(result, Collections.reverseOrder());
+            return new ArrayList<>(result.subList(0,
+                Math.min(_keep, result.size())));
+        }
+
+        /** The jobs, each a rotor order with a settings template. */
+        private final List<Start> _jobs;
+
+        /** The first job run. */
+        private final int _lo;
+
+        /** One past the last job run. */
+        private final int _hi;
+    }
+
+    /** Runs the climbs numbered LO to HI - 1 of a list, splitting them
+     *  among tasks until each has one. */
+    private final class ClimbTask extends RecursiveTask<List<Solution>> {
+
+        /** A task running CLIMBS[LO .. HI - 1]. */
+        ClimbTask(List<Climb> climbs, int lo, int hi) {
+            _climbs = climbs;
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected List<Solution> compute() {
+            if (_hi - _lo == 1) {
+                List<Solution> result = new ArrayList<>();
+                result.add(climb(_climbs.get(_lo)));
+                return result;
+            }
+            int mid = (_lo + _hi) >>> 1;
+            ClimbTask left = new ClimbTask(_climbs, _lo, mid);
+            left.fork();
+            List<Solution> result =
+                new ClimbTask(_climbs, mid, _hi).compute();
+            result.addAll(left.join());
+            return result;
+        }
+
+        /** The climbs. */
+        private final List<Climb> _climbs;
+
+        /** The first climb run. */
+        private final int _lo;
+
+        /** One past the last climb run. */
+        private final int _hi;
+    }
+
+    /** The rotor orders and settings tried. */
+    private final SearchSpace _space;
+
+    /** The alphabet of the configuration. */
+    private final Alphabet _alphabet;
+
+    /** The message, without whitespace. */
+    private final String _ciphertext;
+
+    /** The message, as indices. */
+    private final int[] _cipher;
+
+    /** N-gram statistics of the plaintext language, or null. */
+    private NGrams _ngrams;
+
+    /** Number of settings kept from the first stage. */
+    private int _keep = 20;
+
+    /** Number of climbs from each setting kept. */
+    private int _restarts = 16;
+
+    /** Most plugboard pairs. */
+    private int _maxPairs = 10;
+
+    /** Seed of the random restarts. */
+    private long _seed;
+
+    /** Number of settings tested in the first stage. */
+    private final LongAdder _tested = new LongAdder();
+
+    /** System.nanoTime() at the start of the search. */
+    private long _start;
+}
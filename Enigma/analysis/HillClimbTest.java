@@ -0,0 +1,206 @@
+package enigma.analysis;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+
+import enigma.Machine;
+import enigma.Main;
+import enigma.Permutation;
+
+/** The suite of all JUnit tests for the HillClimb class.
+ *  @author Sameer Keswani
+ */
+public class HillClimbTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The rotors of testing/correct/default.conf used here. */
+    private static final String CONFIG =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ\n"
+        + " 5 3\n"
+        + " I MQ      (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + " III MV    (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)\n"
+        + " IV MJ     (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)\n"
+        + " Beta N    (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + " B R       (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)\n"
+        + "           (RX) (SZ) (TV)\n";
+
+    /** The rotors of the machine that encrypted the message. */
+    private static final String[] ROTORS = {
+        "B", "Beta", "III", "IV", "I"
+    };
+
+    /** The settings of the machine that encrypted the message. */
+    private static final String SETTING = "AXLE";
+
+    /** The plugboard of the machine that encrypted the message, with its
+     *  pairs in alphabetical order. */
+    private static final String PLUGBOARD = "(BY) (EX) (HQ) (IP) (RT)";
+
+    /** A sample of English, from which n-grams are learned. */
+    private static final String SAMPLE =
+        "It was the best of times, it was the worst of times, it was the "
+        + "age of wisdom, it was the age of foolishness, it was the epoch "
+        + "of belief, it was the epoch of incredulity, it was the season "
+        + "of Light, it was the season of Darkness, it was the spring of "
+        + "hope, it was the winter of despair, we had everything before "
+        + "us, we had nothing before us, we were all going direct to "
+        + "Heaven, we were all going direct the other way. In short, the "
+        + "period was so far like the present period, that some of its "
+        + "noisiest authorities insisted on its being received, for good "
+        + "or for evil, in the superlative degree of comparison only. "
+        + "There were a king with a large jaw and a queen with a plain "
+        + "face, on the throne of England; there were a king with a large "
+        + "jaw and a queen with a fair face, on the throne of France. In "
+        + "both countries it was clearer than crystal to the lords of the "
+        + "State preserves of loaves and fishes, that things in general "
+        + "were settled for ever.";
+
+    /** The message, in SAMPLE's language but not taken from it. */
+    private static final String PLAINTEXT =
+        "THEWEATHERTOMORROWWILLBECOLDANDWETWITHRAININTHEMORNINGANDSTRONG"
+        + "WINDSFROMTHEWESTTHATWILLLASTUNTILTHEEVENINGWHENTHESKYSHOULD"
+        + "CLEARANDTHEWINDDROPSOTHATTHENIGHTWILLBEFROSTYINTHEVALLEYS";
+
+    /** Returns a machine with ROTORS, at SETTING and with PLUGBOARD. */
+    private Machine machine(String setting, String plugboard) {
+        Machine machine = Main.readConfig(new Scanner(CONFIG));
+        machine.insertRotors(ROTORS);
+        machine.setRotors(setting);
+        machine.setPlugboard(new Permutation(plugboard,
+                                             machine.alphabet()));
+        return machine;
+    }
+
+    /** Returns PLAINTEXT encrypted with the key. */
+    private String ciphertext() {
+        return machine(SETTING, PLUGBOARD).convert(PLAINTEXT);
+    }
+
+    /** Returns the permutation of the rotors, without the plugboard, at
+     *  each position of the message, as HillClimb finds them. */
+    private int[][] scramblers() {
+        Machine machine = machine(SETTING, "");
+        int[][] result =
+            new int[PLAINTEXT.length()][machine.alphabet().size()];
+        for (int[] scrambler : result) {
+            machine.advance();
+            machine.mapping(scrambler);
+        }
+        return result;
+    }
+
+    /** Returns a plugboard of PAIRS random pairs chosen with RANDOM, as
+     *  the partner of each character. */
+    private int[] randomPlugboard(Random random, int pairs) {
+        int[] result = identity();
+        while (pairs > 0) {
+            int a = random.nextInt(result.length);
+            int b = random.nextInt(result.length);
+            if (a != b && result[a] == a && result[b] == b) {
+                result[a] = b;
+                result[b] = a;
+                pairs -= 1;
+            }
+        }
+        return result;
+    }
+
+    /** Returns the plugboard connecting nothing. */
+    private int[] identity() {
+        int[] result = new int[26];
+        for (int a = 0; a < result.length; a += 1) {
+            result[a] = a;
+        }
+        return result;
+    }
+
+    /** Check that PARTNERS is an involution with at most MAXPAIRS pairs.
+     *  TESTID is used in error messages. */
+    private void checkInvolution(String testId, int[] partners,
+                                 int maxPairs) {
+        int pairs = 0;
+        for (int a = 0; a < partners.length; a += 1) {
+            assertEquals(testId + " (partner of partner of " + a + ")",
+                         a, partners[partners[a]]);
+            pairs += partners[a] > a ? 1 : 0;
+        }
+        assertTrue(testId + " (too many pairs)", pairs <= maxPairs);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testClimbKeepsInvolution() {
+        HillClimb attack = new HillClimb(CONFIG, ciphertext());
+        attack.setMaxPairs(6);
+        HillClimb.Scorer scorer = attack.new Scorer(scramblers());
+        Random random = new Random(61);
+        for (int trial = 0; trial < 5; trial += 1) {
+            int[] partners = randomPlugboard(random, trial + 2);
+            double before = scorer.score(partners, false);
+            scorer.climb(partners, false);
+            checkInvolution("trial " + trial, partners, 6);
+            assertTrue("trial " + trial + " lost score",
+                       scorer.score(partners, false) >= before);
+        }
+    }
+
+    @Test
+    public void testClimbRevertsExactly() {
+        HillClimb attack = new HillClimb(CONFIG, ciphertext());
+        attack.setMaxPairs(10);
+        HillClimb.Scorer scorer = attack.new Scorer(scramblers());
+        int[] partners = randomPlugboard(new Random(62), 7);
+        scorer.climb(partners, false);
+        int[] top = partners.clone();
+        scorer.climb(partners, false);
+        assertArrayEquals("a climb from the top moved", top, partners);
+    }
+
+    @Test
+    public void testClimbWithoutPairs() {
+        HillClimb attack = new HillClimb(CONFIG, ciphertext());
+        attack.setMaxPairs(0);
+        HillClimb.Scorer scorer = attack.new Scorer(scramblers());
+        int[] partners = identity();
+        scorer.climb(partners, false);
+        assertArrayEquals(identity(), partners);
+    }
+
+    @Test
+    public void testRecoversKey() {
+        HillClimb attack = new HillClimb(CONFIG, ciphertext());
+        attack.space().setRotors("B Beta III IV I");
+        attack.space().setSetting("AXL?");
+        attack.setKeep(3);
+        attack.setRestarts(4);
+        attack.setMaxPairs(10);
+        attack.setSeed(1);
+        attack.setNGrams(new NGrams(attack.space().alphabet(), 3, SAMPLE));
+        ForkJoinPool pool = new ForkJoinPool(2);
+        List<HillClimb.Solution> found;
+        try {
+            found = attack.solve(pool);
+        } finally {
+            pool.shutdown();
+        }
+        assertFalse(found.isEmpty());
+        String best = found.get(0).toString();
+        assertTrue(best, best.contains("* B Beta III IV I " + SETTING
+                                       + " " + PLUGBOARD));
+        assertTrue(best, best.contains(PLAINTEXT.substring(0,
+                                           Candidate.PREVIEW)));
+    }
+}
@@ -0,0 +1,216 @@
+package enigma.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import enigma.Alphabet;
+
+import static enigma.EnigmaException.*;
+
+/** The menu of a crib: a graph whose vertices are the characters of the
+ *  crib and of the ciphertext aligned with it, with an edge between each
+ *  crib character and the ciphertext character under it, labelled with
+ *  its position in the crib.  If the plugboard is P and the rest of the
+ *  machine, at crib position J, is the involution S[J], an edge between
+ *  A and B at J says that S[J] maps P(A) to P(B) and back.  So a guess at
+ *  the plugboard partner of one character, the centre, implies the
+ *  partners of every character connected to it, and the loops of the
+ *  graph make wrong guesses contradict themselves, as on the Bombe.
+ *  @author Sameer Keswani
+ */
+class Menu {
+
+    /** The menu of CRIB, of characters in ALPHABET, placed under the
+     *  characters of CIPHERTEXT starting at OFFSET.  Neither contains
+     *  whitespace. */
+    Menu(Alphabet alphabet, String crib, String ciphertext, int offset) {
+        if (!fits(crib, ciphertext, offset)) {
+            throw error("crib cannot be at position %d", offset);
+        }
+        _size = alphabet.size();
+        _offset = offset;
+        _length = crib.length();
+        List<List<int[]>> edges = new ArrayList<>();
+        for (int i = 0; i < _size; i += 1) {
+            edges.add(new ArrayList<>());
+        }
+        for (int j = 0; j < _length; j += 1) {
+            int a = index(alphabet, crib.charAt(j));
+            int b = index(alphabet, ciphertext.charAt(offset + j));
+            edges.get(a).add(new int[] { b, j });
+            edges.get(b).add(new int[] { a, j });
+        }
+        _adjacent = new int[_size][];
+        _positions = new int[_size][];
+        for (int a = 0; a < _size; a += 1) {
+            List<int[]> list = edges.get(a);
+            _adjacent[a] = new int[list.size()];
+            _positions[a] = new int[list.size()];
+            for (int k = 0; k < list.size(); k += 1) {
+                _adjacent[a][k] = list.get(k)[0];
+                _positions[a][k] = list.get(k)[1];
+            }
+            if (_adjacent[a].length > _adjacent[_centre].length) {
+                _centre = a;
+            }
+        }
+    }
+
+    /** Returns true iff CRIB can lie under CIPHERTEXT at OFFSET: it fits
+     *  within it, and no character would encrypt to itself, which the
+     *  reflector makes impossible. */
+    static boolean fits(String crib, String ciphertext, int offset) {
+        if (offset < 0 || offset + crib.length() > ciphertext.length()) {
+            return false;
+        }
+        for (int j = 0; j < crib.length(); j += 1) {
+            if (crib.charAt(j) == ciphertext.charAt(offset + j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the index of CH in ALPHABET. */
+    private static int index(Alphabet alphabet, char ch) {
+        if (!alphabet.contains(ch)) {
+            throw error("character %c is not in the alphabet", ch);
+        }
+        return alphabet.toInt(ch);
+    }
+
+    /** Returns the length of the crib. */
+    int length() {
+        return _length;
+    }
+
+    /** Returns the position in the ciphertext of the crib. */
+    int offset() {
+        return _offset;
+    }
+
+    /** Returns the character with the most edges, whose partner is
+     *  guessed. */
+    int centre() {
+        return _centre;
+    }
+
+    /** Returns the number of independent loops in the menu: its edges,
+     *  less its vertices, plus its connected components. */
+    int loops() {
+        int[] component = new int[_size];
+        Arrays.fill(component, -1);
+        int vertices = 0, components = 0;
+        for (int a = 0; a < _size; a += 1) {
+            if (_adjacent[a].length > 0 && component[a] < 0) {
+                components += 1;
+                vertices += mark(a, components, component);
+            }
+        }
+        return _length - vertices + components;
+    }
+
+    /** Marks every character connected to A with COMPONENT in MARKS, and
+     *  returns how many were not marked already. */
+    private int mark(int a, int component, int[] marks) {
+        int count = 0;
+        int[] stack = new int[_size];
+        int top = 0;
+        stack[top++] = a;
+        marks[a] = component;
+        while (top > 0) {
+            int b = stack[--top];
+            count += 1;
+            for (int c : _adjacent[b]) {
+                if (marks[c] < 0) {
+                    marks[c] = component;
+                    stack[top++] = c;
+                }
+            }
+        }
+        return count;
+    }
+
+    /** Returns the plugboards consistent with the menu when the machine
+     *  without its plugboard is SCRAMBLERS[J] at each crib position J.
+     *  Each is an array giving the partner of each character, itself if
+     *  it is unplugged, or -1 if the menu says nothing about it; there is
+     *  one for each partner of the centre from which no contradiction
+     *  follows. */
+    List<int[]> stops(int[][] scramblers) {
+        List<int[]> result = new ArrayList<>();
+        int[] partners = new int[_size];
+        int[] queue = new int[_size];
+        for (int guess = 0; guess < _size; guess += 1) {
+            Arrays.fill(partners, -1);
+            if (consistent(guess, scramblers, partners, queue)) {
+                result.add(partners.clone());
+            }
+        }
+        return result;
+    }
+
+    /** Returns true iff the partners that follow from pairing the centre
+     *  with GUESS, recorded in PARTNERS, never contradict one another,
+     *  given SCRAMBLERS.  QUEUE is a work array. */
+    private boolean consistent(int guess, int[][] scramblers,
+                               int[] partners, int[] queue) {
+        int head = 0, tail = 0;
+        if (!pair(_centre, guess, partners)) {
+            return false;
+        }
+        queue[tail++] = _centre;
+        if (guess != _centre) {
+            queue[tail++] = guess;
+        }
+        while (head < tail) {
+            int a = queue[head++];
+            int v = partners[a];
+            for (int k = 0; k < _adjacent[a].length; k += 1) {
+                int b = _adjacent[a][k];
+                int w = scramblers[_positions[a][k]][v];
+                if (partners[b] == w) {
+                    continue;
+                } else if (!pair(b, w, partners)) {
+                    return false;
+                }
+                queue[tail++] = b;
+                if (w != b) {
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return true;
+    }
+
+    /** Records A and B as partners in PARTNERS and returns true, unless
+     *  either already has a partner, in which case returns false. */
+    private static boolean pair(int a, int b, int[] partners) {
+        if (partners[a] >= 0 || partners[b] >= 0) {
+            return false;
+        }
+        partners[a] = b;
+        partners[b] = a;
+        return true;
+    }
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Position in the ciphertext of the crib. */
+    private final int _offset;
+
+    /** Length of the crib. */
+    private final int _length;
+
+    /** _adjacent[A] lists the characters with an edge to A. */
+    private final int[][] _adjacent;
+
+    /** _positions[A][K] is the crib position labelling the edge from A to
+     *  _adjacent[A][K]. */
+    private final int[][] _positions;
+
+    /** The character with the most edges. */
+    private int _centre;
+}
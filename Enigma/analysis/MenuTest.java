@@ -0,0 +1,148 @@
+package enigma.analysis;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Scanner;
+
+import enigma.Alphabet;
+import enigma.Machine;
+import enigma.Main;
+import enigma.Permutation;
+
+/** The suite of all JUnit tests for the Menu class.
+ *  @author Sameer Keswani
+ */
+public class MenuTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The rotors of testing/correct/default.conf used here. */
+    private static final String CONFIG =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ\n"
+        + " 5 3\n"
+        + " I MQ      (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + " III MV    (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)\n"
+        + " IV MJ     (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)\n"
+        + " Beta N    (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + " B R       (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)\n"
+        + "           (RX) (SZ) (TV)\n";
+
+    /** The rotors of the machine that encrypted CIPHERTEXT. */
+    private static final String[] ROTORS = {
+        "B", "Beta", "III", "IV", "I"
+    };
+
+    /** The plugboard of the machine that encrypted CIPHERTEXT. */
+    private static final String PLUGBOARD = "(HQ) (EX) (IP) (TR) (BY)";
+
+    /** The message encrypted, with the crib at CRIB_OFFSET. */
+    private static final String PLAINTEXT =
+        "ANXOBERKOMMANDOWETTERVORHERSAGEBISKAYAXREGENUNDNEBELXENDE";
+
+    /** The crib. */
+    private static final String CRIB = "WETTERVORHERSAGEBISKAYA";
+
+    /** Position of CRIB in PLAINTEXT. */
+    private static final int CRIB_OFFSET = PLAINTEXT.indexOf(CRIB);
+
+    /** Returns a machine with ROTORS, at SETTING and with PLUGBOARD. */
+    private Machine machine(String setting, String plugboard) {
+        Machine machine = Main.readConfig(new Scanner(CONFIG));
+        machine.insertRotors(ROTORS);
+        machine.setRotors(setting);
+        machine.setPlugboard(new Permutation(plugboard,
+                                             machine.alphabet()));
+        return machine;
+    }
+
+    /** Returns the scramblers of the menu MENU for the machine with
+     *  ROTORS starting at SETTING, found as Bombe finds them: without a
+     *  plugboard, stepped to each position of the crib. */
+    private int[][] scramblers(Menu menu, String setting) {
+        Machine machine = machine(setting, "");
+        int[][] result = new int[menu.length()][machine.alphabet().size()];
+        machine.advance(menu.offset());
+        for (int[] scrambler : result) {
+            machine.advance();
+            machine.mapping(scrambler);
+        }
+        return result;
+    }
+
+    /** Returns the menu of CRIB under the encryption of PLAINTEXT with the
+     *  key AXLE. */
+    private Menu menu() {
+        Machine machine = machine("AXLE", PLUGBOARD);
+        String ciphertext = machine.convert(PLAINTEXT);
+        return new Menu(machine.alphabet(), CRIB, ciphertext, CRIB_OFFSET);
+    }
+
+    /** Returns the partner in PLUGBOARD of each character of ALPHA, as
+     *  an index. */
+    private int[] plugged(Alphabet alpha) {
+        int[] result = new int[alpha.size()];
+        for (int a = 0; a < result.length; a += 1) {
+            result[a] = a;
+        }
+        String pairs = PLUGBOARD.replaceAll("[() ]", "");
+        for (int i = 0; i < pairs.length(); i += 2) {
+            int a = alpha.toInt(pairs.charAt(i));
+            int b = alpha.toInt(pairs.charAt(i + 1));
+            result[a] = b;
+            result[b] = a;
+        }
+        return result;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testFits() {
+        assertTrue(Menu.fits("AB", "BCA", 0));
+        assertTrue(Menu.fits("AB", "BCA", 1));
+        assertFalse(Menu.fits("AB", "BCA", 2));
+        assertFalse(Menu.fits("AB", "CBA", 0));
+        assertFalse(Menu.fits("AB", "BCA", -1));
+    }
+
+    @Test
+    public void testMenu() {
+        Menu menu = menu();
+        assertEquals(CRIB.length(), menu.length());
+        assertEquals(CRIB_OFFSET, menu.offset());
+        assertTrue("too few loops to test stops", menu.loops() >= 3);
+    }
+
+    @Test
+    public void testStopsAtKey() {
+        Menu menu = menu();
+        int[] plugged = plugged(machine("AXLE", "").alphabet());
+        boolean found = false;
+        for (int[] partners : menu.stops(scramblers(menu, "AXLE"))) {
+            boolean agrees = partners[menu.centre()] >= 0;
+            for (int a = 0; a < partners.length; a += 1) {
+                agrees &= partners[a] < 0 || partners[a] == plugged[a];
+            }
+            found |= agrees;
+        }
+        assertTrue("the key's plugboard was rejected", found);
+    }
+
+    @Test
+    public void testNoStopsAtWrongSettings() {
+        Menu menu = menu();
+        for (String setting : new String[] { "AXLF", "AXME", "BXLE",
+                                              "AAAA" }) {
+            List<int[]> stops = menu.stops(scramblers(menu, setting));
+            assertTrue(setting + " was not rejected", stops.isEmpty());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package enigma.analysis;
+
+import java.util.Arrays;
+
+import enigma.Alphabet;
+
+import static enigma.EnigmaException.*;
+
+/** The log-probabilities of the n-grams of a language, learned from a
+ *  sample of it.  They are kept in one float array indexed by the digits
+ *  of each n-gram in base alphabet size, so scoring a text costs an array
+ *  lookup per character and allocates nothing.  N-grams missing from the
+ *  sample are scored as if seen FLOOR times.
+ *  @author Sameer Keswani
+ */
+class NGrams {
+
+    /** Count given to n-grams never seen. */
+    static final double FLOOR = 0.01;
+
+    /** Most entries in a table. */
+    static final int MAX_ENTRIES = 1 << 24;
+
+    /** The n-grams of length N of SAMPLE, counting only characters in
+     *  ALPHABET or whose upper-case forms are in it. */
+    NGrams(Alphabet alphabet, int n, CharSequence sample) {
+        _size = alphabet.size();
+        _n = n;
+        long entries = 1;
+        for (int i = 0; i < n && entries <= MAX_ENTRIES; i += 1) {
+            entries *= _size;
+        }
+        if (n < 1 || entries > MAX_ENTRIES) {
+            throw error("cannot keep %d-grams of %d characters", n, _size);
+        }
+        _high = (int) (entries / _size);
+        int[] counts = new int[(int) entries];
+        long total = 0;
+        int index = 0, seen = 0;
+        for (int i = 0; i < sample.length(); i += 1) {
+            char ch = sample.charAt(i);
+            if (!alphabet.contains(ch)) {
+                ch = Character.toUpperCase(ch);
+                if (!alphabet.contains(ch)) {
+                    continue;
+                }
+            }
+            index = (index % _high) * _size + alphabet.toInt(ch);
+            seen += 1;
+            if (seen >= n) {
+                counts[index] += 1;
+                total += 1;
+            }
+        }
+        if (total == 0) {
+            throw error("sample has no %d-grams", n);
+        }
+        _table = new float[counts.length];
+        for (int i = 0; i < counts.length; i += 1) {
+            double count = counts[i] == 0 ? FLOOR : counts[i];
+            _table[i] = (float) Math.log(count / total);
+        }
+    }
+
+    /** Returns the length of my n-grams. */
+    int n() {
+        return _n;
+    }
+
+    /** Returns the sum of the log-probabilities of the n-grams of the
+     *  first LENGTH characters, as indices, of TEXT. */
+    double score(int[] text, int length) {
+        if (length < _n) {
+            return 0;
+        }
+        int index = 0;
+        for (int i = 0; i < _n - 1; i += 1) {
+            index = index * _size + text[i];
+        }
+        double result = 0;
+        for (int i = _n - 1; i < length; i += 1) {
+            index = index * _size + text[i];
+            result += _table[index];
+            index -= text[i - _n + 1] * _high;
+        }
+        return result;
+    }
+
+    /** Returns the index of coincidence of the first LENGTH characters,
+     *  as indices, of TEXT: the chance that two of them chosen at random
+     *  are the same.  COUNTS, with an entry for each character, is
+     *  overwritten. */
+    static double indexOfCoincidence(int[] text, int length, int[] counts) {
+        if (length < 2) {
+            return 0;
+        }
+        Arrays.fill(counts, 0);
+        for (int i = 0; i < length; i += 1) {
+            counts[text[i]] += 1;
+        }
+        long pairs = 0;
+        for (int count : counts) {
+            pairs += (long) count * (count - 1);
+        }
+        return (double) pairs / ((long) length * (length - 1));
+    }
+
+    /** Size of the alphabet. */
+    private final int _size;
+
+    /** Length of the n-grams. */
+    private final int _n;
+
+    /** Value of the first digit of an n-gram index: _size ** (_n - 1). */
+    private final int _high;
+
+    /** Log-probability of each n-gram, by index. */
+    private final float[] _table;
+}
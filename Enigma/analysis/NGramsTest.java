@@ -0,0 +1,83 @@
+package enigma.analysis;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import enigma.Alphabet;
+import enigma.EnigmaException;
+
+/** The suite of all JUnit tests for the NGrams class.
+ *  @author Sameer Keswani
+ */
+public class NGramsTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Largest difference allowed between log-probabilities, which are
+     *  kept as floats. */
+    private static final double DELTA = 1e-6;
+
+    /** A two-character alphabet. */
+    private Alphabet ab = new Alphabet("AB");
+
+    /** The bigrams of a sample whose counted characters are AABAB, so
+     *  that AA and BA are seen once, AB twice and BB never. */
+    private NGrams bigrams() {
+        return new NGrams(ab, 2, "A a-B\nab?");
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testScore() {
+        NGrams bigrams = bigrams();
+        assertEquals(2, bigrams.n());
+        assertEquals(Math.log(1.0 / 4), bigrams.score(new int[] { 0, 0 }, 2),
+                     DELTA);
+        assertEquals(Math.log(2.0 / 4) + Math.log(1.0 / 4),
+                     bigrams.score(new int[] { 0, 1, 0 }, 3), DELTA);
+        assertEquals(Math.log(NGrams.FLOOR / 4),
+                     bigrams.score(new int[] { 1, 1 }, 2), DELTA);
+        assertEquals(Math.log(2.0 / 4),
+                     bigrams.score(new int[] { 0, 1, 1, 1 }, 2), DELTA);
+        assertEquals(0, bigrams.score(new int[] { 1 }, 1), DELTA);
+    }
+
+    @Test
+    public void testTrigrams() {
+        NGrams trigrams = new NGrams(ab, 3, "ABBA");
+        assertEquals(Math.log(1.0 / 2) + Math.log(1.0 / 2),
+                     trigrams.score(new int[] { 0, 1, 1, 0 }, 4), DELTA);
+        assertEquals(Math.log(NGrams.FLOOR / 2) + Math.log(1.0 / 2),
+                     trigrams.score(new int[] { 1, 1, 1, 0 }, 4), DELTA);
+    }
+
+    @Test
+    public void testIndexOfCoincidence() {
+        int[] counts = new int[3];
+        assertEquals(1.0 / 6, NGrams.indexOfCoincidence(
+                         new int[] { 0, 0, 1, 2 }, 4, counts), DELTA);
+        assertEquals(1.0, NGrams.indexOfCoincidence(
+                         new int[] { 2, 2, 2, 0 }, 3, counts), DELTA);
+        assertEquals(4.0 / 12, NGrams.indexOfCoincidence(
+                         new int[] { 1, 0, 1, 0 }, 4, counts), DELTA);
+        assertEquals(0, NGrams.indexOfCoincidence(
+                         new int[] { 1, 1 }, 1, counts), DELTA);
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testNoNGrams() {
+        new NGrams(ab, 3, "A-B-c");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testTooLong() {
+        new NGrams(new Alphabet("ABCDEFGHIJKLMNOPQRSTUVWXYZ"), 6, "ABCDEFG");
+    }
+}
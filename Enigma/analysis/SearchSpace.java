@@ -0,0 +1,268 @@
+package enigma.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+
+import enigma.Alphabet;
+import enigma.Machine;
+import enigma.Main;
+import enigma.Rotor;
+
+import static enigma.EnigmaException.*;
+
+/** The machine settings an attack tries: the rotor orders allowed by a
+ *  configuration in the form read by enigma.Main, narrowed by a pattern
+ *  of rotor names, and the starting settings matching a pattern of one
+ *  character or WILDCARD for each rotor after the reflector.  Settings
+ *  are arrays as used by Machine.settings, with the reflector's first.
+ *  Each task of a search gets its own copy of one Machine, sharing its
+ *  rotors.
+ *  @author Sameer Keswani
+ */
+class SearchSpace {
+
+    /** The wildcard in rotor and setting patterns. */
+    static final char WILDCARD = '?';
+
+    /** Number of wildcard settings left in each template. */
+    static final int LEAF_WILDCARDS = 3;
+
+    /** Value of a wildcard in a template. */
+    static final int ANY = -1;
+
+    /** The settings of the machines configured by the configuration text
+     *  CONFIG, initially unrestricted. */
+    SearchSpace(String config) {
+        Machine machine = Main.readConfig(new Scanner(config));
+        _machine = machine;
+        _alphabet = machine.alphabet();
+        _numRotors = machine.numRotors();
+        _numPawls = machine.numPawls();
+        _available = new ArrayList<>(machine.rotors());
+        _rotors = new String[_numRotors];
+        Arrays.fill(_rotors, String.valueOf(WILDCARD));
+        _setting = String.valueOf(WILDCARD).repeat(_numRotors - 1);
+    }
+
+    /** Returns the alphabet of the configuration. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Returns a new machine of the configuration, with no rotors yet
+     *  inserted. */
+    Machine machine() {
+        return _machine.copy();
+    }
+
+    /** Tries only the rotors named in PATTERN, one name or wildcard for
+     *  each rotor slot, separated by whitespace. */
+    void setRotors(String pattern) {
+        String[] names = pattern.trim().split("\\s+");
+        if (names.length != _numRotors) {
+            throw error("--rotors needs %d names", _numRotors);
+        }
+        for (int i = 0; i < names.length; i += 1) {
+            if (!names[i].equals(String.valueOf(WILDCARD))
+                && !fitsSlot(find(names[i]), i)) {
+                throw error("rotor %s cannot be in slot %d", names[i], i);
+            }
+        }
+        _rotors = names;
+    }
+
+    /** Tries only the starting settings matching PATTERN. */
+    void setSetting(String pattern) {
+        if (pattern.length() != _numRotors - 1) {
+            throw error("--setting needs %d characters", _numRotors - 1);
+        }
+        for (int i = 0; i < pattern.length(); i += 1) {
+            char ch = pattern.charAt(i);
+            if (ch != WILDCARD && !_alphabet.contains(ch)) {
+                throw error("character %c is not in the alphabet", ch);
+            }
+        }
+        _setting = pattern;
+    }
+
+    /** Returns the rotor orders tried, each naming a rotor for each
+     *  slot. */
+    List<String[]> orders() {
+        List<String[]> result = new ArrayList<>();
+        addOrders(new String[_numRotors], 0, result);
+        return result;
+    }
+
+    /** Returns the number of starting settings tried with each order. */
+    long settingsPerOrder() {
+        long result = 1;
+        for (int i = 0; i < _setting.length(); i += 1) {
+            if (_setting.charAt(i) == WILDCARD) {
+                result *= _alphabet.size();
+            }
+        }
+        return result;
+    }
+
+    /** Returns templates dividing the starting settings tried among
+     *  tasks: the settings pattern with all but its last LEAF_WILDCARDS
+     *  wildcards replaced in every possible way, with ANY for each
+     *  wildcard left. */
+    List<int[]> templates() {
+        int[] pattern = new int[_numRotors];
+        for (int i = 1; i < _numRotors; i += 1) {
+            char ch = _setting.charAt(i - 1);
+            pattern[i] = ch == WILDCARD ? ANY : _alphabet.toInt(ch);
+        }
+        List<int[]> result = new ArrayList<>();
+        result.add(pattern);
+        int wildcards = 0;
+        for (int i = _numRotors - 1; i > 0; i -= 1) {
+            if (pattern[i] != ANY) {
+                continue;
+            }
+            wildcards += 1;
+            if (wildcards <= LEAF_WILDCARDS) {
+                continue;
+            }
+            List<int[]> expanded = new ArrayList<>();
+            for (int[] template : result) {
+                for (int c = 0; c < _alphabet.size(); c += 1) {
+                    int[] copy = template.clone();
+                    copy[i] = c;
+                    expanded.add(copy);
+                }
+            }
+            result = expanded;
+        }
+        return result;
+    }
+
+    /** Returns the indices of the wildcards of TEMPLATE, and sets them to
+     *  0 so that TEMPLATE is the first of the settings it matches. */
+    static int[] wildcards(int[] template) {
+        int count = 0;
+        for (int setting : template) {
+            if (setting == ANY) {
+                count += 1;
+            }
+        }
+        int[] result = new int[count];
+        for (int i = 0, k = 0; i < template.length; i += 1) {
+            if (template[i] == ANY) {
+                result[k] = i;
+                k += 1;
+                template[i] = 0;
+            }
+        }
+        return result;
+    }
+
+    /** Sets SETTINGS to the next settings in order that differ from them
+     *  only at the indices WILD, and returns true, or returns false if
+     *  there are none. */
+    boolean next(int[] settings, int[] wild) {
+        for (int k = wild.length - 1; k >= 0; k -= 1) {
+            int i = wild[k];
+            settings[i] += 1;
+            if (settings[i] < _alphabet.size()) {
+                return true;
+            }
+            settings[i] = 0;
+        }
+        return false;
+    }
+
+    /** Returns SETTINGS as the characters of a settings line. */
+    String setting(int[] settings) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 1; i < settings.length; i += 1) {
+            result.append(_alphabet.toChar(settings[i]));
+        }
+        return result.toString();
+    }
+
+    /** Returns the plugboard pairing each character with PARTNERS of its
+     *  index, or leaving it alone if that is itself or -1, in cycle
+     *  notation. */
+    String plugboard(int[] partners) {
+        StringBuilder result = new StringBuilder();
+        for (int a = 0; a < partners.length; a += 1) {
+            if (partners[a] > a) {
+                result.append(result.length() == 0 ? "(" : " (")
+                    .append(_alphabet.toChar(a))
+                    .append(_alphabet.toChar(partners[a])).append(')');
+            }
+        }
+        return result.toString();
+    }
+
+    /** Returns the rotor named NAME. */
+    private Rotor find(String name) {
+        for (Rotor rotor : _available) {
+            if (rotor.name().equals(name)) {
+                return rotor;
+            }
+        }
+        throw error("Bad rotor name");
+    }
+
+    /** Returns true iff ROTOR may be in slot SLOT. */
+    private boolean fitsSlot(Rotor rotor, int slot) {
+        if (slot == 0) {
+            return rotor.reflecting();
+        } else if (slot < _numRotors - _numPawls) {
+            return !rotor.reflecting() && !rotor.rotates();
+        } else {
+            return rotor.rotates();
+        }
+    }
+
+    /** Adds to RESULT every rotor order allowed that begins with the
+     *  first SLOT names in ORDER. */
+    private void addOrders(String[] order, int slot, List<String[]> result) {
+        if (slot == _numRotors) {
+            result.add(order.clone());
+            return;
+        }
+        for (Rotor rotor : _available) {
+            String name = rotor.name();
+            if (!fitsSlot(rotor, slot)
+                || !_rotors[slot].equals(String.valueOf(WILDCARD))
+                   && !_rotors[slot].equals(name)) {
+                continue;
+            }
+            boolean used = false;
+            for (int i = 0; i < slot; i += 1) {
+                used |= order[i].equals(name);
+            }
+            if (!used) {
+                order[slot] = name;
+                addOrders(order, slot + 1, result);
+            }
+        }
+    }
+
+    /** The alphabet of the configuration. */
+    private final Alphabet _alphabet;
+
+    /** Number of rotor slots. */
+    private final int _numRotors;
+
+    /** Number of moving rotors. */
+    private final int _numPawls;
+
+    /** The rotors of the configuration. */
+    private final List<Rotor> _available;
+
+    /** The rotor names or wildcards tried in each slot. */
+    private String[] _rotors;
+
+    /** The settings pattern tried. */
+    private String _setting;
+
+    /** The machine copied for each task. */
+    private final Machine _machine;
+}
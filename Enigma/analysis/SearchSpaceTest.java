@@ -0,0 +1,137 @@
+package enigma.analysis;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import enigma.EnigmaException;
+
+/** The suite of all JUnit tests for the SearchSpace class.
+ *  @author Sameer Keswani
+ */
+public class SearchSpaceTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A configuration with one reflector, one fixed rotor and three
+     *  moving rotors, as in testing/correct/default.conf. */
+    private static final String CONFIG =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZ\n"
+        + " 5 3\n"
+        + " I MQ      (AELTPHQXRU) (BKNW) (CMOY) (DFG) (IV) (JZ) (S)\n"
+        + " III MV    (ABDHPEJT) (CFLVMZOYQIRWUKXSG) (N)\n"
+        + " IV MJ     (AEPLIYWCOXMRFZBSTGJQNH) (DV) (KU)\n"
+        + " Beta N    (ALBEVFCYODJWUGNMQTZSKPR) (HIX)\n"
+        + " B R       (AE) (BN) (CK) (DQ) (FU) (GY) (HW) (IJ) (LO) (MP)\n"
+        + "           (RX) (SZ) (TV)\n";
+
+    /** Number of characters in CONFIG's alphabet. */
+    private static final int SIZE = 26;
+
+    /** Returns the number of settings matching TEMPLATE, as enumerated by
+     *  SPACE, checking that they are all different and leave the
+     *  characters that are not wildcards alone. */
+    private int enumerate(SearchSpace space, int[] template) {
+        int[] settings = template.clone();
+        int[] wild = SearchSpace.wildcards(settings);
+        Set<String> seen = new HashSet<>();
+        do {
+            for (int i = 0; i < template.length; i += 1) {
+                if (template[i] != SearchSpace.ANY) {
+                    assertEquals(template[i], settings[i]);
+                }
+            }
+            assertTrue("repeated setting", seen.add(space.setting(settings)));
+        } while (space.next(settings, wild));
+        return seen.size();
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testOrders() {
+        SearchSpace space = new SearchSpace(CONFIG);
+        List<String[]> orders = space.orders();
+        assertEquals(6, orders.size());
+        for (String[] order : orders) {
+            assertEquals("B", order[0]);
+            assertEquals("Beta", order[1]);
+        }
+        space.setRotors("B ? ? ? I");
+        assertEquals(2, space.orders().size());
+        space.setRotors("? Beta IV III I");
+        assertEquals(1, space.orders().size());
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testRotorInWrongSlot() {
+        new SearchSpace(CONFIG).setRotors("B I ? ? ?");
+    }
+
+    @Test
+    public void testTemplates() {
+        SearchSpace space = new SearchSpace(CONFIG);
+        assertEquals(SIZE * SIZE * SIZE * SIZE, space.settingsPerOrder());
+        List<int[]> templates = space.templates();
+        assertEquals(SIZE, templates.size());
+        for (int c = 0; c < SIZE; c += 1) {
+            int[] template = templates.get(c);
+            assertEquals(c, template[1]);
+            for (int i = 2; i < template.length; i += 1) {
+                assertEquals(SearchSpace.ANY, template[i]);
+            }
+        }
+        space.setSetting("A??E");
+        assertEquals(SIZE * SIZE, space.settingsPerOrder());
+        templates = space.templates();
+        assertEquals(1, templates.size());
+        assertArrayEquals(new int[] { 0, 0, SearchSpace.ANY,
+                                      SearchSpace.ANY, 4 },
+                          templates.get(0));
+    }
+
+    @Test
+    public void testNext() {
+        SearchSpace space = new SearchSpace(CONFIG);
+        int[] settings = { 0, 0, SearchSpace.ANY, 5, SearchSpace.ANY };
+        int[] wild = SearchSpace.wildcards(settings);
+        assertArrayEquals(new int[] { 2, 4 }, wild);
+        assertArrayEquals(new int[] { 0, 0, 0, 5, 0 }, settings);
+        assertTrue(space.next(settings, wild));
+        assertArrayEquals(new int[] { 0, 0, 0, 5, 1 }, settings);
+        settings[4] = SIZE - 1;
+        assertTrue(space.next(settings, wild));
+        assertArrayEquals(new int[] { 0, 0, 1, 5, 0 }, settings);
+        settings[2] = SIZE - 1;
+        settings[4] = SIZE - 1;
+        assertFalse(space.next(settings, wild));
+        assertArrayEquals(new int[] { 0, 0, 0, 5, 0 }, settings);
+        assertFalse(space.next(settings, new int[0]));
+    }
+
+    @Test
+    public void testEnumeration() {
+        SearchSpace space = new SearchSpace(CONFIG);
+        space.setSetting("Q??X");
+        int total = 0;
+        for (int[] template : space.templates()) {
+            total += enumerate(space, template);
+        }
+        assertEquals(space.settingsPerOrder(), total);
+        space.setSetting("????");
+        List<int[]> templates = space.templates();
+        assertEquals(SIZE * SIZE * SIZE,
+                     enumerate(space, templates.get(SIZE - 1)));
+        space.setSetting("QRSX");
+        assertEquals(1, enumerate(space, space.templates().get(0)));
+    }
+}
@@ -0,0 +1,59 @@
+package enigma;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JMH benchmark of Main.readConfig on the configuration files of
+ *  testing/correct.  The files are read into memory once, so only
+ *  parsing them and building their rotors is measured.  The directory
+ *  is taken from the system property enigma.testing, by default
+ *  testing/correct, which is right when run by "make jmh".
+ *  @author Sameer Keswani
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigBenchmark {
+
+    /** Name of the configuration file parsed. */
+    @Param({ "default.conf" })
+    private String config;
+
+    /** Contents of the configuration file. */
+    private String _text;
+
+    /** Reads the configuration file. */
+    @Setup
+    public void setUp() throws IOException {
+        Path dir = Paths.get(System.getProperty("enigma.testing",
+                                                "testing/correct"));
+        _text = new String(Files.readAllBytes(dir.resolve(config)),
+                           StandardCharsets.UTF_8);
+    }
+
+    /** Parses the configuration file. */
+    @Benchmark
+    public Machine readConfig() {
+        return Main.readConfig(new Scanner(_text));
+    }
+}
@@ -0,0 +1,126 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/** Random alphabets, rotors, machines and messages for the JMH
+ *  benchmarks.  Everything is built from a fixed seed, so each run
+ *  measures the same wirings and text.
+ *  @author Sameer Keswani
+ */
+final class Fixtures {
+
+    /** Not instantiable. */
+    private Fixtures() {
+    }
+
+    /** Seed of all random choices. */
+    static final long SEED = 61;
+
+    /** The upper-case letters. */
+    static final String UPPER = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+
+    /** Returns an alphabet of SIZE characters: the upper-case letters if
+     *  SIZE is 26, and otherwise characters from ByteAlphabet.FIRST on,
+     *  which include no whitespace or parentheses. */
+    static Alphabet alphabet(int size) {
+        if (size == UPPER.length()) {
+            return new Alphabet(UPPER);
+        }
+        StringBuilder chars = new StringBuilder(size);
+        for (int i = 0; i < size; i += 1) {
+            chars.append((char) (ByteAlphabet.FIRST + i));
+        }
+        return new Alphabet(chars.toString());
+    }
+
+    /** Returns a random permutation of ALPHA, as one cycle through all of
+     *  its characters, chosen with RANDOM. */
+    static Permutation permutation(Alphabet alpha, Random random) {
+        char[] chars = shuffled(alpha, random);
+        return new Permutation("(" + new String(chars) + ")", alpha);
+    }
+
+    /** Returns a random reflector's permutation of ALPHA, which must have
+     *  an even number of characters, chosen with RANDOM. */
+    static Permutation reflection(Alphabet alpha, Random random) {
+        char[] chars = shuffled(alpha, random);
+        StringBuilder cycles = new StringBuilder();
+        for (int i = 0; i + 1 < chars.length; i += 2) {
+            cycles.append('(').append(chars[i]).append(chars[i + 1])
+                .append(')');
+        }
+        return new Permutation(cycles.toString(), alpha);
+    }
+
+    /** Returns the characters of ALPHA in an order chosen with RANDOM. */
+    private static char[] shuffled(Alphabet alpha, Random random) {
+        char[] result = new char[alpha.size()];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = alpha.toChar(i);
+        }
+        for (int i = result.length - 1; i > 0; i -= 1) {
+            int j = random.nextInt(i + 1);
+            char tmp = result[i];
+            result[i] = result[j];
+            result[j] = tmp;
+        }
+        return result;
+    }
+
+    /** Returns a machine with an alphabet of SIZE characters and NUMROTORS
+     *  random rotors: a reflector and NUMROTORS - 1 moving rotors, each
+     *  with one notch.  Its rotors are inserted and set to random
+     *  positions, and its plugboard has five random pairs. */
+    static Machine machine(int size, int numRotors) {
+        Random random = new Random(SEED);
+        Alphabet alpha = alphabet(size);
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        String[] names = new String[numRotors];
+        names[0] = "R";
+        rotors.add(new Reflector(names[0], reflection(alpha, random)));
+        for (int i = 1; i < numRotors; i += 1) {
+            names[i] = "M" + i;
+            String notch = String.valueOf(alpha.toChar(random.nextInt(size)));
+            rotors.add(new MovingRotor(names[i], permutation(alpha, random),
+                                       notch));
+        }
+        Machine machine = new Machine(alpha, numRotors, numRotors - 1,
+                                      rotors);
+        machine.insertRotors(names);
+        StringBuilder setting = new StringBuilder();
+        for (int i = 1; i < numRotors; i += 1) {
+            setting.append(alpha.toChar(random.nextInt(size)));
+        }
+        machine.setRotors(setting.toString());
+        char[] chars = shuffled(alpha, random);
+        StringBuilder plugboard = new StringBuilder();
+        for (int i = 0; i < 5; i += 1) {
+            plugboard.append('(').append(chars[2 * i])
+                .append(chars[2 * i + 1]).append(')');
+        }
+        machine.setPlugboard(new Permutation(plugboard.toString(), alpha));
+        return machine;
+    }
+
+    /** Returns LENGTH random indices into an alphabet of SIZE
+     *  characters. */
+    static int[] indices(int size, int length) {
+        Random random = new Random(SEED + 1);
+        int[] result = new int[length];
+        for (int i = 0; i < length; i += 1) {
+            result[i] = random.nextInt(size);
+        }
+        return result;
+    }
+
+    /** Returns a random message of LENGTH characters of ALPHA. */
+    static String message(Alphabet alpha, int length) {
+        int[] indices = indices(alpha.size(), length);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i += 1) {
+            chars[i] = alpha.toChar(indices[i]);
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,107 @@
+package enigma;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JMH benchmarks of Machine conversion, one character at a time with
+ *  convert(int) and in bulk with convert(String), streamed through a
+ *  GroupedWriter and with convertParallel, for random machines of 3 to 10
+ *  rotors over alphabets of 26 to 256 characters.  The bulk benchmarks
+ *  convert a message of LENGTH characters per invocation, so the time
+ *  reported for all of them is per character.  The machine is not reset
+ *  between invocations, so its rotors go on stepping through their
+ *  cycle as in one long message.
+ *  @author Sameer Keswani
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MachineBenchmark {
+
+    /** Length of the message converted by the bulk benchmarks: long
+     *  enough for convertParallel to divide it among tasks. */
+    static final int LENGTH = 4 * Machine.CHUNK_SIZE;
+
+    /** Size of the alphabet. */
+    @Param({ "26", "64", "128", "256" })
+    private int size;
+
+    /** Number of rotors, including the reflector. */
+    @Param({ "3", "5", "7", "10" })
+    private int rotors;
+
+    /** The machine measured. */
+    private Machine _machine;
+
+    /** The message, as indices. */
+    private int[] _msg;
+
+    /** Copy of _msg converted in place by convertParallel. */
+    private int[] _work;
+
+    /** The message, as characters. */
+    private String _text;
+
+    /** Index in _msg of the next character converted by convertChar. */
+    private int _next;
+
+    /** Builds the machine and message. */
+    @Setup
+    public void setUp() {
+        _machine = Fixtures.machine(size, rotors);
+        _text = Fixtures.message(_machine.alphabet(), LENGTH);
+        _msg = Fixtures.indices(size, LENGTH);
+        _work = new int[LENGTH];
+        _next = 0;
+    }
+
+    /** Converts the next character of the message with convert(int). */
+    @Benchmark
+    public int convertChar() {
+        int c = _msg[_next];
+        _next = _next + 1 == LENGTH ? 0 : _next + 1;
+        return _machine.convert(c);
+    }
+
+    /** Converts the message with convert(String). */
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public String convertString() {
+        return _machine.convert(_text);
+    }
+
+    /** Converts the message through a GroupedWriter that discards its
+     *  output. */
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public void convertStream() {
+        GroupedWriter out = new GroupedWriter(Writer.nullWriter());
+        _machine.convert(_text, out);
+        out.flush();
+    }
+
+    /** Converts the message with convertParallel. */
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int[] convertParallel() {
+        System.arraycopy(_msg, 0, _work, 0, LENGTH);
+        _machine.convertParallel(_work);
+        return _work;
+    }
+}
@@ -0,0 +1,76 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JMH benchmarks of Permutation.permute and Permutation.invert on a
+ *  random permutation of alphabets of 26 to 256 characters.  Each
+ *  invocation maps BATCH random indices, so the time reported is per
+ *  index.
+ *  @author Sameer Keswani
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermutationBenchmark {
+
+    /** Number of indices mapped by each invocation. */
+    static final int BATCH = 1024;
+
+    /** Size of the alphabet. */
+    @Param({ "26", "64", "128", "256" })
+    private int size;
+
+    /** The permutation measured. */
+    private Permutation _perm;
+
+    /** The indices mapped. */
+    private int[] _input;
+
+    /** Builds the permutation and its input. */
+    @Setup
+    public void setUp() {
+        _perm = Fixtures.permutation(Fixtures.alphabet(size),
+                                     new Random(Fixtures.SEED));
+        _input = Fixtures.indices(size, BATCH);
+    }
+
+    /** Maps each index of _input by _perm, returning their sum. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int permute() {
+        int sum = 0;
+        for (int p : _input) {
+            sum += _perm.permute(p);
+        }
+        return sum;
+    }
+
+    /** Maps each index of _input by the inverse of _perm, returning their
+     *  sum. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int invert() {
+        int sum = 0;
+        for (int c : _input) {
+            sum += _perm.invert(c);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,81 @@
+package enigma;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** JMH benchmarks of Rotor.convertForward and Rotor.convertBackward on a
+ *  random moving rotor of alphabets of 26 to 256 characters, at random
+ *  settings.  Each invocation converts BATCH random contacts, so the
+ *  time reported is per conversion.
+ *  @author Sameer Keswani
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RotorBenchmark {
+
+    /** Number of contacts converted by each invocation. */
+    static final int BATCH = 1024;
+
+    /** Size of the alphabet. */
+    @Param({ "26", "64", "128", "256" })
+    private int size;
+
+    /** The rotor measured. */
+    private Rotor _rotor;
+
+    /** The contacts converted. */
+    private int[] _input;
+
+    /** The setting of the rotor for each conversion. */
+    private int[] _settings;
+
+    /** Builds the rotor and its input. */
+    @Setup
+    public void setUp() {
+        Alphabet alpha = Fixtures.alphabet(size);
+        _rotor = new MovingRotor("I",
+            Fixtures.permutation(alpha, new Random(Fixtures.SEED)),
+            String.valueOf(alpha.toChar(0)));
+        _input = Fixtures.indices(size, BATCH);
+        _settings = Fixtures.indices(size, 2 * BATCH);
+    }
+
+    /** Converts each contact of _input forward, returning their sum. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int convertForward() {
+        int sum = 0;
+        for (int i = 0; i < BATCH; i += 1) {
+            sum += _rotor.convertForward(_input[i], _settings[BATCH + i]);
+        }
+        return sum;
+    }
+
+    /** Converts each contact of _input backward, returning their sum. */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int convertBackward() {
+        int sum = 0;
+        for (int i = 0; i < BATCH; i += 1) {
+            sum += _rotor.convertBackward(_input[i], _settings[BATCH + i]);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,200 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static gitlet.Directories.LFS_OBJECTS;
+
+/** An archive of the files of one commit, in zip or tar (ustar) format.
+ *  Each file is decoded from its object file through one bounded buffer
+ *  straight into the archive, so neither the working directory nor the
+ *  heap ever holds a whole file.  Large-file pointers are replaced by the
+ *  contents they point to when those are present.
+ *  @author Sameer Keswani
+ */
+class Archive {
+
+    /** Size of the buffer through which files are copied. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Size of a tar block. */
+    private static final int BLOCK = 512;
+
+    /** Largest file a ustar header can describe. */
+    private static final long MAX_TAR_SIZE = 077777777777L;
+
+    /** An archive of the files of COMMIT. */
+    Archive(Commit commit) {
+        _blobs = commit.getBlobs() == null
+            ? new TreeMap<String, String>() : commit.getBlobs();
+        _time = LogOptions.commitTime(commit);
+    }
+
+    /** Throws an exception if I cannot be written in the format FORMAT,
+     *  "zip" or "tar", so that nothing need be written first. */
+    void check(String format) throws IOException {
+        for (String name : _blobs.keySet()) {
+            String sha = _blobs.get(name);
+            blobFile(sha);
+            if (format.equals("tar")) {
+                tarHeader(name, size(sha));
+            }
+        }
+    }
+
+    /** Writes me to OUT in the format FORMAT, "zip" or "tar". */
+    void write(String format, OutputStream out) throws IOException {
+        if (format.equals("zip")) {
+            writeZip(out);
+        } else {
+            writeTar(out);
+        }
+    }
+
+    /** Writes me to OUT as a zip file. */
+    void writeZip(OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (String name : _blobs.keySet()) {
+            ZipEntry entry = new ZipEntry(name);
+            entry.setTime(_time);
+            zip.putNextEntry(entry);
+            copy(open(_blobs.get(name)), zip, buffer);
+            zip.closeEntry();
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    /** Writes me to OUT as a ustar tar file. */
+    void writeTar(OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (String name : _blobs.keySet()) {
+            String sha = _blobs.get(name);
+            long size = size(sha);
+            out.write(tarHeader(name, size));
+            copy(open(sha), out, buffer);
+            int pad = (int) ((BLOCK - size % BLOCK) % BLOCK);
+            out.write(new byte[pad]);
+        }
+        out.write(new byte[2 * BLOCK]);
+        out.flush();
+    }
+
+    /** Returns the ustar header of the file NAME of SIZE bytes. */
+    private byte[] tarHeader(String name, long size) {
+        if (size > MAX_TAR_SIZE) {
+            throw Utils.error("%s is too large for a tar archive.", name);
+        }
+        byte[] path = name.getBytes(StandardCharsets.UTF_8);
+        byte[] header = new byte[BLOCK];
+        if (path.length <= 100) {
+            System.arraycopy(path, 0, header, 0, path.length);
+        } else {
+            int split = name.lastIndexOf('/');
+            byte[] prefix = split < 0 ? path
+                : name.substring(0, split).getBytes(StandardCharsets.UTF_8);
+            byte[] rest = split < 0 ? path
+                : name.substring(split + 1).getBytes(StandardCharsets.UTF_8);
+            if (split < 0 || prefix.length > 155 || rest.length > 100) {
+                throw Utils.error("%s is too long a name for a tar archive.",
+                                  name);
+            }
+            System.arraycopy(rest, 0, header, 0, rest.length);
+            System.arraycopy(prefix, 0, header, 345, prefix.length);
+        }
+        octal(header, 100, 8, 0644);
+        octal(header, 108, 8, 0);
+        octal(header, 116, 8, 0);
+        octal(header, 124, 12, size);
+        octal(header, 136, 12, _time / 1000);
+        header[156] = '0';
+        ascii(header, 257, "ustar\0" + "00");
+        for (int i = 148; i < 156; i += 1) {
+            header[i] = ' ';
+        }
+        int sum = 0;
+        for (byte b : header) {
+            sum += b & 0xff;
+        }
+        octal(header, 148, 7, sum);
+        return header;
+    }
+
+    /** Writes VALUE into HEADER[POS..POS+WIDTH-1] as zero-padded octal
+     *  followed by a NUL. */
+    private static void octal(byte[] header, int pos, int width, long value) {
+        String text = Long.toOctalString(value);
+        while (text.length() < width - 1) {
+            text = "0" + text;
+        }
+        ascii(header, pos, text + "\0");
+    }
+
+    /** Writes TEXT into HEADER starting at POS. */
+    private static void ascii(byte[] header, int pos, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, header, pos, bytes.length);
+    }
+
+    /** Returns the large file the blob SHA points to, if there is one and
+     *  it is present, else null. */
+    private static File largeFile(String sha) throws IOException {
+        File blob = blobFile(sha);
+        if (ObjectCodec.size(blob) > LargeFiles.MAX_POINTER_SIZE) {
+            return null;
+        }
+        String oid = LargeFiles.oid(ObjectCodec.read(blob));
+        File object = oid == null ? null : Utils.join(LFS_OBJECTS, oid);
+        return object != null && object.isFile() ? object : null;
+    }
+
+    /** Returns the object file of the blob SHA, which must exist. */
+    private static File blobFile(String sha) {
+        File blob = ObjectStore.blobFile(sha);
+        if (!blob.isFile()) {
+            throw Utils.error("Missing blob %s.", sha);
+        }
+        return blob;
+    }
+
+    /** Returns the length of the file stored as the blob SHA. */
+    private static long size(String sha) throws IOException {
+        File large = largeFile(sha);
+        return large != null ? large.length()
+            : ObjectCodec.size(blobFile(sha));
+    }
+
+    /** Returns a stream of the contents of the file stored as the blob
+     *  SHA. */
+    private static InputStream open(String sha) throws IOException {
+        File large = largeFile(sha);
+        return large != null ? new FileInputStream(large)
+            : ObjectCodec.open(blobFile(sha));
+    }
+
+    /** Copies the contents of INPUT, which it closes, to OUT through
+     *  BUFFER. */
+    private static void copy(InputStream input, OutputStream out,
+                             byte[] buffer) throws IOException {
+        try (InputStream in = input) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    /** Map from file name to blob SHA of the archived files. */
+    private final TreeMap<String, String> _blobs;
+
+    /** Modification time given to every file, in milliseconds. */
+    private final long _time;
+}
@@ -0,0 +1,260 @@
+package gitlet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static gitlet.Directories.BISECT;
+
+/** The state of a bisection, which searches the commits between known
+ *  good and bad ones for the first bad commit.  The candidates are the
+ *  ancestors of the bad commit, through both parents, that are not also
+ *  ancestors of a good one.  Each step tests the candidate that splits
+ *  them most evenly: the one whose candidate ancestors, counting itself,
+ *  number closest to half.  Those counts are found in one pass over the
+ *  candidates in topological order, each taking the union of its
+ *  parents' ancestor sets as bit sets, so the number of tests needed is
+ *  logarithmic in the number of candidates.
+ *
+ *  The state is kept in the BISECT file as lines of the form "KEY VALUE",
+ *  giving the branch bisected, the commit checked out and the commits
+ *  marked bad, good and skipped.  The branch itself never moves; only
+ *  the working files change.
+ *  @author Sameer Keswani
+ */
+class Bisect {
+
+    /** A new bisection of BRANCH, whose head HEAD is checked out. */
+    Bisect(String branch, String head) {
+        _branch = branch;
+        _current = head;
+    }
+
+    /** Returns the bisection in progress, or null if there is none. */
+    static Bisect load() {
+        if (!BISECT.isFile()) {
+            return null;
+        }
+        Bisect result = null;
+        for (String line : Utils.readContentsAsString(BISECT).split("\n")) {
+            int space = line.indexOf(' ');
+            if (space < 0) {
+                continue;
+            }
+            String key = line.substring(0, space);
+            String value = line.substring(space + 1);
+            if (key.equals("branch")) {
+                result = new Bisect(value, null);
+            } else if (result == null) {
+                continue;
+            } else if (key.equals("current")) {
+                result._current = value;
+            } else if (key.equals("bad")) {
+                result._bad = value;
+            } else if (key.equals("good")) {
+                result._good.add(value);
+            } else if (key.equals("skip")) {
+                result._skipped.add(value);
+            }
+        }
+        return result;
+    }
+
+    /** Saves me as the bisection in progress. */
+    void save() {
+        StringBuilder contents = new StringBuilder();
+        contents.append("branch ").append(_branch).append('\n');
+        contents.append("current ").append(_current).append('\n');
+        if (_bad != null) {
+            contents.append("bad ").append(_bad).append('\n');
+        }
+        for (String id : _good) {
+            contents.append("good ").append(id).append('\n');
+        }
+        for (String id : _skipped) {
+            contents.append("skip ").append(id).append('\n');
+        }
+        Utils.writeContents(BISECT, contents.toString());
+    }
+
+    /** Ends the bisection in progress. */
+    static void clear() {
+        BISECT.delete();
+    }
+
+    /** Returns the name of the branch bisected. */
+    String branch() {
+        return _branch;
+    }
+
+    /** Returns the id of the commit checked out. */
+    String current() {
+        return _current;
+    }
+
+    /** Records that the commit ID is checked out. */
+    void setCurrent(String id) {
+        _current = id;
+    }
+
+    /** Marks the commit ID bad. */
+    void markBad(String id) {
+        _bad = id;
+    }
+
+    /** Marks the commit ID good. */
+    void markGood(String id) {
+        _good.add(id);
+    }
+
+    /** Marks the commit ID as one that cannot be tested. */
+    void markSkipped(String id) {
+        _skipped.add(id);
+    }
+
+    /** Returns true iff both a bad and a good commit are known. */
+    boolean isReady() {
+        return _bad != null && !_good.isEmpty();
+    }
+
+    /** Returns the id of the bad commit, or null. */
+    String bad() {
+        return _bad;
+    }
+
+    /** Finds the commit to test next.  Returns its id, or null if there is
+     *  none: either the bad commit is the first one, or only skipped
+     *  commits might be.  In either case, candidates() then lists the
+     *  commits that might be the first bad one. */
+    String next() {
+        Set<String> good = ancestors(_good);
+        List<Commit> order = new ArrayList<>();
+        HashMap<String, Integer> index = new HashMap<>();
+        ArrayDeque<Commit> stack = new ArrayDeque<>();
+        HashSet<String> seen = new HashSet<>();
+        Commit bad = ObjectStore.readCommit(_bad);
+        stack.push(bad);
+        seen.add(bad.getSHA());
+        while (!stack.isEmpty()) {
+            Commit c = stack.peek();
+            Commit parent = unvisitedParent(c, good, seen);
+            if (parent != null) {
+                seen.add(parent.getSHA());
+                stack.push(parent);
+            } else {
+                stack.pop();
+                index.put(c.getSHA(), order.size());
+                order.add(c);
+            }
+        }
+
+        int n = order.size();
+        BitSet[] reach = new BitSet[n];
+        for (int i = 0; i < n; i += 1) {
+            Commit c = order.get(i);
+            reach[i] = new BitSet(i + 1);
+            reach[i].set(i);
+            for (Commit p : new Commit[] { c.getParent(), c.getMerged() }) {
+                Integer j = p == null ? null : index.get(p.getSHA());
+                if (j != null) {
+                    reach[i].or(reach[j]);
+                }
+            }
+        }
+
+        _candidates = new ArrayList<>();
+        String best = null;
+        int bestScore = 0;
+        for (int i = n - 1; i >= 0; i -= 1) {
+            String id = order.get(i).getSHA();
+            int weight = reach[i].cardinality();
+            int score = Math.min(weight, n - weight);
+            if (!_skipped.contains(id) && score > bestScore) {
+                best = id;
+                bestScore = score;
+            }
+        }
+        for (int i = n - 1; i >= 0; i -= 1) {
+            String id = order.get(i).getSHA();
+            if (id.equals(_bad) || _skipped.contains(id)) {
+                _candidates.add(id);
+            }
+        }
+        _remaining = n;
+        return best;
+    }
+
+    /** Returns the number of commits that might be the first bad one, as
+     *  of the last call to next(). */
+    int remaining() {
+        return _remaining;
+    }
+
+    /** Returns the bad commit and the skipped ones that, as of the last
+     *  call to next() that found nothing to test, might be the first bad
+     *  commit. */
+    List<String> candidates() {
+        return _candidates;
+    }
+
+    /** Returns a parent of C that is neither in GOOD nor in SEEN, or null
+     *  if there is none. */
+    private static Commit unvisitedParent(Commit c, Set<String> good,
+                                          Set<String> seen) {
+        for (Commit p : new Commit[] { c.getParent(), c.getMerged() }) {
+            if (p != null && !good.contains(p.getSHA())
+                    && !seen.contains(p.getSHA())) {
+                return p;
+            }
+        }
+        return null;
+    }
+
+    /** Returns the ids of the commits IDS and all their ancestors. */
+    private static Set<String> ancestors(Set<String> ids) {
+        HashSet<String> result = new HashSet<>();
+        ArrayDeque<Commit> work = new ArrayDeque<>();
+        for (String id : ids) {
+            work.add(ObjectStore.readCommit(id));
+        }
+        while (!work.isEmpty()) {
+            Commit c = work.poll();
+            if (!result.add(c.getSHA())) {
+                continue;
+            }
+            if (c.getParent() != null) {
+                work.add(c.getParent());
+            }
+            if (c.getMerged() != null) {
+                work.add(c.getMerged());
+            }
+        }
+        return result;
+    }
+
+    /** Name of the branch bisected. */
+    private final String _branch;
+
+    /** Id of the commit checked out. */
+    private String _current;
+
+    /** Id of the bad commit, or null. */
+    private String _bad;
+
+    /** Ids of the good commits. */
+    private final Set<String> _good = new LinkedHashSet<>();
+
+    /** Ids of the skipped commits. */
+    private final Set<String> _skipped = new LinkedHashSet<>();
+
+    /** Number of candidates found by the last call to next(). */
+    private int _remaining;
+
+    /** Possible first bad commits found by the last call to next(). */
+    private List<String> _candidates = new ArrayList<>();
+}
@@ -0,0 +1,251 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import static gitlet.Directories.BLAME;
+
+/** Line-by-line attribution of a file to the commits that last changed
+ *  each line.  Unattributed lines are passed back from a commit to its
+ *  parents through the lines the diff engine matches; lines with no
+ *  match are attributed to the commit.  The walk stops once every line
+ *  is attributed.  Finished attributions are cached in BLAME, keyed by
+ *  path and blob SHA, so that blaming a slightly changed file only walks
+ *  back to the nearest version blamed before.  The same contents at
+ *  another path have a history of their own, so the blob alone is not a
+ *  key.
+ *  @author Sameer Keswani
+ */
+class Blame {
+
+    /** The blame of the file NAME as of commit HEAD. */
+    Blame(String name, Commit head) {
+        _name = name;
+        String sha = blobOf(head, name);
+        if (sha == null) {
+            throw Utils.error("File does not exist in that commit.");
+        }
+        _lines = Diff.lines(readBlob(sha));
+        _owners = new String[_lines.length];
+        _commits = new HashMap<>();
+        String[] cached = readCache(name, sha);
+        if (cached != null && cached.length == _lines.length) {
+            _owners = cached;
+        } else {
+            walk(head, sha);
+            writeCache(name, sha, _owners);
+        }
+    }
+
+    /** Returns the lines of the blamed file. */
+    String[] lines() {
+        return _lines;
+    }
+
+    /** Returns the SHA of the commit responsible for line I. */
+    String owner(int i) {
+        return _owners[i];
+    }
+
+    /** Returns the commit responsible for line I. */
+    Commit ownerCommit(int i) {
+        String sha = _owners[i];
+        Commit commit = _commits.get(sha);
+        if (commit == null) {
+            commit = ObjectStore.readCommit(sha);
+            _commits.put(sha, commit);
+        }
+        return commit;
+    }
+
+    /** A commit together with the lines of its version of the file that
+     *  are still to be attributed. */
+    private static class Pending {
+        /** Lines LOCAL of COMMIT's blob BLOB, which are lines ORIGINAL of
+         *  the blamed file. */
+        Pending(Commit commit, String blob, int[] local, int[] original) {
+            _commit = commit;
+            _blob = blob;
+            _local = local;
+            _original = original;
+        }
+
+        /** The commit. */
+        private final Commit _commit;
+
+        /** SHA of the commit's version of the file. */
+        private final String _blob;
+
+        /** Line numbers within _blob. */
+        private final int[] _local;
+
+        /** Corresponding line numbers of the blamed file. */
+        private final int[] _original;
+    }
+
+    /** Attributes every line of the blob SHA of commit HEAD. */
+    private void walk(Commit head, String sha) {
+        int[] all = new int[_lines.length];
+        for (int i = 0; i < all.length; i += 1) {
+            all[i] = i;
+        }
+        int remaining = all.length;
+        ArrayDeque<Pending> work = new ArrayDeque<>();
+        work.add(new Pending(head, sha, all, all.clone()));
+        while (!work.isEmpty() && remaining > 0) {
+            Pending p = work.poll();
+            _commits.put(p._commit.getSHA(), p._commit);
+            String[] cached = readCache(_name, p._blob);
+            if (cached != null) {
+                for (int i = 0; i < p._local.length; i += 1) {
+                    _owners[p._original[i]] = cached[p._local[i]];
+                }
+                remaining -= p._local.length;
+                continue;
+            }
+            int[] local = p._local;
+            int[] original = p._original;
+            String[] lines = null;
+            for (Commit parent : parents(p._commit)) {
+                if (local.length == 0) {
+                    break;
+                }
+                String parentSHA = blobOf(parent, _name);
+                if (parentSHA == null) {
+                    continue;
+                }
+                if (parentSHA.equals(p._blob)) {
+                    work.add(new Pending(parent, parentSHA, local, original));
+                    local = NONE;
+                    original = NONE;
+                    break;
+                }
+                if (lines == null) {
+                    lines = Diff.lines(readBlob(p._blob));
+                }
+                int[] match =
+                    Diff.matchLines(Diff.lines(readBlob(parentSHA)), lines);
+                int n = 0;
+                for (int i = 0; i < local.length; i += 1) {
+                    if (match[local[i]] >= 0) {
+                        n += 1;
+                    }
+                }
+                if (n == 0) {
+                    continue;
+                }
+                int[] passLocal = new int[n], passOriginal = new int[n];
+                int[] keepLocal = new int[local.length - n];
+                int[] keepOriginal = new int[local.length - n];
+                int j = 0, k = 0;
+                for (int i = 0; i < local.length; i += 1) {
+                    if (match[local[i]] >= 0) {
+                        passLocal[j] = match[local[i]];
+                        passOriginal[j] = original[i];
+                        j += 1;
+                    } else {
+                        keepLocal[k] = local[i];
+                        keepOriginal[k] = original[i];
+                        k += 1;
+                    }
+                }
+                work.add(new Pending(parent, parentSHA, passLocal,
+                                     passOriginal));
+                local = keepLocal;
+                original = keepOriginal;
+            }
+            for (int i = 0; i < original.length; i += 1) {
+                _owners[original[i]] = p._commit.getSHA();
+            }
+            remaining -= original.length;
+        }
+    }
+
+    /** Returns the parents of COMMIT, first parent first. */
+    private static List<Commit> parents(Commit commit) {
+        List<Commit> result = new ArrayList<>();
+        if (commit.getParent() != null) {
+            result.add(commit.getParent());
+        }
+        if (commit.getMerged() != null) {
+            result.add(commit.getMerged());
+        }
+        return result;
+    }
+
+    /** Returns the blob SHA of file NAME in COMMIT, or null if absent. */
+    private static String blobOf(Commit commit, String name) {
+        if (commit.getBlobs() == null) {
+            return null;
+        }
+        return commit.getBlobs().get(name);
+    }
+
+    /** Returns the contents of the blob SHA. */
+    private static byte[] readBlob(String sha) {
+        return ObjectStore.readBlob(sha);
+    }
+
+    /** Returns the name of the cache entry for the blob SHA at path
+     *  NAME. */
+    private static String cacheKey(String name, String sha) {
+        return Utils.sha1(sha, name);
+    }
+
+    /** Returns the cached line owners of the blob SHA at path NAME, or
+     *  null. */
+    private static String[] readCache(String name, String sha) {
+        File cache = Utils.join(BLAME, cacheKey(name, sha));
+        if (!cache.isFile()) {
+            return null;
+        }
+        String contents = Utils.readContentsAsString(cache);
+        if (contents.isEmpty()) {
+            return new String[0];
+        }
+        return contents.split("\n");
+    }
+
+    /** Caches OWNERS as the line owners of the blob SHA at path NAME.
+     *  The cache is written to a temporary file and renamed, so that
+     *  concurrent readers never see a partial entry. */
+    private static void writeCache(String name, String sha,
+                                   String[] owners) {
+        String key = cacheKey(name, sha);
+        if (!BLAME.exists() && !BLAME.mkdirs()) {
+            return;
+        }
+        StringBuilder contents = new StringBuilder();
+        for (String owner : owners) {
+            contents.append(owner).append('\n');
+        }
+        try {
+            File temp = File.createTempFile(key, ".tmp", BLAME);
+            Utils.writeContents(temp, contents.toString());
+            if (!temp.renameTo(Utils.join(BLAME, key))) {
+                temp.delete();
+            }
+        } catch (IOException | IllegalArgumentException excp) {
+            return;
+        }
+    }
+
+    /** Name of the blamed file. */
+    private final String _name;
+
+    /** Lines of the blamed file. */
+    private final String[] _lines;
+
+    /** SHA of the commit responsible for each line. */
+    private String[] _owners;
+
+    /** Commits seen so far, by SHA. */
+    private final HashMap<String, Commit> _commits;
+
+    /** An empty set of lines. */
+    private static final int[] NONE = new int[0];
+}
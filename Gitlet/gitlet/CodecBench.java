@@ -0,0 +1,80 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/** A benchmark of ObjectCodec, whose main program may be invoked as
+ *      java gitlet.CodecBench DIR...
+ *  It reads every file under each DIR (default the current directory),
+ *  skipping .gitlet directories, and prints for each deflation level
+ *  the total encoded size, the compression ratio and the rates at which
+ *  the files were encoded and decoded, to help choose DEFAULT_LEVEL.
+ *  @author Sameer Keswani
+ */
+public class CodecBench {
+
+    /** Deflation levels measured. */
+    private static final int[] LEVELS = { 0, 1, 3, 6, 9 };
+
+    /** Times each level is measured; the last round is reported. */
+    private static final int ROUNDS = 3;
+
+    /** Measures the codec on the files under the directories DIRS. */
+    public static void main(String... dirs) {
+        List<byte[]> files = new ArrayList<>();
+        for (String dir : dirs.length == 0 ? new String[] { "." } : dirs) {
+            collect(new File(dir), files);
+        }
+        long raw = 0;
+        for (byte[] contents : files) {
+            raw += contents.length;
+        }
+        System.out.printf("%d files, %d bytes%n", files.size(), raw);
+        System.out.printf("%5s %12s %7s %12s %12s%n", "level", "bytes",
+                          "ratio", "encode MB/s", "decode MB/s");
+        for (int level : LEVELS) {
+            long encoded = 0;
+            long encodeTime = 0;
+            long decodeTime = 0;
+            for (int round = 0; round < ROUNDS; round += 1) {
+                encoded = 0;
+                encodeTime = 0;
+                decodeTime = 0;
+                for (byte[] contents : files) {
+                    long start = System.nanoTime();
+                    byte[] data = ObjectCodec.encode(contents, level);
+                    long middle = System.nanoTime();
+                    ObjectCodec.decode(data);
+                    long end = System.nanoTime();
+                    encoded += data.length;
+                    encodeTime += middle - start;
+                    decodeTime += end - middle;
+                }
+            }
+            System.out.printf("%5d %12d %7.2f %12.1f %12.1f%n", level,
+                              encoded, (double) raw / Math.max(1, encoded),
+                              rate(raw, encodeTime), rate(raw, decodeTime));
+        }
+    }
+
+    /** Returns BYTES per NANOS in megabytes per second. */
+    private static double rate(long bytes, long nanos) {
+        return bytes / 1e6 / Math.max(1e-9, nanos / 1e9);
+    }
+
+    /** Adds the contents of every file under FILE to RESULT, skipping
+     *  .gitlet directories. */
+    private static void collect(File file, List<byte[]> result) {
+        if (file.isFile()) {
+            result.add(Utils.readContents(file));
+        } else if (file.isDirectory() && !file.getName().equals(".gitlet")) {
+            File[] children = file.listFiles();
+            if (children != null) {
+                for (File child : children) {
+                    collect(child, result);
+                }
+            }
+        }
+    }
+}
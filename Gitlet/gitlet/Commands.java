@@ -1,11 +1,24 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.TreeMap;
+import java.util.TreeSet;
 
 import static gitlet.Directories.*;
 
@@ -15,48 +28,82 @@ import static gitlet.Directories.*;
 
 public class Commands {
 
-    /** Constructor for Commands. */
+    /** Constructor for Commands that write their output to the standard
+     * output. */
     public Commands() {
+        this(new FileOutputStream(FileDescriptor.out));
+    }
+
+    /** Constructor for Commands that write their output to OUT. */
+    public Commands(OutputStream out) {
+        _out = out;
+        _print = printer(out);
         if (STAGE.exists()) {
-            _stage = Utils.readObject(STAGE, Stage.class);
+            _stage = Stage.load();
         }
         if (CURRENTBRANCH.exists()) {
             _currentBranch = Utils.readObject(CURRENTBRANCH, Branch.class);
+            if (Refs.exists(_currentBranch.getName())) {
+                _currentBranch = Refs.read(_currentBranch.getName());
+            }
             _head = _currentBranch.getHead();
         }
+        _sparse = SparseCheckout.load();
+
+
+    }
 
+    /** Returns the current branch, or null before init. */
+    Branch currentBranch() {
+        return _currentBranch;
+    }
 
+    /** Returns the staging area, or null before init. */
+    Stage stage() {
+        return _stage;
     }
 
-    /** Command that initializes a Gitlet repo. */
-    public void init() {
-        if (GITLET.exists()) {
-            System.out.println("A Gitlet version-control system already "
+    /** Command that initializes a Gitlet repo, reporting on OUT if there
+     * already is one.  The .gitlet directory appears already holding the
+     * exclusive lock, which decides which of two racing inits goes ahead,
+     * and the rest is written under that lock, so that commands started
+     * meanwhile wait for a complete repository. */
+    public static void init(PrintStream out) {
+        RepoLock lock;
+        try {
+            lock = GITLET.exists() ? null : RepoLock.create();
+        } catch (GitletException excp) {
+            out.println(excp.getMessage());
+            return;
+        }
+        if (lock == null) {
+            out.println("A Gitlet version-control system already "
                     + "exists in the current directory.");
+            return;
         }
-        GITLET.mkdirs();
-        COMMITS.mkdirs();
-        BLOBS.mkdirs();
-        BRANCHES.mkdirs();
         try {
-            HEAD.createNewFile();
-            STAGE.createNewFile();
-            CURRENTBRANCH.createNewFile();
-        } catch (IOException e) {
-            System.err.println(e);
-        }
-
-
-        Commit initialCommit = new Commit("initial commit", null);
-        initialCommit.save();
+            COMMITS.mkdirs();
+            BLOBS.mkdirs();
+            BRANCHES.mkdirs();
+            try {
+                HEAD.createNewFile();
+                STAGE.createNewFile();
+                CURRENTBRANCH.createNewFile();
+            } catch (IOException e) {
+                System.err.println(e);
+            }
 
-        _stage = new Stage();
-        _stage.saveStage();
+            Commit initialCommit = new Commit("initial commit", null);
+            initialCommit.save();
 
-        _currentBranch = new Branch("master", initialCommit);
-        _currentBranch.saveBranch();
-        _currentBranch.saveAsCurrentBranch();
+            new Stage().saveStage();
 
+            Branch master = new Branch("master", initialCommit);
+            master.saveBranch();
+            master.saveAsCurrentBranch();
+        } finally {
+            lock.close();
+        }
     }
 
     /** Command adds a text file with NAME to staging area.
@@ -65,9 +112,14 @@ public class Commands {
     public void add(String name) {
         File addFile = Utils.join(CWD, name);
         if (!(addFile.exists())) {
-            System.out.println("File does not exist");
+            _print.println("File does not exist");
         } else {
-            String fileSHA = Utils.sha1(Utils.readContents(addFile));
+            String fileSHA;
+            if (LargeFiles.isTracked(name)) {
+                fileSHA = LargeFiles.store(addFile);
+            } else {
+                fileSHA = Utils.sha1(Utils.readContents(addFile));
+            }
             if (_stage.getRemoveStage().contains(name)) {
                 _stage.removeFromRemoveStage(name);
                 _stage.saveStage();
@@ -91,7 +143,7 @@ public class Commands {
     public void commit(String message) {
         if (_stage.getAddStage().isEmpty()
                 && _stage.getRemoveStage().isEmpty()) {
-            System.out.println("No changes added to the commit");
+            _print.println("No changes added to the commit");
         }
         Commit commit = new Commit(message, _head);
         commit.setBlobs(_stage.getAddStage());
@@ -109,14 +161,31 @@ public class Commands {
      * to the current commit.
      */
     public void log() {
-        Commit curr = _head;
-        while (curr != null) {
-            System.out.println("===");
-            System.out.println("commit " + curr.getSHA());
-            System.out.println("Date: " + curr.getDate());
-            System.out.println(curr.getMessage());
-            System.out.println();
-            curr = curr.getParent();
+        log(new LogOptions());
+    }
+
+    /** Command that logs the history of commits up to the current commit,
+     * limited and formatted by OPTIONS.  The walk stops as soon as the
+     * limits are reached or the output is closed.
+     */
+    public void log(LogOptions options) {
+        Writer out = logWriter();
+        try {
+            int count = 0;
+            Commit curr = _head;
+            while (curr != null && !options.isDone(count)) {
+                if (options.isTooOld(curr)) {
+                    break;
+                }
+                if (options.matches(curr)) {
+                    out.write(options.format(curr));
+                    count += 1;
+                }
+                curr = curr.getParent();
+            }
+            out.flush();
+        } catch (IOException e) {
+            return;
         }
     }
 
@@ -135,48 +204,49 @@ public class Commands {
     /** Helper for checkout that checks out a file with NAME. */
     public void checkoutFile(String name) {
         if (_head.getBlobs().containsKey(name)) {
-            File blobFile = Utils.join(BLOBS, _head.getBlobs().get(name));
-            byte[] serBlob = Utils.readContents(blobFile);
             File cwdFile = Utils.join(CWD, name);
             if (cwdFile.exists()) {
                 Utils.restrictedDelete(cwdFile);
             }
-            File newFile = Utils.join(CWD, name);
-            Utils.writeContents(newFile, serBlob);
+            LargeFiles.checkout(cwdFile, _head.getBlobs().get(name));
         } else {
-            System.out.println("File does not exist in that commit.");
+            _print.println("File does not exist in that commit.");
         }
     }
 
     /** Helper for checkout that checks out a branch with NAME. */
     public void checkoutBranch(String name) {
-        File branchFile = Utils.join(BRANCHES, name);
         List<String> filesCWD = Utils.plainFilenamesIn(CWD);
-        if (!branchFile.exists()) {
-            System.out.println("No such branch exists.");
+        if (!Refs.exists(name)) {
+            _print.println("No such branch exists.");
             return;
         } else if (_currentBranch.getName().equals(name)) {
-            System.out.println("No need to checkout the current branch");
+            _print.println("No need to checkout the current branch");
+            return;
+        }
+        File checkedOut = checkedOutAt(name);
+        if (checkedOut != null) {
+            _print.println("That branch is already checked out at "
+                    + checkedOut.getPath() + ".");
             return;
         }
-        Branch branch = Utils.readObject(branchFile, Branch.class);
+        Branch branch = Refs.read(name);
         Commit branchHead = branch.getHead();
         for (String fileName : filesCWD) {
             if (branchHead.getBlobs() != null
                     && (branchHead.getBlobs().containsKey(fileName))
                     && (_head.getBlobs() != null
                     && !_head.getBlobs().containsKey(fileName))) {
-                System.out.println("There is an untracked file in the way; "
+                _print.println("There is an untracked file in the way; "
                         + "delete it, or add and commit it first.");
             } else if (branchHead.getBlobs() != null
                     && (branchHead.getBlobs().containsKey(fileName))
                     && (_head.getBlobs() == null)) {
-                System.out.println("There is an untracked file in the way; "
+                _print.println("There is an untracked file in the way; "
                         + "delete it, or add and commit it first");
             }
         }
-        List<String> branchNames = Utils.plainFilenamesIn(BRANCHES);
-        if (branchNames.contains(name)) {
+        if (branch != null) {
             for (String fileName : filesCWD) {
                 if ((_head.getBlobs() != null
                         && _head.getBlobs().containsKey(fileName))
@@ -193,16 +263,10 @@ public class Commands {
                 }
             } else {
                 for (String fileName : branchHead.getBlobs().keySet()) {
-                    File blobFile = Utils.join(BLOBS,
-                            branchHead.getBlobs().get(fileName));
-                    byte[] serBlob = Utils.readContents(blobFile);
-                    File cwdFile = Utils.join(CWD, fileName);
-                    if (cwdFile.exists()) {
-                        Utils.restrictedDelete(cwdFile);
+                    if (_sparse.includes(fileName)) {
+                        writeWorkingFile(fileName,
+                                branchHead.getBlobs().get(fileName));
                     }
-                    File newFile = Utils.join(CWD, fileName);
-                    Utils.writeContents(newFile, serBlob);
-
                 }
             }
             branch.saveAsCurrentBranch();
@@ -210,29 +274,283 @@ public class Commands {
         }
     }
 
+    /** Writes the blob with BLOBSHA to the working file NAME, creating
+     * its directory if needed. */
+    private void writeWorkingFile(String name, String blobSHA) {
+        LargeFiles.checkout(Utils.join(CWD, name), blobSHA);
+    }
+
+    /** Command that manages sparse checkout according to ARGS, which are
+     * "set PATTERN...", "add PATTERN...", "list" or "disable".  Setting
+     * or disabling patterns updates the working directory: tracked files
+     * that become excluded are removed if unmodified, and tracked files
+     * that become included are written.
+     */
+    public void sparseCheckout(String[] args) {
+        List<String> patterns = new ArrayList<String>();
+        switch (args[1]) {
+        case "list":
+            for (String pattern : _sparse.patterns()) {
+                _print.println(pattern);
+            }
+            return;
+        case "add":
+            patterns.addAll(_sparse.patterns());
+            for (int i = 2; i < args.length; i += 1) {
+                patterns.add(args[i]);
+            }
+            break;
+        case "set":
+            for (int i = 2; i < args.length; i += 1) {
+                patterns.add(args[i]);
+            }
+            break;
+        case "disable":
+            break;
+        default:
+            _print.println("Incorrect operands.");
+            return;
+        }
+        SparseCheckout old = _sparse;
+        _sparse = new SparseCheckout(patterns);
+        _sparse.save();
+        if (_head.getBlobs() == null) {
+            return;
+        }
+        for (String fileName : _head.getBlobs().keySet()) {
+            String blobSHA = _head.getBlobs().get(fileName);
+            File cwdFile = Utils.join(CWD, fileName);
+            if (_sparse.includes(fileName) && !old.includes(fileName)) {
+                if (!cwdFile.exists()) {
+                    writeWorkingFile(fileName, blobSHA);
+                }
+            } else if (!_sparse.includes(fileName) && cwdFile.isFile()
+                    && !_stage.getAddStage().containsKey(fileName)
+                    && LargeFiles.blobSHA(fileName, cwdFile)
+                    .equals(blobSHA)) {
+                cwdFile.delete();
+            }
+        }
+    }
+
+    /** Command that manages linked worktrees according to ARGS, which
+     * are "add PATH BRANCH" or "list".  A linked worktree is a working
+     * directory with its own staging area and current branch that shares
+     * this repository's commits, blobs and branches.
+     */
+    public void worktree(String[] args) {
+        if (args[1].equals("list")) {
+            _print.println(CWD.getPath() + " [" + _currentBranch.getName()
+                    + "]");
+            if (WORKTREES.isFile()) {
+                String list = Utils.readContentsAsString(WORKTREES);
+                for (String path : list.split("\n")) {
+                    if (!path.isEmpty()
+                            && !new File(path).equals(CWD)) {
+                        _print.println(path);
+                    }
+                }
+            }
+            return;
+        } else if (!args[1].equals("add") || args.length != 4) {
+            _print.println("Incorrect operands.");
+            return;
+        }
+        File root = new File(args[2]).getAbsoluteFile();
+        if (!Refs.exists(args[3])) {
+            _print.println("No such branch exists.");
+            return;
+        } else if (root.exists() && root.list().length != 0) {
+            _print.println("That directory already exists and is "
+                    + "not empty.");
+            return;
+        }
+        File checkedOut = checkedOutAt(args[3]);
+        if (checkedOut != null) {
+            _print.println("That branch is already checked out at "
+                    + checkedOut.getPath() + ".");
+            return;
+        }
+        Branch branch = Refs.read(args[3]);
+        File gitlet = Utils.join(root, ".gitlet");
+        gitlet.mkdirs();
+        Utils.writeContents(Utils.join(gitlet, "commondir"),
+                COMMON.getAbsolutePath());
+        Utils.writeObject(Utils.join(gitlet, "stage"), new Stage());
+        Utils.writeObject(Utils.join(gitlet, "currentBranch"), branch);
+        List<File> objectDirs = new ArrayList<File>();
+        objectDirs.add(COMMITS);
+        objectDirs.addAll(ObjectStore.alternates());
+        ObjectStore.writeTree(root, branch.getHead().getBlobs(), objectDirs,
+                LFS_OBJECTS);
+        String list = WORKTREES.isFile()
+                ? Utils.readContentsAsString(WORKTREES) : "";
+        Utils.writeContents(WORKTREES, list + root.getPath() + "\n");
+    }
+
+    /** Returns the root of the worktree, the main one or a linked one,
+     * whose current branch is NAME, or null if there is none. */
+    private static File checkedOutAt(String name) {
+        List<File> roots = new ArrayList<File>();
+        roots.add(COMMON.getAbsoluteFile().getParentFile());
+        if (WORKTREES.isFile()) {
+            String list = Utils.readContentsAsString(WORKTREES);
+            for (String path : list.split("\n")) {
+                if (!path.isEmpty()) {
+                    roots.add(new File(path));
+                }
+            }
+        }
+        for (File root : roots) {
+            File current = Utils.join(root, ".gitlet", "currentBranch");
+            if (current.isFile() && current.length() > 0
+                    && Utils.readObject(current, Branch.class).getName()
+                    .equals(name)) {
+                return root;
+            }
+        }
+        return null;
+    }
+
+    /** Command that clones the repository in directory SOURCE into the
+     * new directory DEST.  If SHARED, objects are hard-linked rather than
+     * copied; any that cannot be linked (as across file systems) are
+     * borrowed through DEST's alternates file instead, and large files
+     * that cannot be linked are left for "lfs pull".  Errors are reported
+     * on OUT.
+     */
+    public static void clone(String source, String dest, boolean shared,
+                             PrintStream out) {
+        File sourceGitlet = Utils.join(new File(source), ".gitlet");
+        File root = new File(dest).getAbsoluteFile();
+        if (!sourceGitlet.isDirectory()) {
+            out.println("Not in an initialized Gitlet directory.");
+            return;
+        } else if (root.exists() && root.list().length != 0) {
+            out.println("That directory already exists and is "
+                    + "not empty.");
+            return;
+        }
+        File sourceCommon = commonDir(sourceGitlet).getAbsoluteFile();
+        File sourceCommits = Utils.join(sourceCommon, "commits");
+        File gitlet = Utils.join(root, ".gitlet");
+        File commits = Utils.join(gitlet, "commits");
+        File blobs = Utils.join(commits, "blobs");
+        File branches = Utils.join(gitlet, "branches");
+        blobs.mkdirs();
+        branches.mkdirs();
+
+        boolean linked = true;
+        for (String name : Utils.plainFilenamesIn(sourceCommits)) {
+            linked &= ObjectStore.linkOrCopy(Utils.join(sourceCommits, name),
+                    Utils.join(commits, name), shared);
+        }
+        File sourceBlobs = Utils.join(sourceCommits, "blobs");
+        for (String name : Utils.plainFilenamesIn(sourceBlobs)) {
+            linked &= ObjectStore.linkOrCopy(Utils.join(sourceBlobs, name),
+                    Utils.join(blobs, name), shared);
+        }
+        File alternates = Utils.join(gitlet, "alternates");
+        List<File> objectDirs = new ArrayList<File>();
+        objectDirs.add(commits);
+        if (!linked) {
+            ObjectStore.addAlternate(alternates, sourceCommits);
+            objectDirs.add(sourceCommits);
+        }
+        for (File alt : ObjectStore.readAlternates(
+                Utils.join(sourceCommon, "alternates"))) {
+            ObjectStore.addAlternate(alternates, alt);
+            objectDirs.add(alt);
+        }
+
+        File sourceLfs = Utils.join(sourceCommon, "lfs");
+        File lfs = Utils.join(gitlet, "lfs");
+        if (sourceLfs.isDirectory()) {
+            lfs.mkdirs();
+            for (String name : Utils.plainFilenamesIn(sourceLfs)) {
+                ObjectStore.linkOrCopy(Utils.join(sourceLfs, name),
+                        Utils.join(lfs, name), shared);
+            }
+        }
+        File sourceTrack = Utils.join(sourceCommon, "lfs-track");
+        if (sourceTrack.isFile()) {
+            ObjectStore.linkOrCopy(sourceTrack,
+                    Utils.join(gitlet, "lfs-track"), false);
+        }
+
+        File sourcePacked = Utils.join(sourceCommon, "packed-refs");
+        if (sourcePacked.isFile()) {
+            ObjectStore.linkOrCopy(sourcePacked,
+                    Utils.join(gitlet, "packed-refs"), false);
+        }
+        File sourceBranches = Utils.join(sourceCommon, "branches");
+        for (String name : Utils.plainFilenamesIn(sourceBranches)) {
+            ObjectStore.linkOrCopy(Utils.join(sourceBranches, name),
+                    Utils.join(branches, name), false);
+        }
+        Branch current = Utils.readObject(
+                Utils.join(sourceGitlet, "currentBranch"), Branch.class);
+        Utils.writeObject(Utils.join(gitlet, "currentBranch"), current);
+        Utils.writeObject(Utils.join(gitlet, "stage"), new Stage());
+        Utils.writeContents(Utils.join(gitlet, "head"));
+        ObjectStore.writeTree(root, current.getHead().getBlobs(), objectDirs,
+                lfs);
+    }
+
+    /** Command that manages large files according to ARGS, which are
+     * "track PATTERN", "untrack PATTERN", "ls-files" or "pull".  Files
+     * matching a tracked pattern are added to the large-file store rather
+     * than the blob store; see LargeFiles.
+     */
+    public void lfs(String[] args) {
+        PathPatterns patterns = LargeFiles.patterns();
+        if (args[1].equals("track") && args.length == 3) {
+            patterns.add(args[2]);
+            patterns.write(LFS_TRACK);
+        } else if (args[1].equals("untrack") && args.length == 3) {
+            if (!patterns.remove(args[2])) {
+                _print.println("That pattern is not tracked.");
+                return;
+            }
+            patterns.write(LFS_TRACK);
+        } else if (args[1].equals("ls-files") && args.length == 2) {
+            if (_head.getBlobs() == null) {
+                return;
+            }
+            for (String name : _head.getBlobs().keySet()) {
+                String oid = LargeFiles.oid(
+                        ObjectStore.readBlob(_head.getBlobs().get(name)));
+                if (oid != null) {
+                    _print.println(oid.substring(0, 10) + " " + name);
+                }
+            }
+        } else if (args[1].equals("pull") && args.length == 2) {
+            LargeFiles.pull(_head, _sparse);
+        } else {
+            _print.println("Incorrect operands.");
+        }
+    }
+
     /** Checkout command that takes in commit SHA and a text file
      * NAME and checks this file out of that commit if it exists.
      */
     public void checkout(String sha, String name) {
-        List<String> commitFileNames = Utils.plainFilenamesIn(COMMITS);
-        File commitFile = null;
+        List<String> commitFileNames = ObjectStore.commitIds();
+        String commitId = null;
         for (String commitSHA : commitFileNames) {
             if (commitSHA.contains(sha)) {
-                commitFile = Utils.join(COMMITS, commitSHA);
+                commitId = commitSHA;
             }
         }
-        if (commitFile == null) {
-            System.out.println("No commit with that id exists.");
+        if (commitId == null) {
+            _print.println("No commit with that id exists.");
             return;
         }
-        Commit commit = Utils.readObject(commitFile, Commit.class);
+        Commit commit = ObjectStore.readCommit(commitId);
         if (commit.getBlobs().containsKey(name)) {
-            File blobFile = Utils.join(BLOBS, commit.getBlobs().get(name));
-            byte[] serBlob = Utils.readContents(blobFile);
-            File newFile = Utils.join(CWD, name);
-            Utils.writeContents(newFile, serBlob);
+            writeWorkingFile(name, commit.getBlobs().get(name));
         } else {
-            System.out.println("File does not exist in that commit");
+            _print.println("File does not exist in that commit");
         }
     }
 
@@ -244,7 +562,7 @@ public class Commands {
         File removeFile = Utils.join(CWD, name);
         boolean removed = false;
         if (_stage.getAddStage() == null && _head.getBlobs() == null) {
-            System.out.println("No reason to remove the file");
+            _print.println("No reason to remove the file");
         }
         if (_stage.getAddStage() != null
                 && _stage.getAddStage().containsKey(name)) {
@@ -258,122 +576,691 @@ public class Commands {
         }
         _stage.saveStage();
         if (!removed) {
-            System.out.println("No reason to remove the file");
+            _print.println("No reason to remove the file");
         }
     }
 
     /** Command that displays all commits made. */
     public void globalLog() {
-        List<String> commits = Utils.plainFilenamesIn(COMMITS);
-        for (String commitSHA : commits) {
-            File commitFile = Utils.join(COMMITS, commitSHA);
-            Commit commit = Utils.readObject(commitFile, Commit.class);
-            System.out.println("===");
-            System.out.println("commit " + commit.getSHA());
-            System.out.println("Date: " + commit.getDate());
-            System.out.println(commit.getMessage());
-            System.out.println();
+        globalLog(new LogOptions());
+    }
+
+    /** Command that displays all commits made, limited and formatted by
+     * OPTIONS.  Commits are read one at a time, and reading stops as soon
+     * as the limits are reached or the output is closed.
+     */
+    public void globalLog(LogOptions options) {
+        List<String> commits = ObjectStore.commitIds();
+        Writer out = logWriter();
+        try {
+            int count = 0;
+            for (String commitSHA : commits) {
+                if (options.isDone(count)) {
+                    break;
+                }
+                Commit commit = ObjectStore.readCommit(commitSHA);
+                if (options.matches(commit)) {
+                    out.write(options.format(commit));
+                    count += 1;
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            return;
+        }
+    }
+
+    /** Returns the stream on which I print messages. */
+    PrintStream out() {
+        return _print;
+    }
+
+    /** Returns a UTF-8 print stream that writes through to OUT. */
+    private static PrintStream printer(OutputStream out) {
+        try {
+            return new PrintStream(out, true,
+                    StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns a buffered writer on my bulk output that reports errors,
+     * such as the reader closing a pipe, as IOExceptions. */
+    private Writer logWriter() {
+        return new BufferedWriter(new OutputStreamWriter(_out,
+                StandardCharsets.UTF_8), LOG_BUFFER_SIZE);
+    }
+
+    /** Command that shows, for each line of the file NAME in the head
+     * commit, the commit that last changed it. */
+    public void blame(String name) {
+        Blame blame;
+        try {
+            blame = new Blame(name, _head);
+        } catch (GitletException excp) {
+            _print.println(excp.getMessage());
+            return;
+        }
+        Writer out = logWriter();
+        try {
+            String[] lines = blame.lines();
+            String width = Integer.toString(Integer.toString(lines.length)
+                    .length());
+            for (int i = 0; i < lines.length; i += 1) {
+                Commit owner = blame.ownerCommit(i);
+                out.write(String.format("%s (%s %" + width + "d) %s%n",
+                        owner.getSHA().substring(0, 7), owner.getDate(),
+                        i + 1, lines[i]));
+            }
+            out.flush();
+        } catch (IOException e) {
+            return;
+        }
+    }
+
+    /** Command that verifies the integrity of the repository, re-hashing
+     * every object unless CONNECTIVITYONLY. */
+    public void fsck(boolean connectivityOnly) {
+        for (String problem : new Fsck(connectivityOnly).run()) {
+            _print.println(problem);
         }
     }
 
     /** Command that finds a certain commit with MESSAGE. */
     public void find(String message) {
-        List<String> commits = Utils.plainFilenamesIn(COMMITS);
+        List<String> commits = ObjectStore.commitIds();
         boolean found = false;
         for (String commitSHA : commits) {
-            File commitFile = Utils.join(COMMITS, commitSHA);
-            Commit commit = Utils.readObject(commitFile, Commit.class);
+            Commit commit = ObjectStore.readCommit(commitSHA);
             if (commit.getMessage().equals(message)) {
                 found = true;
-                System.out.println(commit.getSHA());
+                _print.println(commit.getSHA());
             }
         }
         if (!found) {
-            System.out.println("Found no commit with that message");
+            _print.println("Found no commit with that message");
         }
     }
 
     /** Command that creates a new branch with specified NAME. */
     public void branch(String name) {
-        List<String> branchNames = Utils.plainFilenamesIn(BRANCHES);
-        if (branchNames.contains(name)) {
-            System.out.println("A branch with that name already exists.");
+        if (Refs.exists(name)) {
+            _print.println("A branch with that name already exists.");
             return;
         }
         Branch newBranch = new Branch(name, _head);
         newBranch.saveBranch();
     }
 
+    /** Command that prints out current status of our repository,
+     *  followed by the staged renames and copies if RENAMES. */
+    public void status(boolean renames) {
+        status();
+        if (!renames) {
+            return;
+        }
+        TreeMap<String, String> staged = new TreeMap<String, String>();
+        if (_head.getBlobs() != null) {
+            staged.putAll(_head.getBlobs());
+        }
+        staged.putAll(_stage.getAddStage());
+        for (String name : _stage.getRemoveStage()) {
+            staged.remove(name);
+        }
+        RenameDetector detector =
+                new RenameDetector(_head.getBlobs(), staged);
+        _print.println("=== Renamed Files ===");
+        for (String name : detector.renames().keySet()) {
+            _print.println(detector.renames().get(name) + " -> " + name);
+        }
+        _print.println();
+        _print.println("=== Copied Files ===");
+        for (String name : detector.copies().keySet()) {
+            _print.println(detector.copies().get(name) + " -> " + name);
+        }
+        _print.println();
+    }
+
     /** Command that prints out current status of our repository. */
     public void status() {
-        System.out.println("=== Branches ===");
-        System.out.println("*" + _currentBranch.getName());
-        List<String> branchNames = Utils.plainFilenamesIn(BRANCHES);
-        for (String name : branchNames) {
+        _print.println("=== Branches ===");
+        _print.println("*" + _currentBranch.getName());
+        for (String name : Refs.names()) {
             if (!name.equals(_currentBranch.getName())) {
-                System.out.println(name);
+                _print.println(name);
             }
         }
-        System.out.println();
+        _print.println();
 
-        System.out.println("=== Staged Files ===");
+        _print.println("=== Staged Files ===");
         Set<String> stagedFiles = _stage.getAddStage().keySet();
         for (String name : stagedFiles) {
-            System.out.println(name);
+            _print.println(name);
         }
-        System.out.println();
+        _print.println();
 
-        System.out.println("=== Removed Files ===");
+        _print.println("=== Removed Files ===");
         for (String name : _stage.getRemoveStage()) {
-            System.out.println(name);
+            _print.println(name);
         }
-        System.out.println();
+        _print.println();
+
+        _print.println("=== Modifications Not Staged For Commit ===");
+        _print.println();
+        _print.println("=== Untracked Files ===");
+        _print.println();
+    }
 
-        System.out.println("=== Modifications Not Staged For Commit ===");
-        System.out.println();
-        System.out.println("=== Untracked Files ===");
-        System.out.println();
+    /** Command that saves and restores uncommitted changes according to
+     * ARGS, which are "push" (the default), "pop" or "list".  A stash is
+     * a commit of the working files whose parent is the head commit and
+     * whose merged parent is a commit of the staging area, so its files
+     * share blobs with every other commit.
+     */
+    public void stash(String[] args) {
+        String sub = args.length == 1 ? "push" : args[1];
+        if (args.length > 2) {
+            _print.println("Incorrect operands.");
+        } else if (sub.equals("push")) {
+            stashPush();
+        } else if (sub.equals("pop")) {
+            stashPop();
+        } else if (sub.equals("list")) {
+            List<String> ids = stashIds();
+            for (int i = 0; i < ids.size(); i += 1) {
+                Commit work = ObjectStore.readCommit(ids.get(i));
+                _print.println("stash@{" + i + "}: "
+                        + work.getMessage());
+            }
+        } else {
+            _print.println("Incorrect operands.");
+        }
+    }
+
+    /** Saves the staging area and tracked working files as a stash and
+     * resets both to the head commit. */
+    private void stashPush() {
+        TreeMap<String, String> base = blobsOf(_head);
+        Commit index = new Commit("index on " + _currentBranch.getName(),
+                _head);
+        index.setBlobs(_stage.getAddStage());
+        index.removeBlobs(_stage.getRemoveStage());
+        for (String name : _stage.getAddStage().keySet()) {
+            if (!ObjectStore.hasBlob(_stage.getAddStage().get(name))) {
+                storeWorkingFile(name);
+            }
+        }
+
+        TreeMap<String, String> working = new TreeMap<String, String>();
+        for (String name : index.getBlobs().keySet()) {
+            if (!_sparse.includes(name)) {
+                working.put(name, index.getBlobs().get(name));
+            } else if (Utils.join(CWD, name).isFile()) {
+                working.put(name, storeWorkingFile(name));
+            }
+        }
+        if (working.equals(base) && index.getBlobs().equals(base)) {
+            _print.println("No local changes to save.");
+            return;
+        }
+        Commit work = new Commit("WIP on " + _currentBranch.getName() + ": "
+                + _head.getSHA().substring(0, 7) + " " + _head.getMessage(),
+                _head);
+        work.removeBlobs(base.keySet());
+        work.setBlobs(working);
+        work.setMerged(index);
+        index.save();
+        work.save();
+
+        for (String name : working.keySet()) {
+            if (!base.containsKey(name)) {
+                Utils.restrictedDelete(Utils.join(CWD, name));
+            }
+        }
+        for (String name : base.keySet()) {
+            if (!base.get(name).equals(working.get(name))
+                    && _sparse.includes(name)) {
+                writeWorkingFile(name, base.get(name));
+            }
+        }
+        _stage.empty();
+        _stage.saveStage();
+        List<String> ids = stashIds();
+        ids.add(0, work.getSHA());
+        writeStashIds(ids);
+    }
+
+    /** Applies the newest stash to the working files and staging area,
+     * writing only the paths it changed, and drops it unless there is a
+     * conflict. */
+    private void stashPop() {
+        List<String> ids = stashIds();
+        if (ids.isEmpty()) {
+            _print.println("No stash entries found.");
+            return;
+        }
+        Commit work = ObjectStore.readCommit(ids.get(0));
+        Commit index = work.getMerged();
+        TreeMap<String, String> base = blobsOf(work.getParent());
+        TreeMap<String, String> head = blobsOf(_head);
+        TreeMap<String, String> stashed = blobsOf(work);
+        TreeSet<String> changed = changedPaths(base, stashed);
+        changed.addAll(changedPaths(base, blobsOf(index)));
+
+        for (String name : changed) {
+            File file = Utils.join(CWD, name);
+            String current = file.isFile()
+                    ? LargeFiles.blobSHA(name, file) : null;
+            String expected = head.get(name);
+            boolean modified = current == null ? expected != null
+                    && _sparse.includes(name) : !current.equals(expected);
+            if (modified || _stage.getAddStage().containsKey(name)
+                    || _stage.getRemoveStage().contains(name)) {
+                _print.println("Your local changes to " + name
+                        + " would be overwritten by stash pop.");
+                return;
+            }
+        }
+
+        boolean conflict = false;
+        for (String name : changed) {
+            String ours = head.get(name);
+            String theirs = stashed.get(name);
+            String staged = index.getBlobs().get(name);
+            if (ours != null && !ours.equals(base.get(name))
+                    && !ours.equals(theirs)) {
+                writeConflict(name, ours, theirs);
+                conflict = true;
+                continue;
+            }
+            if (theirs == null) {
+                Utils.restrictedDelete(Utils.join(CWD, name));
+            } else {
+                writeWorkingFile(name, theirs);
+            }
+            if (staged == null ? base.containsKey(name) && ours != null
+                    : !staged.equals(base.get(name))) {
+                if (staged == null) {
+                    _stage.remove(name);
+                } else {
+                    _stage.add(name, staged);
+                }
+            }
+        }
+        _stage.saveStage();
+        if (conflict) {
+            _print.println("Encountered a merge conflict.");
+            return;
+        }
+        ids.remove(0);
+        writeStashIds(ids);
+    }
+
+    /** Returns the paths whose blobs differ between BEFORE and AFTER. */
+    private static TreeSet<String> changedPaths(TreeMap<String, String> before,
+                                                TreeMap<String, String> after) {
+        TreeSet<String> result = new TreeSet<String>();
+        for (String name : before.keySet()) {
+            if (!before.get(name).equals(after.get(name))) {
+                result.add(name);
+            }
+        }
+        for (String name : after.keySet()) {
+            if (!before.containsKey(name)) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the blobs of COMMIT, never null. */
+    private static TreeMap<String, String> blobsOf(Commit commit) {
+        if (commit == null || commit.getBlobs() == null) {
+            return new TreeMap<String, String>();
+        }
+        return commit.getBlobs();
+    }
+
+    /** Adds the working file NAME to the blob store, unless a blob with
+     * the same contents is already there, and returns its blob SHA. */
+    private String storeWorkingFile(String name) {
+        File file = Utils.join(CWD, name);
+        if (LargeFiles.isTracked(name)) {
+            return LargeFiles.store(file);
+        }
+        byte[] contents = Utils.readContents(file);
+        String sha = Utils.sha1(contents);
+        ObjectStore.writeBlob(sha, contents);
+        return sha;
+    }
+
+    /** Returns the ids of the stashed commits, newest first. */
+    static List<String> stashIds() {
+        List<String> ids = new ArrayList<String>();
+        if (STASH.isFile()) {
+            for (String id : Utils.readContentsAsString(STASH).split("\n")) {
+                if (!id.isEmpty()) {
+                    ids.add(id);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /** Records IDS as the stashed commits, newest first. */
+    private static void writeStashIds(List<String> ids) {
+        if (ids.isEmpty()) {
+            STASH.delete();
+            return;
+        }
+        Utils.writeContents(STASH, String.join("\n", ids) + "\n");
+    }
+
+    /** Command that writes the files of a commit as an archive, according
+     * to ARGS: a commit id or branch name, then optionally
+     * "--format=zip" or "--format=tar" (the default) and "--output=FILE"
+     * (else the standard output).  The working directory is not used. */
+    public void archive(String[] args) {
+        String format = "tar";
+        String output = null;
+        for (int i = 2; i < args.length; i += 1) {
+            if (args[i].startsWith("--format=")) {
+                format = args[i].substring("--format=".length());
+            } else if (args[i].startsWith("--output=")) {
+                output = args[i].substring("--output=".length());
+            } else {
+                _print.println("Incorrect operands.");
+                return;
+            }
+        }
+        if (!format.equals("zip") && !format.equals("tar")) {
+            _print.println("Unknown archive format.");
+            return;
+        }
+        Commit commit;
+        if (Refs.exists(args[1])) {
+            commit = Refs.read(args[1]).getHead();
+        } else {
+            String commitId = ObjectStore.resolveCommit(args[1]);
+            if (commitId == null) {
+                _print.println("No commit with that id exists.");
+                return;
+            }
+            commit = ObjectStore.readCommit(commitId);
+        }
+        Archive archive = new Archive(commit);
+        try {
+            archive.check(format);
+            if (output != null) {
+                writeArchive(archive, format, new File(output));
+                return;
+            }
+        } catch (IOException | GitletException excp) {
+            _print.println(excp.getMessage());
+            return;
+        }
+        try {
+            archive.write(format, new BufferedOutputStream(_out,
+                    LOG_BUFFER_SIZE));
+        } catch (IOException | GitletException excp) {
+            System.err.println(excp.getMessage());
+        }
+    }
+
+    /** Writes ARCHIVE in FORMAT to FILE, deleting what was written if
+     * that fails. */
+    private static void writeArchive(Archive archive, String format,
+                                     File file) throws IOException {
+        boolean done = false;
+        try (OutputStream out = new FileOutputStream(file)) {
+            archive.write(format, out);
+            done = true;
+        } finally {
+            if (!done) {
+                file.delete();
+            }
+        }
+    }
+
+    /** Command that searches for the commit that introduced a bug,
+     * according to ARGS: "start [BAD [GOOD...]]", "bad [ID]",
+     * "good [ID]", "skip [ID]", "run SCRIPT [ARG...]" or "reset".  The
+     * commit to test is checked out by writing only the files in which
+     * it differs from the one checked out before; the current branch
+     * does not move. */
+    public void bisect(String[] args) {
+        Bisect state = Bisect.load();
+        String sub = args[1];
+        if (sub.equals("start")) {
+            if (state != null) {
+                _print.println("Already bisecting; use bisect reset "
+                        + "first.");
+            } else if (hasUncommittedChanges()) {
+                _print.println("You have uncommitted changes.");
+            } else {
+                state = new Bisect(_currentBranch.getName(), _head.getSHA());
+                for (int i = 2; i < args.length; i += 1) {
+                    if (!ObjectStore.hasCommit(args[i])) {
+                        _print.println("No commit with that id exists.");
+                        return;
+                    } else if (i == 2) {
+                        state.markBad(args[i]);
+                    } else {
+                        state.markGood(args[i]);
+                    }
+                }
+                bisectStep(state);
+            }
+        } else if (state == null) {
+            _print.println("Not bisecting.");
+        } else if (sub.equals("reset")) {
+            bisectCheckout(state.current(), _head.getSHA());
+            Bisect.clear();
+        } else if (sub.equals("run")) {
+            bisectRun(Arrays.copyOfRange(args, 2, args.length));
+        } else if (args.length > 3 || !(sub.equals("bad")
+                || sub.equals("good") || sub.equals("skip"))) {
+            _print.println("Incorrect operands.");
+        } else {
+            String id = args.length == 3 ? args[2] : state.current();
+            if (!ObjectStore.hasCommit(id)) {
+                _print.println("No commit with that id exists.");
+                return;
+            }
+            bisectMark(state, sub, id);
+            bisectStep(state);
+        }
+    }
+
+    /** Marks the commit ID in STATE as VERDICT: "good", "bad" or
+     * "skip". */
+    private static void bisectMark(Bisect state, String verdict,
+                                   String id) {
+        if (verdict.equals("bad")) {
+            state.markBad(id);
+        } else if (verdict.equals("good")) {
+            state.markGood(id);
+        } else {
+            state.markSkipped(id);
+        }
+    }
+
+    /** Checks out the next commit to test in STATE, or reports the first
+     * bad commit, and saves STATE.  Returns true iff the bisection is
+     * finished. */
+    private boolean bisectStep(Bisect state) {
+        if (!state.isReady()) {
+            state.save();
+            return false;
+        }
+        String next = state.next();
+        if (next == null) {
+            List<String> suspects = state.candidates();
+            if (suspects.size() == 1) {
+                Commit first = ObjectStore.readCommit(suspects.get(0));
+                _print.println(first.getSHA()
+                        + " is the first bad commit");
+                _print.println("Date: " + first.getDate());
+                _print.println(first.getMessage());
+            } else {
+                _print.println("There are only 'skip'ped commits left "
+                        + "to test.");
+                _print.println("The first bad commit could be any of:");
+                for (String id : suspects) {
+                    _print.println(id);
+                }
+            }
+            state.save();
+            return true;
+        }
+        int left = state.remaining() / 2;
+        int steps = 31 - Integer.numberOfLeadingZeros(Math.max(1, left));
+        bisectCheckout(state.current(), next);
+        state.setCurrent(next);
+        state.save();
+        Commit commit = ObjectStore.readCommit(next);
+        _print.println("Bisecting: " + left + " revisions left to test "
+                + "after this (roughly " + steps + " steps)");
+        _print.println("[" + next + "] " + commit.getMessage());
+        return false;
+    }
+
+    /** Runs COMMAND at each step of the bisection in progress, marking the
+     * commit good if it exits with 0, skipping it if it exits with 125,
+     * and marking it bad if it exits with any other code below 128, until
+     * the first bad commit is found.  The repository is locked only
+     * between runs, so that COMMAND may itself use gitlet. */
+    private void bisectRun(String[] command) {
+        if (command.length == 0) {
+            _print.println("Incorrect operands.");
+            return;
+        }
+        while (true) {
+            RepoLock lock = RepoLock.acquire(false);
+            try {
+                Bisect state = Bisect.load();
+                if (state == null || !state.isReady()) {
+                    _print.println("bisect run needs a good and a bad "
+                            + "commit.");
+                    return;
+                }
+            } finally {
+                lock.close();
+            }
+            int code;
+            try {
+                code = new ProcessBuilder(command).directory(CWD)
+                        .inheritIO().start().waitFor();
+            } catch (IOException excp) {
+                _print.println("bisect run failed: "
+                        + excp.getMessage());
+                return;
+            } catch (InterruptedException excp) {
+                Thread.currentThread().interrupt();
+                _print.println("bisect run interrupted.");
+                return;
+            }
+            if (code < 0 || code >= 128) {
+                _print.println("bisect run failed: exit code " + code);
+                return;
+            }
+            String verdict = code == 0 ? "good" : code == 125 ? "skip"
+                    : "bad";
+            lock = RepoLock.acquire(false);
+            try {
+                Bisect state = Bisect.load();
+                if (state == null) {
+                    return;
+                }
+                bisectMark(state, verdict, state.current());
+                if (bisectStep(state)) {
+                    return;
+                }
+            } finally {
+                lock.close();
+            }
+        }
+    }
+
+    /** Changes the working files from those of the commit FROM to those of
+     * the commit TO, writing or deleting only the files that differ. */
+    private void bisectCheckout(String from, String to) {
+        TreeMap<String, String> before = blobsOf(ObjectStore.readCommit(from));
+        TreeMap<String, String> after = blobsOf(ObjectStore.readCommit(to));
+        for (String name : changedPaths(before, after)) {
+            if (!_sparse.includes(name)) {
+                continue;
+            } else if (after.containsKey(name)) {
+                writeWorkingFile(name, after.get(name));
+            } else {
+                Utils.restrictedDelete(Utils.join(CWD, name));
+            }
+        }
+    }
+
+    /** Returns true iff anything is staged or a tracked working file
+     * differs from the head commit. */
+    private boolean hasUncommittedChanges() {
+        if (!_stage.getAddStage().isEmpty()
+                || !_stage.getRemoveStage().isEmpty()) {
+            return true;
+        }
+        TreeMap<String, String> head = blobsOf(_head);
+        for (String name : head.keySet()) {
+            File file = Utils.join(CWD, name);
+            if (_sparse.includes(name)
+                    && (!file.isFile() || !LargeFiles.blobSHA(name, file)
+                        .equals(head.get(name)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Command that moves all loose branches into the packed-refs file. */
+    public void packRefs() {
+        Refs.pack();
     }
 
     /** Command that removes a branch with NAME. */
     public void rmBranch(String name) {
-        List<String> branchNames = Utils.plainFilenamesIn(BRANCHES);
-        if (branchNames != null && !branchNames.contains(name)) {
-            System.out.println("A branch with that name does not exist");
+        if (!Refs.exists(name)) {
+            _print.println("A branch with that name does not exist");
         } else if (_currentBranch.getName().equals(name)) {
-            System.out.println("Cannot remove the current branch.");
+            _print.println("Cannot remove the current branch.");
         } else {
-            File branchFile = Utils.join(BRANCHES, name);
-            branchFile.delete();
+            Refs.delete(name);
         }
     }
 
     /** Command that resets head of current branch to specified commit ID. */
     public void reset(String id) {
-        File commitFile = Utils.join(COMMITS, id);
-        if (!commitFile.exists()) {
-            System.out.println("No commit with that id exists.");
+        String commitId = ObjectStore.resolveCommit(id);
+        if (commitId == null) {
+            _print.println("No commit with that id exists.");
             return;
         }
         List<String> filesCWD = Utils.plainFilenamesIn(CWD);
-        Commit commit = Utils.readObject(commitFile, Commit.class);
+        Commit commit = ObjectStore.readCommit(commitId);
         for (String fileName : filesCWD) {
             File fileCWD = Utils.join(CWD, fileName);
             if (commit.getBlobs().containsKey(fileName)
                     && !_head.getBlobs().containsKey(fileName)) {
-                System.out.println("There is an untracked file in the way; "
+                _print.println("There is an untracked file in the way; "
                         + "delete it, or add and commit it first.");
             }
         }
         for (String fileName : filesCWD) {
-            File fileToDelete = Utils.join(CWD, fileName);
-            Utils.restrictedDelete(fileToDelete);
+            if (_sparse.includes(fileName)) {
+                File fileToDelete = Utils.join(CWD, fileName);
+                Utils.restrictedDelete(fileToDelete);
+            }
         }
         for (String fileName : commit.getBlobs().keySet()) {
-            File blobFile = Utils.join(BLOBS, commit.getBlobs().get(fileName));
-            byte[] serBlob = Utils.readContents(blobFile);
-            File newFile = Utils.join(CWD, fileName);
-            Utils.writeContents(newFile, serBlob);
+            if (_sparse.includes(fileName)) {
+                writeWorkingFile(fileName, commit.getBlobs().get(fileName));
+            }
         }
         _currentBranch.setHead(commit);
         _currentBranch.saveAsCurrentBranch();
@@ -388,8 +1275,7 @@ public class Commands {
         if (error) {
             return;
         }
-        File branchFile = Utils.join(BRANCHES, branchName);
-        Branch givenBranch = Utils.readObject(branchFile, Branch.class);
+        Branch givenBranch = Refs.read(branchName);
         Commit given = givenBranch.getHead();
         boolean untracked = checkUntracked(given);
         if (untracked) {
@@ -397,15 +1283,20 @@ public class Commands {
         }
         Commit splitPoint = findLatestCommonAncestor(given, 0);
         if (splitPoint.getSHA().equals(given.getSHA())) {
-            System.out.println("Given branch is an ancestor "
+            _print.println("Given branch is an ancestor "
                     + "of the current branch.");
             return;
         } else if (splitPoint.getSHA().equals(_head.getSHA())) {
             checkout(givenBranch.getName(), false);
-            System.out.println("Current branch fast-forwarded.");
+            _print.println("Current branch fast-forwarded.");
             return;
         } else {
             boolean conflict = false;
+            _givenRenames = new RenameDetector(splitPoint.getBlobs(),
+                    given.getBlobs());
+            _headRenames = new RenameDetector(splitPoint.getBlobs(),
+                    _head.getBlobs());
+            _renamedPaths = new HashSet<String>();
             if (splitPoint.getBlobs() != null) {
                 for (String fileName : splitPoint.getBlobs().keySet()) {
                     boolean error2 = mergeHelper(fileName,
@@ -429,15 +1320,16 @@ public class Commands {
                 }
             }
             for (String fileName : given.getBlobs().keySet()) {
-                if (((splitPoint.getBlobs() == null)
+                if (_renamedPaths.contains(fileName)) {
+                    continue;
+                } else if (((splitPoint.getBlobs() == null)
                         || !splitPoint.getBlobs().containsKey(fileName))
                         && !_head.getBlobs().containsKey(fileName)) {
-                    checkout(given.getSHA(), fileName);
-                    _stage.add(fileName, given.getBlobs().get(fileName));
+                    takeMerged(fileName, given.getBlobs().get(fileName));
                 }
             }
             if (conflict) {
-                System.out.println("Encountered a merge conflict.");
+                _print.println("Encountered a merge conflict.");
             }
         }
         mergeHelper3(givenBranch, given);
@@ -447,16 +1339,15 @@ public class Commands {
      * checkout. Returns true if there is an error.
      */
     public boolean mergeErrors(String branchName) {
-        File branchFile = Utils.join(BRANCHES, branchName);
-        if (!branchFile.exists()) {
-            System.out.println("A branch with that name does not exist.");
+        if (!Refs.exists(branchName)) {
+            _print.println("A branch with that name does not exist.");
             return true;
         } else if (_stage.getAddStage().size() != 0
                 || _stage.getRemoveStage().size() != 0) {
-            System.out.println("You have uncommitted changes.");
+            _print.println("You have uncommitted changes.");
             return true;
         } else if (branchName.equals(_currentBranch.getName())) {
-            System.out.println("Cannot merge a branch with itself.");
+            _print.println("Cannot merge a branch with itself.");
             return true;
         } else {
             return false;
@@ -522,13 +1413,24 @@ public class Commands {
                                 Commit given, Commit current) {
         boolean conflict = false;
         String blobSHA = splitPoint.getBlobs().get(fileName);
+        String target = renamedPath(fileName, given, current);
+        if (target != null) {
+            if (!given.getBlobs().containsKey(fileName)) {
+                rm(fileName);
+                return mergeRenamed(target, blobSHA,
+                        current.getBlobs().get(fileName),
+                        given.getBlobs().get(target), true);
+            }
+            return mergeRenamed(target, blobSHA,
+                    current.getBlobs().get(target),
+                    given.getBlobs().get(fileName), false);
+        }
         if (given.getBlobs().containsKey(fileName)
                 && current.getBlobs().containsKey(fileName)) {
             String givenSHA = given.getBlobs().get(fileName);
             String currentSHA = current.getBlobs().get(fileName);
             if (blobSHA.equals(currentSHA) && !blobSHA.equals(givenSHA)) {
-                checkout(given.getSHA(), fileName);
-                _stage.add(fileName, given.getBlobs().get(fileName));
+                takeMerged(fileName, given.getBlobs().get(fileName));
                 int pass;
             } else if (!blobSHA.equals(currentSHA)
                     && blobSHA.equals(givenSHA)) {
@@ -567,37 +1469,96 @@ public class Commands {
         return conflict;
     }
 
+    /** Returns the path to which FILENAME was renamed on exactly one of
+     * the GIVEN and CURRENT branches since the split point, or null if it
+     * was not renamed that way.
+     */
+    private String renamedPath(String fileName, Commit given,
+                               Commit current) {
+        if (_givenRenames == null || _headRenames == null) {
+            return null;
+        }
+        boolean inGiven = given.getBlobs().containsKey(fileName);
+        boolean inCurrent = current.getBlobs().containsKey(fileName);
+        if (!inGiven && inCurrent) {
+            String target = _givenRenames.renamedTo(fileName);
+            if (target != null && !current.getBlobs().containsKey(target)) {
+                return target;
+            }
+        } else if (inGiven && !inCurrent) {
+            String target = _headRenames.renamedTo(fileName);
+            if (target != null && !given.getBlobs().containsKey(target)) {
+                return target;
+            }
+        }
+        return null;
+    }
+
+    /** Merges a file renamed to TARGET on one side since the split point,
+     * where its contents were SPLITSHA.
+     * @param target - the file's new name.
+     * @param splitSHA - the file's blob at the split point.
+     * @param currentSHA - the file's blob in the current branch head.
+     * @param givenSHA - the file's blob in the given branch head.
+     * @param givenRenamed - true if the given branch did the rename.
+     * @return - true if there is a conflict in the process.
+     */
+    private boolean mergeRenamed(String target, String splitSHA,
+                                 String currentSHA, String givenSHA,
+                                 boolean givenRenamed) {
+        _renamedPaths.add(target);
+        String result;
+        if (splitSHA.equals(givenSHA) || givenSHA.equals(currentSHA)) {
+            result = currentSHA;
+        } else if (splitSHA.equals(currentSHA)) {
+            result = givenSHA;
+        } else {
+            writeConflict(target, currentSHA, givenSHA);
+            return true;
+        }
+        if (givenRenamed || !result.equals(currentSHA)) {
+            takeMerged(target, result);
+        }
+        return false;
+    }
+
+    /** Stages the blob BLOBSHA as the merged FILENAME, writing it to the
+     * working directory unless sparse checkout excludes FILENAME.
+     */
+    private void takeMerged(String fileName, String blobSHA) {
+        if (_sparse.includes(fileName)) {
+            writeWorkingFile(fileName, blobSHA);
+        }
+        _stage.add(fileName, blobSHA);
+    }
+
     /** Helper2 for merge function.
      * @param fileName - Name of the file that has a conflict.
      * @param given - Given branch head.
      * @param current - Current branch head.
      */
     public void mergeHelper2(String fileName, Commit given, Commit current) {
-        if (given == null) {
-            File currentFile = Utils.join(BLOBS,
-                    current.getBlobs().get(fileName));
-            byte[] currSer = Utils.readContents(currentFile);
-            File file = Utils.join(CWD, fileName);
-            Utils.writeContents(file, "<<<<<<< HEAD\n",
-                    currSer, "=======\n", ">>>>>>>\n");
-        } else if (current == null) {
-            File givenFile = Utils.join(BLOBS, given.getBlobs().get(fileName));
-            byte[] givenSer = Utils.readContents(givenFile);
-            File file = Utils.join(CWD, fileName);
-            Utils.writeContents(file, "<<<<<<< HEAD\n",
-                    "=======\n", givenSer, ">>>>>>>\n");
-        } else {
-            File givenFile = Utils.join(BLOBS,
-                    given.getBlobs().get(fileName));
-            File currentFile = Utils.join(BLOBS,
-                    current.getBlobs().get(fileName));
-            byte[] currSer = Utils.readContents(currentFile);
-            byte[] givenSer = Utils.readContents(givenFile);
+        writeConflict(fileName,
+                current == null ? null : current.getBlobs().get(fileName),
+                given == null ? null : given.getBlobs().get(fileName));
+    }
 
-            File file = Utils.join(CWD, fileName);
-            Utils.writeContents(file, "<<<<<<< HEAD\n",
-                    currSer, "=======\n", givenSer, ">>>>>>>\n");
+    /** Writes conflict markers around the blobs CURRENTSHA and GIVENSHA
+     * (either of which may be null for an absent file) to FILENAME.
+     */
+    private void writeConflict(String fileName, String currentSHA,
+                               String givenSHA) {
+        byte[] currSer = new byte[0];
+        byte[] givenSer = new byte[0];
+        if (currentSHA != null) {
+            currSer = ObjectStore.readBlob(currentSHA);
+        }
+        if (givenSHA != null) {
+            givenSer = ObjectStore.readBlob(givenSHA);
         }
+        File file = Utils.join(CWD, fileName);
+        Utils.writeContents(file, "<<<<<<< HEAD\n",
+                currSer, "=======\n", givenSer, ">>>>>>>\n");
     }
 
     /** Creates new merged commit using the GIVENBRANCH and
@@ -627,7 +1588,7 @@ public class Commands {
         for (String fileName : filesCWD) {
             if (given.getBlobs().containsKey(fileName)
                     && !_head.getBlobs().containsKey(fileName)) {
-                System.out.println("There is an untracked file in the way; "
+                _print.println("There is an untracked file in the way; "
                         + "delete it, or add and commit it first.");
                 return true;
             }
@@ -635,14 +1596,35 @@ public class Commands {
         return false;
     }
 
+    /** Size in characters of the log output buffer. */
+    private static final int LOG_BUFFER_SIZE = 1 << 16;
+
     /** The staging area of the repository. */
     private Stage _stage;
 
+    /** Stream receiving bulk output. */
+    private final OutputStream _out;
+
+    /** Stream receiving messages, which writes through to _out. */
+    private final PrintStream _print;
+
     /** The current branch being operated on. */
     private Branch _currentBranch;
 
     /** The most recent commit in the current branch. */
     private Commit _head;
+
+    /** The sparse-checkout patterns in effect. */
+    private SparseCheckout _sparse;
+
+    /** Renames on the given branch since the split point of a merge. */
+    private RenameDetector _givenRenames;
+
+    /** Renames on the current branch since the split point of a merge. */
+    private RenameDetector _headRenames;
+
+    /** Renamed paths already resolved by the current merge. */
+    private HashSet<String> _renamedPaths;
 }
 
 
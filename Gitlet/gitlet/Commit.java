@@ -5,7 +5,7 @@ import java.text.SimpleDateFormat;
 import java.util.TreeMap;
 import java.util.Date;
 import java.util.Set;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.io.File;
 import java.io.IOException;
 import static gitlet.Directories.*;
@@ -15,6 +15,10 @@ import static gitlet.Directories.*;
  */
 public class Commit implements Serializable {
 
+    /** The serialVersionUID of the first version of this class, which
+     *  commits and branches written by earlier versions were saved with. */
+    private static final long serialVersionUID = -5023359585322270011L;
+
     /** Constructor for Commit. Takes in a
      * MESSAGE and pointer to the PARENT commit.
      */
@@ -83,7 +87,7 @@ public class Commit implements Serializable {
     }
 
     /** Removes blobs with certain NAMES from commit. */
-    public void removeBlobs(ArrayList<String> names) {
+    public void removeBlobs(Collection<String> names) {
         for (String name : names) {
             _blobs.remove(name);
         }
@@ -94,20 +98,24 @@ public class Commit implements Serializable {
         File saved = Utils.join(COMMITS, this.getSHA());
         try {
             saved.createNewFile();
-            Utils.writeObject(saved, this);
+            ObjectCodec.write(saved, Utils.serialize(this));
         } catch (IOException e) {
             System.err.println(e);
         }
     }
 
-    /** Serialize blobs into the BLOBS directory. */
+    /** Serialize blobs into the BLOBS directory.  Blobs already in the
+     * BLOBS directory, such as those of unchanged files, are not re-read
+     * from the working directory, which may not contain them. */
     public void saveBlobs() {
         Set<String> keySet = _blobs.keySet();
         for (String key : keySet) {
+            if (ObjectStore.hasBlob(_blobs.get(key))) {
+                continue;
+            }
             byte[] serializedBlob = Utils.readContents(new File(key));
             String fileSHA = Utils.sha1(serializedBlob);
-            File blobFile = Utils.join(BLOBS, fileSHA);
-            Utils.writeContents(blobFile, serializedBlob);
+            ObjectStore.writeBlob(fileSHA, serializedBlob);
         }
     }
 
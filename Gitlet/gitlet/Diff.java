@@ -0,0 +1,119 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Line-oriented differences between two versions of a file, computed with
+ *  Myers' O(ND) algorithm after trimming the common prefix and suffix.
+ *  @author Sameer Keswani
+ */
+class Diff {
+
+    /** Returns the lines of CONTENTS, without their line terminators.  A
+     *  final line terminator does not start a new (empty) line. */
+    static String[] lines(byte[] contents) {
+        String text = new String(contents, StandardCharsets.UTF_8);
+        if (text.isEmpty()) {
+            return new String[0];
+        }
+        if (text.endsWith("\n")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        return text.split("\n", -1);
+    }
+
+    /** Returns an array whose J-th element is the index of the line of A
+     *  matched with line J of B in a shortest edit script turning A into
+     *  B, or -1 if line J of B was inserted. */
+    static int[] matchLines(String[] a, String[] b) {
+        int[] match = new int[b.length];
+        Arrays.fill(match, -1);
+        int start = 0;
+        while (start < a.length && start < b.length
+               && a[start].equals(b[start])) {
+            match[start] = start;
+            start += 1;
+        }
+        int endA = a.length, endB = b.length;
+        while (endA > start && endB > start
+               && a[endA - 1].equals(b[endB - 1])) {
+            endA -= 1;
+            endB -= 1;
+            match[endB] = endA;
+        }
+        if (start < endA && start < endB) {
+            myers(a, start, endA, b, start, endB, match);
+        }
+        return match;
+    }
+
+    /** Fills MATCH for lines LOB..HIB-1 of B against lines LOA..HIA-1
+     *  of A with Myers' algorithm.  For the backtrack it keeps, for each
+     *  D, only the diagonals -D..D that pass D could have reached, so the
+     *  trace takes O(D^2) space rather than O((N + M) D). */
+    private static void myers(String[] a, int loA, int hiA,
+                              String[] b, int loB, int hiB, int[] match) {
+        int n = hiA - loA, m = hiB - loB;
+        int[] ha = hashes(a, loA, hiA);
+        int[] hb = hashes(b, loB, hiB);
+        int max = n + m;
+        int off = max + 1;
+        int[] v = new int[2 * max + 3];
+        List<int[]> trace = new ArrayList<>();
+        int found = -1;
+        for (int d = 0; d <= max && found < 0; d += 1) {
+            trace.add(Arrays.copyOfRange(v, off - d, off + d + 1));
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[off + k - 1] < v[off + k + 1])) {
+                    x = v[off + k + 1];
+                } else {
+                    x = v[off + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && ha[x] == hb[y]
+                       && a[loA + x].equals(b[loB + y])) {
+                    x += 1;
+                    y += 1;
+                }
+                v[off + k] = x;
+                if (x >= n && y >= m) {
+                    found = d;
+                    break;
+                }
+            }
+        }
+
+        int x = n, y = m;
+        for (int d = found; d >= 0; d -= 1) {
+            int[] prev = trace.get(d);
+            int k = x - y;
+            int prevK;
+            if (k == -d || (k != d && prev[d + k - 1] < prev[d + k + 1])) {
+                prevK = k + 1;
+            } else {
+                prevK = k - 1;
+            }
+            int prevX = d == 0 ? 0 : prev[d + prevK];
+            int prevY = d == 0 ? 0 : prevX - prevK;
+            while (x > prevX && y > prevY) {
+                x -= 1;
+                y -= 1;
+                match[loB + y] = loA + x;
+            }
+            x = prevX;
+            y = prevY;
+        }
+    }
+
+    /** Returns the hash codes of LINES[LO..HI-1]. */
+    private static int[] hashes(String[] lines, int lo, int hi) {
+        int[] result = new int[hi - lo];
+        for (int i = lo; i < hi; i += 1) {
+            result[i - lo] = lines[i].hashCode();
+        }
+        return result;
+    }
+}
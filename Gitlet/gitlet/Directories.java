@@ -2,7 +2,10 @@ package gitlet;
 
 import java.io.File;
 
-/** Contains all the directories needed for Gitlet.
+/** Contains all the directories needed for Gitlet.  A linked worktree has
+ *  its own staging area, current branch and sparse-checkout patterns in
+ *  its .gitlet directory, which also holds a COMMONDIR file naming the
+ *  .gitlet directory whose commits, blobs and branches it shares.
  * @author Sameer Keswani
  */
 public class Directories {
@@ -12,12 +15,22 @@ public class Directories {
     /** Pathway of .gitlet directory. */
     static final File GITLET = Utils.join(CWD, ".gitlet");
 
+    /** Pathway of the file naming the shared .gitlet directory of a
+     *  linked worktree. */
+    static final File COMMONDIR = Utils.join(GITLET, "commondir");
+
+    /** Pathway of the .gitlet directory holding shared state. */
+    static final File COMMON = commonDir(GITLET);
+
     /** Pathway of commits directory. */
-    static final File COMMITS = Utils.join(GITLET, "commits");
+    static final File COMMITS = Utils.join(COMMON, "commits");
 
     /** Pathway of staging area file. */
     static final File STAGE = Utils.join(GITLET, "stage");
 
+    /** Pathway of the journal of changes to the staging area. */
+    static final File STAGE_JOURNAL = Utils.join(GITLET, "stage-journal");
+
     /** Pathway of head commit file. */
     static final File HEAD = Utils.join(GITLET, "head");
 
@@ -28,5 +41,50 @@ public class Directories {
     static final File CURRENTBRANCH = Utils.join(GITLET, "currentBranch");
 
     /** Pathway of branches. */
-    static final File BRANCHES = Utils.join(GITLET, "branches");
+    static final File BRANCHES = Utils.join(COMMON, "branches");
+
+    /** Pathway of packed branches file. */
+    static final File PACKED_REFS = Utils.join(COMMON, "packed-refs");
+
+    /** Pathway of the list of stashed commits, newest first. */
+    static final File STASH = Utils.join(COMMON, "stash");
+
+    /** Pathway of the state of a bisection in progress. */
+    static final File BISECT = Utils.join(GITLET, "bisect");
+
+    /** Pathway of sparse-checkout patterns file. */
+    static final File SPARSE = Utils.join(GITLET, "sparse-checkout");
+
+    /** Pathway of blame cache directory. */
+    static final File BLAME = Utils.join(COMMON, "blame");
+
+    /** Pathway of the list of other object directories to read from. */
+    static final File ALTERNATES = Utils.join(COMMON, "alternates");
+
+    /** Pathway of the large-file tracking patterns. */
+    static final File LFS_TRACK = Utils.join(COMMON, "lfs-track");
+
+    /** Pathway of the large-file object store. */
+    static final File LFS_OBJECTS = Utils.join(COMMON, "lfs");
+
+    /** Pathway of the list of linked worktrees. */
+    static final File WORKTREES = Utils.join(COMMON, "worktrees");
+
+    /** Pathway of repository lock file. */
+    static final File LOCK = Utils.join(COMMON, "lock");
+
+    /** Returns the .gitlet directory holding the shared state of the
+     *  worktree whose .gitlet directory is DIR. */
+    static File commonDir(File dir) {
+        File link = Utils.join(dir, "commondir");
+        if (link.isFile()) {
+            return new File(Utils.readContentsAsString(link).trim());
+        }
+        return dir;
+    }
+
+    /** Returns true iff the current directory is a linked worktree. */
+    static boolean isLinkedWorktree() {
+        return !COMMON.equals(GITLET);
+    }
 }
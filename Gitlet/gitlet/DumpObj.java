@@ -4,9 +4,10 @@ import java.io.File;
 
 /** A debugging class whose main program may be invoked as follows:
  *      java gitlet.DumpObj FILE...
- *  where each FILE is a file produced by Utils.writeObject (or any file
- *  containing a serialized object).  This will simply read FILE,
- *  deserialize it, and call the dump method on the resulting Object.
+ *  where each FILE is a file produced by Utils.writeObject, an object
+ *  file of a repository (or any file containing a serialized object,
+ *  encoded by ObjectCodec or not).  This will simply read FILE, decode
+ *  and deserialize it, and call the dump method on the resulting Object.
  *  The object must implement the gitlet.Dumpable interface for this
  *  to work.  For example, you might define your class like this:
  *
@@ -33,8 +34,8 @@ public class DumpObj {
      *  in FILES. */
     public static void main(String... files) {
         for (String fileName : files) {
-            Dumpable obj = Utils.readObject(new File(fileName),
-                                            Dumpable.class);
+            Dumpable obj = ObjectCodec.readObject(new File(fileName),
+                                                  Dumpable.class);
             obj.dump();
             System.out.println("---");
         }
@@ -0,0 +1,259 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import static gitlet.Directories.*;
+
+/** Integrity check of a repository.  Every object in COMMITS and BLOBS
+ *  is read back on a fork-join pool: blobs are decoded and re-hashed as
+ *  they stream from disk and must hash to their file names, and commits must
+ *  deserialize and carry the id they are stored under.  Then the commit
+ *  graph is walked from every branch and stash to check that parents and
+ *  blobs resolve, and objects that none reaches are reported as dangling.
+ *  Objects borrowed from alternate object directories count as present
+ *  but are not themselves checked.
+ *  @author Sameer Keswani
+ */
+class Fsck {
+
+    /** Number of objects below which a task checks them directly. */
+    private static final int SPLIT_THRESHOLD = 16;
+
+    /** Size of the buffer used to stream blobs. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** A checker that re-hashes objects unless CONNECTIVITYONLY. */
+    Fsck(boolean connectivityOnly) {
+        _connectivityOnly = connectivityOnly;
+    }
+
+    /** Checks the repository and returns its problems, one per line, in
+     *  a stable order. */
+    List<String> run() {
+        List<String> commitNames = names(COMMITS);
+        List<String> blobNames = names(BLOBS);
+        Set<String> problems = ConcurrentHashMap.newKeySet();
+        Set<String> corrupt = ConcurrentHashMap.newKeySet();
+
+        if (!_connectivityOnly) {
+            ForkJoinPool pool = new ForkJoinPool(Math.max(2,
+                    Runtime.getRuntime().availableProcessors()));
+            try {
+                pool.invoke(new Check(blobNames, 0, blobNames.size(), true,
+                                      problems, corrupt));
+                pool.invoke(new Check(commitNames, 0, commitNames.size(),
+                                      false, problems, corrupt));
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        HashSet<String> commits = new HashSet<>(commitNames);
+        HashSet<String> blobs = new HashSet<>(blobNames);
+        HashSet<String> reachedCommits = new HashSet<>();
+        HashSet<String> reachedBlobs = new HashSet<>();
+        ArrayDeque<Commit> work = new ArrayDeque<>();
+        for (Branch branch : branches(problems)) {
+            work.add(branch.getHead());
+        }
+        for (String sha : Commands.stashIds()) {
+            if (ObjectStore.hasCommit(sha)) {
+                work.add(ObjectStore.readCommit(sha));
+            } else {
+                problems.add("missing commit " + sha + " (stash)");
+            }
+        }
+        while (!work.isEmpty()) {
+            Commit c = work.poll();
+            if (!reachedCommits.add(c.getSHA())) {
+                continue;
+            }
+            if (!commits.contains(c.getSHA())
+                    && !ObjectStore.hasCommit(c.getSHA())) {
+                problems.add("missing commit " + c.getSHA());
+            }
+            if (c.getBlobs() != null) {
+                for (String name : c.getBlobs().keySet()) {
+                    String blob = c.getBlobs().get(name);
+                    reachedBlobs.add(blob);
+                    if (!blobs.contains(blob)
+                            && !ObjectStore.hasBlob(blob)) {
+                        problems.add("missing blob " + blob + " ("
+                                     + name + " in commit " + c.getSHA()
+                                     + ")");
+                    }
+                }
+            }
+            if (c.getParent() != null) {
+                work.add(c.getParent());
+            }
+            if (c.getMerged() != null) {
+                work.add(c.getMerged());
+            }
+        }
+        for (String sha : commitNames) {
+            if (!reachedCommits.contains(sha) && !corrupt.contains(sha)) {
+                problems.add("dangling commit " + sha);
+            }
+        }
+        for (String sha : blobNames) {
+            if (!reachedBlobs.contains(sha) && !corrupt.contains(sha)) {
+                problems.add("dangling blob " + sha);
+            }
+        }
+        List<String> result = new ArrayList<>(new TreeSet<>(problems));
+        return result;
+    }
+
+    /** Returns every branch of the repository, including the current one,
+     *  noting unreadable branches in PROBLEMS. */
+    private static List<Branch> branches(Set<String> problems) {
+        List<Branch> result = new ArrayList<>();
+        if (CURRENTBRANCH.isFile()) {
+            try {
+                result.add(Utils.readObject(CURRENTBRANCH, Branch.class));
+            } catch (IllegalArgumentException excp) {
+                problems.add("corrupt current branch");
+            }
+        }
+        for (String name : Refs.names()) {
+            try {
+                result.add(Refs.read(name));
+            } catch (IllegalArgumentException excp) {
+                problems.add("corrupt branch " + name);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the names of the plain files in DIR, or an empty list. */
+    private static List<String> names(File dir) {
+        List<String> names = Utils.plainFilenamesIn(dir);
+        return names == null ? Collections.emptyList() : names;
+    }
+
+    /** Returns the SHA-1 of the contents of FILE, read in a stream. */
+    static String hash(File file) throws IOException {
+        return hash(new FileInputStream(file));
+    }
+
+    /** Returns the SHA-1 of the bytes read from IN, which it closes. */
+    static String hash(InputStream input) throws IOException {
+        try (InputStream in = input) {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                md.update(buffer, 0, n);
+            }
+            StringBuilder result = new StringBuilder();
+            for (byte b : md.digest()) {
+                result.append(String.format("%02x", b));
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support SHA-1");
+        }
+    }
+
+    /** Checks a range of blob or commit files. */
+    private static class Check extends RecursiveAction {
+
+        /** Checks NAMES[LO..HI-1], which are blobs iff BLOBS, adding
+         *  problems to PROBLEMS and the names of corrupt objects to
+         *  CORRUPT. */
+        Check(List<String> names, int lo, int hi, boolean blobs,
+              Set<String> problems, Set<String> corrupt) {
+            _names = names;
+            _lo = lo;
+            _hi = hi;
+            _blobs = blobs;
+            _problems = problems;
+            _corrupt = corrupt;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > SPLIT_THRESHOLD) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Check(_names, _lo, mid, _blobs, _problems,
+                                    _corrupt),
+                          new Check(_names, mid, _hi, _blobs, _problems,
+                                    _corrupt));
+                return;
+            }
+            for (int i = _lo; i < _hi; i += 1) {
+                String name = _names.get(i);
+                if (_blobs) {
+                    checkBlob(name);
+                } else {
+                    checkCommit(name);
+                }
+            }
+        }
+
+        /** Checks that the blob NAME hashes to NAME. */
+        private void checkBlob(String name) {
+            try {
+                InputStream in = ObjectCodec.open(Utils.join(BLOBS, name));
+                if (!hash(in).equals(name)) {
+                    _corrupt.add(name);
+                    _problems.add("corrupt blob " + name);
+                }
+            } catch (IOException | IllegalArgumentException excp) {
+                _corrupt.add(name);
+                _problems.add("unreadable blob " + name);
+            }
+        }
+
+        /** Checks that the commit NAME is readable and has id NAME.  A
+         *  commit's id is fixed before its blobs are recorded, so it
+         *  cannot be recomputed from the stored object. */
+        private void checkCommit(String name) {
+            try {
+                Commit c = ObjectCodec.readObject(Utils.join(COMMITS, name),
+                                                  Commit.class);
+                if (!name.equals(c.getSHA())) {
+                    _corrupt.add(name);
+                    _problems.add("corrupt commit " + name);
+                }
+            } catch (IllegalArgumentException excp) {
+                _corrupt.add(name);
+                _problems.add("corrupt commit " + name);
+            }
+        }
+
+        /** All object names. */
+        private final List<String> _names;
+
+        /** Bounds of my range. */
+        private final int _lo, _hi;
+
+        /** True iff my objects are blobs. */
+        private final boolean _blobs;
+
+        /** Problems found. */
+        private final Set<String> _problems;
+
+        /** Names of corrupt objects. */
+        private final Set<String> _corrupt;
+    }
+
+    /** True iff objects are not to be re-hashed. */
+    private final boolean _connectivityOnly;
+}
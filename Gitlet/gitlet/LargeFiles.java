@@ -0,0 +1,208 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import static gitlet.Directories.*;
+
+/** Storage for large files outside the blob store.  Files whose paths
+ *  match the patterns in LFS_TRACK are copied once into LFS_OBJECTS,
+ *  named by the SHA-1 of their contents, and committed as a small
+ *  pointer blob naming that object.  Checking out a pointer writes the
+ *  real contents if the object is present, and otherwise leaves the
+ *  pointer in place until "lfs pull" fetches it.
+ *  @author Sameer Keswani
+ */
+class LargeFiles {
+
+    /** First line of every pointer blob. */
+    static final String HEADER = "gitlet-lfs v1\n";
+
+    /** Longest possible pointer blob, in bytes. */
+    static final int MAX_POINTER_SIZE = 128;
+
+    /** Returns the large-file tracking patterns. */
+    static PathPatterns patterns() {
+        if (_patterns == null) {
+            _patterns = PathPatterns.read(LFS_TRACK);
+        }
+        return _patterns;
+    }
+
+    /** Forgets the cached tracking patterns, which another process may
+     *  have changed. */
+    static void clearCache() {
+        _patterns = null;
+    }
+
+    /** Returns true iff the file at PATH is stored as a large file. */
+    static boolean isTracked(String path) {
+        return patterns().matches(path);
+    }
+
+    /** Stores the contents of the working FILE as a large file and returns
+     *  the SHA of its pointer blob, which is added to the blob store.  A
+     *  FILE that is itself an unresolved pointer is stored as is. */
+    static String store(File file) {
+        byte[] pointer;
+        if (file.length() <= MAX_POINTER_SIZE
+            && oid(Utils.readContents(file)) != null) {
+            pointer = Utils.readContents(file);
+        } else {
+            String oid;
+            try {
+                oid = Fsck.hash(file);
+            } catch (IOException excp) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            File object = Utils.join(LFS_OBJECTS, oid);
+            if (!object.exists()) {
+                LFS_OBJECTS.mkdirs();
+                File temp = Utils.join(LFS_OBJECTS, oid + ".tmp");
+                copy(file, temp);
+                if (!temp.renameTo(object)) {
+                    temp.delete();
+                }
+            }
+            pointer = pointer(oid, file.length());
+        }
+        String sha = Utils.sha1(pointer);
+        ObjectStore.writeBlob(sha, pointer);
+        return sha;
+    }
+
+    /** Returns the SHA of the blob that adding the working FILE at PATH
+     *  would store: the pointer blob if PATH is tracked as a large file,
+     *  and otherwise the file's contents.  Stores nothing. */
+    static String blobSHA(String path, File file) {
+        if (!isTracked(path)) {
+            return Utils.sha1(Utils.readContents(file));
+        }
+        if (file.length() <= MAX_POINTER_SIZE) {
+            byte[] contents = Utils.readContents(file);
+            if (oid(contents) != null) {
+                return Utils.sha1(contents);
+            }
+        }
+        try {
+            return Utils.sha1(pointer(Fsck.hash(file), file.length()));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns the pointer blob for the large file OID of SIZE bytes. */
+    static byte[] pointer(String oid, long size) {
+        return (HEADER + "oid " + oid + "\nsize " + size + "\n")
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Returns the object id named by the pointer blob BLOB, or null if
+     *  BLOB is not a pointer. */
+    static String oid(byte[] blob) {
+        if (blob.length > MAX_POINTER_SIZE) {
+            return null;
+        }
+        String text = new String(blob, StandardCharsets.UTF_8);
+        if (!text.startsWith(HEADER)) {
+            return null;
+        }
+        for (String line : text.split("\n")) {
+            if (line.startsWith("oid ")) {
+                return line.substring("oid ".length()).trim();
+            }
+        }
+        return null;
+    }
+
+    /** Writes the blob SHA to the working file TARGET, substituting the
+     *  contents of the large file it points to, if any and available. */
+    static void checkout(File target, String sha) {
+        checkout(target, ObjectStore.readBlob(sha), LFS_OBJECTS);
+    }
+
+    /** Writes BLOB to TARGET, substituting the contents of the large file
+     *  it points to if that is in the directory OBJECTS. */
+    static void checkout(File target, byte[] blob, File objects) {
+        File parent = target.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        String oid = oid(blob);
+        File object = oid == null ? null : Utils.join(objects, oid);
+        if (object != null && object.isFile()) {
+            copy(object, target);
+        } else {
+            Utils.writeContents(target, blob);
+        }
+    }
+
+    /** Makes every large file in the commit HEAD available, borrowing
+     *  objects from the stores beside any alternate object directories,
+     *  and writes those of the working files that SPARSE includes and that
+     *  are still unresolved pointers.  Returns the number of files
+     *  written. */
+    static int pull(Commit head, SparseCheckout sparse) {
+        if (head.getBlobs() == null) {
+            return 0;
+        }
+        int written = 0;
+        for (String name : head.getBlobs().keySet()) {
+            byte[] blob = ObjectStore.readBlob(head.getBlobs().get(name));
+            String oid = oid(blob);
+            if (oid == null || !fetch(oid) || !sparse.includes(name)) {
+                continue;
+            }
+            File target = Utils.join(CWD, name);
+            if (!target.exists() || (target.length() <= MAX_POINTER_SIZE
+                    && oid(Utils.readContents(target)) != null)) {
+                checkout(target, blob, LFS_OBJECTS);
+                written += 1;
+            }
+        }
+        return written;
+    }
+
+    /** Ensures that the large file OID is in LFS_OBJECTS, linking it from
+     *  an alternate repository's store if need be.  Returns true iff it
+     *  is then present. */
+    private static boolean fetch(String oid) {
+        File object = Utils.join(LFS_OBJECTS, oid);
+        if (object.exists()) {
+            return true;
+        }
+        for (File dir : ObjectStore.alternates()) {
+            File source = Utils.join(dir.getParentFile(), "lfs", oid);
+            if (source.isFile()) {
+                LFS_OBJECTS.mkdirs();
+                if (!ObjectStore.linkOrCopy(source, object, true)) {
+                    ObjectStore.linkOrCopy(source, object, false);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Copies FROM to TO through their file channels, letting the system
+     *  move the bytes without passing them through the Java heap. */
+    static void copy(File from, File to) {
+        try (FileChannel in = new FileInputStream(from).getChannel();
+             FileChannel out = new FileOutputStream(to).getChannel()) {
+            long size = in.size();
+            long done = 0;
+            while (done < size) {
+                done += in.transferTo(done, size - done, out);
+            }
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Cached tracking patterns. */
+    private static PathPatterns _patterns;
+}
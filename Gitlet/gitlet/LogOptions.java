@@ -0,0 +1,189 @@
+package gitlet;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/** Options limiting and formatting the output of log and global-log:
+ *  --max-count=N (or -n N), --since=DATE, --until=DATE and --format=FMT.
+ *  DATE is "yyyy-MM-dd" or "yyyy-MM-dd HH:mm:ss" in local time.  FMT is
+ *  "full" (the default), "oneline", or "format:" followed by text in
+ *  which %H is the commit id, %h its first seven characters, %ad the
+ *  date, %s the message, %n a newline and %% a percent sign.
+ *  @author Sameer Keswani
+ */
+class LogOptions {
+
+    /** Format of commit dates. */
+    static final String COMMIT_DATE_FORMAT = "EEE LLL d HH:mm:ss yyyy Z";
+
+    /** Options parsed from ARGS, starting at ARGS[START].  Throws a
+     *  GitletException if they are malformed. */
+    LogOptions(String[] args, int start) {
+        for (int i = start; i < args.length; i += 1) {
+            String arg = args[i];
+            String value;
+            if (arg.equals("-n") && i + 1 < args.length) {
+                i += 1;
+                _maxCount = parseCount(args[i]);
+            } else if ((value = valueOf(arg, "--max-count=")) != null) {
+                _maxCount = parseCount(value);
+            } else if ((value = valueOf(arg, "--since=")) != null) {
+                _since = parseDate(value, false);
+            } else if ((value = valueOf(arg, "--until=")) != null) {
+                _until = parseDate(value, true);
+            } else if ((value = valueOf(arg, "--format=")) != null) {
+                _format = value;
+                if (!_format.equals("full") && !_format.equals("oneline")
+                        && !_format.startsWith("format:")) {
+                    throw Utils.error("Incorrect operands.");
+                }
+            } else {
+                throw Utils.error("Incorrect operands.");
+            }
+        }
+    }
+
+    /** Default options: everything, in full format. */
+    LogOptions() {
+    }
+
+    /** Returns true iff no more than COUNT commits may be shown. */
+    boolean isDone(int count) {
+        return _maxCount >= 0 && count >= _maxCount;
+    }
+
+    /** Returns true iff COMMIT falls within the date limits. */
+    boolean matches(Commit commit) {
+        if (_since == null && _until == null) {
+            return true;
+        }
+        long time = commitTime(commit);
+        return (_since == null || time >= _since.getTime())
+            && (_until == null || time <= _until.getTime());
+    }
+
+    /** Returns true iff COMMIT and, on a walk back through parents, all
+     *  its ancestors are older than the --since limit. */
+    boolean isTooOld(Commit commit) {
+        return _since != null && commitTime(commit) < _since.getTime();
+    }
+
+    /** Returns the log entry for COMMIT, including its final newline. */
+    String format(Commit commit) {
+        if (_format.equals("oneline")) {
+            return commit.getSHA().substring(0, 7) + " "
+                + commit.getMessage() + "\n";
+        } else if (_format.startsWith("format:")) {
+            return expand(_format.substring("format:".length()), commit)
+                + "\n";
+        }
+        return "===\n"
+            + "commit " + commit.getSHA() + "\n"
+            + "Date: " + commit.getDate() + "\n"
+            + commit.getMessage() + "\n"
+            + "\n";
+    }
+
+    /** Returns TEMPLATE with the placeholders replaced from COMMIT. */
+    private static String expand(String template, Commit commit) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < template.length(); i += 1) {
+            char c = template.charAt(i);
+            if (c != '%' || i + 1 == template.length()) {
+                result.append(c);
+                continue;
+            }
+            i += 1;
+            switch (template.charAt(i)) {
+            case 'H':
+                result.append(commit.getSHA());
+                break;
+            case 'h':
+                result.append(commit.getSHA(), 0, 7);
+                break;
+            case 's':
+                result.append(commit.getMessage());
+                break;
+            case 'n':
+                result.append('\n');
+                break;
+            case '%':
+                result.append('%');
+                break;
+            case 'a':
+                if (i + 1 < template.length()
+                        && template.charAt(i + 1) == 'd') {
+                    i += 1;
+                    result.append(commit.getDate());
+                    break;
+                }
+                result.append("%a");
+                break;
+            default:
+                result.append('%').append(template.charAt(i));
+                break;
+            }
+        }
+        return result.toString();
+    }
+
+    /** Returns the value of ARG if it starts with PREFIX, else null. */
+    private static String valueOf(String arg, String prefix) {
+        if (arg.startsWith(prefix)) {
+            return arg.substring(prefix.length());
+        }
+        return null;
+    }
+
+    /** Returns the non-negative count in TEXT. */
+    private static int parseCount(String text) {
+        try {
+            int count = Integer.parseInt(text);
+            if (count >= 0) {
+                return count;
+            }
+        } catch (NumberFormatException excp) {
+            throw Utils.error("Incorrect operands.");
+        }
+        throw Utils.error("Incorrect operands.");
+    }
+
+    /** Returns the date in TEXT.  A date without a time of day refers to
+     *  its end if END, and to its start otherwise. */
+    private static Date parseDate(String text, boolean end) {
+        try {
+            if (text.length() <= "yyyy-MM-dd".length()) {
+                String time = end ? " 23:59:59" : " 00:00:00";
+                return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss")
+                    .parse(text + time);
+            }
+            return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(text);
+        } catch (ParseException excp) {
+            throw Utils.error("Incorrect operands.");
+        }
+    }
+
+    /** Returns the time at which COMMIT was made, in milliseconds. */
+    static long commitTime(Commit commit) {
+        try {
+            return new SimpleDateFormat(COMMIT_DATE_FORMAT, Locale.US)
+                .parse(commit.getDate()).getTime();
+        } catch (ParseException excp) {
+            return 0;
+        }
+    }
+
+    /** Maximum number of commits to show, or -1 for no limit. */
+    private int _maxCount = -1;
+
+    /** Earliest commit date to show, if any. */
+    private Date _since;
+
+    /** Latest commit date to show, if any. */
+    private Date _until;
+
+    /** Output format. */
+    private String _format = "full";
+}
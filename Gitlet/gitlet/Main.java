@@ -1,5 +1,7 @@
 package gitlet;
 
+import java.io.PrintStream;
+
 import static gitlet.Directories.*;
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
@@ -9,26 +11,53 @@ public class Main {
     /** Usage: java gitlet.Main ARGS, where ARGS contains
      *  <COMMAND> <OPERAND> .... */
     public static void main(String... args) {
-        Commands commands = new Commands();
         checkArguments(args);
         checkInput(args);
+        RepoLock lock = null;
+        if (args[0].equals("clone")) {
+            cloneHelper(args, System.out);
+            System.exit(0);
+        } else if (args[0].equals("init")) {
+            Commands.init(System.out);
+            System.exit(0);
+        } else if (!locksItself(args)) {
+            try {
+                lock = RepoLock.acquire(isReadOnly(args[0]));
+            } catch (GitletException excp) {
+                System.out.println(excp.getMessage());
+                System.exit(0);
+            }
+        }
+        dispatch(new Commands(), args);
+        if (lock != null) {
+            lock.close();
+        }
+        System.exit(0);
+    }
+
+    /** Runs the command in ARGS, which has been checked by validInput,
+     * on COMMANDS. */
+    static void dispatch(Commands commands, String[] args) {
         switch (args[0]) {
         case "init":
-            commands.init();
+            Commands.init(commands.out());
             break;
         case "add":
             commands.add(args[1]);
             break;
         case "commit":
             if (args.length == 1 || args[1].equals("")) {
-                System.out.println("Please enter a commit message");
+                commands.out().println("Please enter a commit message");
                 break;
             } else {
                 commands.commit(args[1]);
                 break;
             }
         case "log":
-            commands.log();
+            LogOptions logOptions = logOptions(args, commands.out());
+            if (logOptions != null) {
+                commands.log(logOptions);
+            }
             break;
         case "checkout":
             checkoutHelper(commands, args);
@@ -37,13 +66,16 @@ public class Main {
             commands.rm(args[1]);
             break;
         case "global-log":
-            commands.globalLog();
+            LogOptions globalOptions = logOptions(args, commands.out());
+            if (globalOptions != null) {
+                commands.globalLog(globalOptions);
+            }
             break;
         case "find":
             commands.find(args[1]);
             break;
         case "status":
-            commands.status();
+            commands.status(args.length == 2);
             break;
         case "branch":
             commands.branch(args[1]);
@@ -57,11 +89,37 @@ public class Main {
         case "merge":
             commands.merge(args[1]);
             break;
+        case "blame":
+            commands.blame(args[1]);
+            break;
+        case "fsck":
+            commands.fsck(args.length == 2);
+            break;
+        case "worktree":
+            commands.worktree(args);
+            break;
+        case "lfs":
+            commands.lfs(args);
+            break;
+        case "archive":
+            commands.archive(args);
+            break;
+        case "bisect":
+            commands.bisect(args);
+            break;
+        case "stash":
+            commands.stash(args);
+            break;
+        case "pack-refs":
+            commands.packRefs();
+            break;
+        case "sparse-checkout":
+            commands.sparseCheckout(args);
+            break;
         default:
-            System.out.println("No command with that name exists");
+            commands.out().println("No command with that name exists");
             break;
         }
-        System.exit(0);
     }
 
     /** Checks that there is a command and that gitlet repo
@@ -72,50 +130,111 @@ public class Main {
         if (args.length == 0) {
             System.out.println("Please enter a command");
             System.exit(0);
-        } else if (!GITLET.exists() && !args[0].equals("init")) {
+        } else if (!GITLET.exists() && !args[0].equals("init")
+                && !args[0].equals("clone")) {
             System.out.println("Not in an initialized Gitlet directory.");
             System.exit(0);
         }
     }
 
-    /** Cheks that ARGS is formatted correctly. */
+    /** Returns true iff the command in ARGS takes the repository lock
+     *  itself, as "bisect run" does around each step. */
+    static boolean locksItself(String[] args) {
+        return args[0].equals("bisect") && args.length > 1
+            && args[1].equals("run");
+    }
+
+    /** Returns true iff COMMAND only reads the repository, and so may
+     *  run alongside other read-only commands. */
+    public static boolean isReadOnly(String command) {
+        switch (command) {
+        case "log":
+        case "global-log":
+        case "find":
+        case "status":
+        case "blame":
+        case "fsck":
+        case "archive":
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /** Cheks that ARGS is formatted correctly, and exits if not. */
     public static void checkInput(String[] args) {
-        if (args[0].equals("init") && args.length != 1) {
+        if (!validInput(args)) {
             System.out.println("Incorrect operands.");
             System.exit(0);
+        }
+    }
+
+    /** Returns true iff ARGS, which name a command, are formatted
+     * correctly. */
+    static boolean validInput(String[] args) {
+        if (args[0].equals("init") && args.length != 1) {
+            return false;
         } else if (args[0].equals("add") && args.length != 2) {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
+            return false;
         } else if (args[0].equals("commit") && args.length != 2) {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
+            return false;
         } else if (args[0].equals("rm") && args.length != 2) {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
-        } else if (args[0].equals("log") && args.length != 1) {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
+            return false;
         } else if (args[0].equals("reset") && args.length != 2) {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
+            return false;
         } else if (args[0].equals("rm-branch") && args.length != 2) {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
+            return false;
         } else if (args[0].equals("branch") && args.length != 2) {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
-        } else if (args[0].equals("status") && args.length != 1) {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
+            return false;
+        } else if (args[0].equals("status") && args.length != 1
+                && !(args.length == 2 && args[1].equals("--renames"))) {
+            return false;
         } else if (args[0].equals("find") && args.length != 2) {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
+            return false;
         } else if (args[0].equals("merge") && args.length != 2) {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
-        } else if (args[0].equals("global-log") && args.length != 1) {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
+            return false;
+        } else if (args[0].equals("blame") && args.length != 2) {
+            return false;
+        } else if (args[0].equals("fsck") && args.length != 1
+                && !(args.length == 2
+                && args[1].equals("--connectivity-only"))) {
+            return false;
+        } else if (args[0].equals("pack-refs") && args.length != 1) {
+            return false;
+        } else if (args[0].equals("bisect") && args.length < 2) {
+            return false;
+        } else if (args[0].equals("archive") && args.length < 2) {
+            return false;
+        } else if (args[0].equals("lfs") && args.length < 2) {
+            return false;
+        } else if (args[0].equals("worktree") && args.length < 2) {
+            return false;
+        } else if (args[0].equals("sparse-checkout") && args.length < 2) {
+            return false;
+        }
+        return true;
+    }
+
+    /** Returns the log options in ARGS, after the command name, or null
+     * after reporting any error in them on OUT. */
+    public static LogOptions logOptions(String[] args, PrintStream out) {
+        try {
+            return new LogOptions(args, 1);
+        } catch (GitletException excp) {
+            out.println(excp.getMessage());
+            return null;
+        }
+    }
+
+    /** Helper method for clone, whose operands in ARGS are
+     * [--shared] SOURCE DEST, reporting errors on OUT. */
+    public static void cloneHelper(String[] args, PrintStream out) {
+        if (args.length == 3) {
+            Commands.clone(args[1], args[2], false, out);
+        } else if (args.length == 4 && args[1].equals("--shared")) {
+            Commands.clone(args[2], args[3], true, out);
+        } else {
+            out.println("Incorrect operands.");
         }
     }
 
@@ -128,15 +247,14 @@ public class Main {
             commands.checkout(args[2], true);
         } else if (args.length == 4) {
             if (!args[2].equals("--")) {
-                System.out.println("Incorrect operands");
-                System.exit(0);
+                commands.out().println("Incorrect operands");
+                return;
             }
             commands.checkout(args[1], args[3]);
         } else if (args.length == 2) {
             commands.checkout(args[1], false);
         } else {
-            System.out.println("Incorrect operands.");
-            System.exit(0);
+            commands.out().println("Incorrect operands.");
         }
     }
 }
@@ -0,0 +1,232 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/** The on-disk encoding of commit and blob files.  An encoded object is
+ *  a header of MAGIC, a codec byte and the length of the contents as an
+ *  8-byte big-endian number, followed by the contents, either STORED as
+ *  they are or DEFLATED.  Each object is deflated at the level given by
+ *  the GITLET_COMPRESSION environment variable, from 0 (never) to 9, or
+ *  DEFAULT_LEVEL, and is stored instead when that would not save space.
+ *  Object files without the header, written before objects had one, are
+ *  read as they are; MAGIC begins with a NUL so that no text file is
+ *  mistaken for an encoded one.
+ *  @author Sameer Keswani
+ */
+class ObjectCodec {
+
+    /** First bytes of every encoded object. */
+    static final byte[] MAGIC = { 0, 'g', 'l', 'o' };
+
+    /** Codec of objects stored as they are. */
+    static final int STORED = 0;
+
+    /** Codec of deflated objects. */
+    static final int DEFLATED = 1;
+
+    /** Length of the header. */
+    static final int HEADER_SIZE = MAGIC.length + 1 + 8;
+
+    /** Deflation level used if GITLET_COMPRESSION is not set: fast, like
+     *  loose objects in Git, since most objects are written once and read
+     *  rarely. */
+    static final int DEFAULT_LEVEL = Deflater.BEST_SPEED;
+
+    /** Size of the buffers used to inflate streams. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Returns the deflation level chosen by the environment. */
+    static int level() {
+        String value = System.getenv("GITLET_COMPRESSION");
+        if (value != null) {
+            try {
+                int level = Integer.parseInt(value.trim());
+                if (level >= 0 && level <= 9) {
+                    return level;
+                }
+            } catch (NumberFormatException excp) {
+                return DEFAULT_LEVEL;
+            }
+        }
+        return DEFAULT_LEVEL;
+    }
+
+    /** Returns the encoding of CONTENTS, deflated at LEVEL if that makes
+     *  it smaller. */
+    static byte[] encode(byte[] contents, int level) {
+        byte[] body = contents;
+        int bodySize = contents.length;
+        int codec = STORED;
+        if (level > 0 && contents.length > 0) {
+            Deflater deflater = new Deflater(level);
+            try {
+                deflater.setInput(contents);
+                deflater.finish();
+                byte[] out = new byte[contents.length];
+                int n = 0;
+                while (!deflater.finished() && n < out.length) {
+                    n += deflater.deflate(out, n, out.length - n);
+                }
+                if (deflater.finished() && n < contents.length) {
+                    body = out;
+                    bodySize = n;
+                    codec = DEFLATED;
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+        ByteBuffer result = ByteBuffer.allocate(HEADER_SIZE + bodySize);
+        result.put(MAGIC).put((byte) codec).putLong(contents.length);
+        result.put(body, 0, bodySize);
+        return result.array();
+    }
+
+    /** Returns the contents encoded in DATA. */
+    static byte[] decode(byte[] data) {
+        if (!hasHeader(data)) {
+            return data;
+        }
+        ByteBuffer header = ByteBuffer.wrap(data, MAGIC.length, 9);
+        int codec = header.get();
+        long size = header.getLong();
+        if (size > Integer.MAX_VALUE - HEADER_SIZE) {
+            throw new IllegalArgumentException("object too large");
+        }
+        if (codec == STORED) {
+            if (data.length - HEADER_SIZE < size) {
+                throw new IllegalArgumentException("truncated object");
+            } else if (data.length - HEADER_SIZE > size) {
+                throw new IllegalArgumentException("trailing object data");
+            }
+            return Arrays.copyOfRange(data, HEADER_SIZE, data.length);
+        } else if (codec != DEFLATED) {
+            throw new IllegalArgumentException("unknown object codec");
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, HEADER_SIZE, data.length - HEADER_SIZE);
+            byte[] result = new byte[(int) size];
+            int n = 0;
+            while (n < result.length && !inflater.finished()) {
+                int k = inflater.inflate(result, n, result.length - n);
+                if (k == 0 && (inflater.needsInput()
+                               || inflater.needsDictionary())) {
+                    break;
+                }
+                n += k;
+            }
+            if (n != result.length) {
+                throw new IllegalArgumentException("truncated object");
+            }
+            return result;
+        } catch (DataFormatException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Writes CONTENTS to the object file FILE. */
+    static void write(File file, byte[] contents) {
+        Utils.writeContents(file, encode(contents, level()));
+    }
+
+    /** Returns the contents of the object file FILE. */
+    static byte[] read(File file) {
+        return decode(Utils.readContents(file));
+    }
+
+    /** Returns the object of type EXPECTEDCLASS serialized in the object
+     *  file FILE. */
+    static <T extends Serializable> T readObject(File file,
+                                                 Class<T> expectedClass) {
+        try (ObjectInputStream in = new ObjectInputStream(open(file))) {
+            return expectedClass.cast(in.readObject());
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Returns a stream of the contents of the object file FILE, decoded
+     *  as it is read. */
+    static InputStream open(File file) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(file),
+                                                 BUFFER_SIZE);
+        byte[] header = new byte[HEADER_SIZE];
+        in.mark(HEADER_SIZE);
+        int n = 0;
+        while (n < HEADER_SIZE) {
+            int k = in.read(header, n, HEADER_SIZE - n);
+            if (k < 0) {
+                break;
+            }
+            n += k;
+        }
+        if (n < HEADER_SIZE || !hasHeader(header)) {
+            in.reset();
+            return in;
+        }
+        if (header[MAGIC.length] == DEFLATED) {
+            Inflater inflater = new Inflater();
+            return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        inflater.end();
+                    }
+                }
+            };
+        } else if (header[MAGIC.length] != STORED) {
+            in.close();
+            throw new IOException("unknown object codec");
+        }
+        return in;
+    }
+
+    /** Returns the length of the contents of the object file FILE. */
+    static long size(File file) throws IOException {
+        if (file.length() < HEADER_SIZE) {
+            return file.length();
+        }
+        try (DataInputStream in = new DataInputStream(
+                 new FileInputStream(file))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC)) {
+                return file.length();
+            }
+            in.readByte();
+            return in.readLong();
+        }
+    }
+
+    /** Returns true iff DATA starts with an object header. */
+    private static boolean hasHeader(byte[] data) {
+        if (data.length < HEADER_SIZE) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i += 1) {
+            if (data[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
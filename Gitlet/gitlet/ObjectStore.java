@@ -0,0 +1,215 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static gitlet.Directories.*;
+
+/** Access to the commits and blobs of the current repository.  Objects
+ *  are looked up first in the repository's own COMMITS directory, then in
+ *  each object directory listed, one per line, in its ALTERNATES file.
+ *  New objects are always written to the repository's own directories.
+ *  Object files are encoded as described in ObjectCodec.
+ *  @author Sameer Keswani
+ */
+class ObjectStore {
+
+    /** Returns the file holding the blob SHA: the repository's own copy
+     *  if there is one, else that of the first alternate holding it,
+     *  else the (nonexistent) file it would be written to. */
+    static File blobFile(String sha) {
+        File local = Utils.join(BLOBS, sha);
+        if (local.exists()) {
+            return local;
+        }
+        for (File dir : alternates()) {
+            File alt = Utils.join(dir, "blobs", sha);
+            if (alt.exists()) {
+                return alt;
+            }
+        }
+        return local;
+    }
+
+    /** Returns the file holding the commit SHA, as for blobFile. */
+    static File commitFile(String sha) {
+        File local = Utils.join(COMMITS, sha);
+        if (local.exists()) {
+            return local;
+        }
+        for (File dir : alternates()) {
+            File alt = Utils.join(dir, sha);
+            if (alt.exists()) {
+                return alt;
+            }
+        }
+        return local;
+    }
+
+    /** Returns true iff the blob SHA is available. */
+    static boolean hasBlob(String sha) {
+        return blobFile(sha).exists();
+    }
+
+    /** Returns true iff the commit SHA is available. */
+    static boolean hasCommit(String sha) {
+        return commitFile(sha).exists();
+    }
+
+    /** Returns the full id of the available commit whose id is or
+     *  begins with ID, or null if there is no such commit or more than
+     *  one. */
+    static String resolveCommit(String id) {
+        if (id.isEmpty()) {
+            return null;
+        } else if (hasCommit(id)) {
+            return id;
+        }
+        String result = null;
+        for (String sha : commitIds()) {
+            if (sha.startsWith(id)) {
+                if (result != null) {
+                    return null;
+                }
+                result = sha;
+            }
+        }
+        return result;
+    }
+
+    /** Returns the contents of the blob SHA. */
+    static byte[] readBlob(String sha) {
+        return ObjectCodec.read(blobFile(sha));
+    }
+
+    /** Returns the commit SHA. */
+    static Commit readCommit(String sha) {
+        return ObjectCodec.readObject(commitFile(sha), Commit.class);
+    }
+
+    /** Adds CONTENTS to the repository's own blobs as the blob SHA, unless
+     *  the blob is already available. */
+    static void writeBlob(String sha, byte[] contents) {
+        if (!hasBlob(sha)) {
+            ObjectCodec.write(Utils.join(BLOBS, sha), contents);
+        }
+    }
+
+    /** Returns the ids of all available commits, in sorted order. */
+    static List<String> commitIds() {
+        TreeSet<String> ids = new TreeSet<>(Utils.plainFilenamesIn(COMMITS));
+        for (File dir : alternates()) {
+            List<String> names = Utils.plainFilenamesIn(dir);
+            if (names != null) {
+                ids.addAll(names);
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /** Returns the object directories this repository borrows from. */
+    static List<File> alternates() {
+        if (_alternates == null) {
+            _alternates = readAlternates(ALTERNATES);
+        }
+        return _alternates;
+    }
+
+    /** Forgets the cached alternates, which another process may have
+     *  changed. */
+    static void clearCache() {
+        _alternates = null;
+    }
+
+    /** Returns the object directories listed in the alternates file
+     *  FILE, or none if it does not exist. */
+    static List<File> readAlternates(File file) {
+        List<File> result = new ArrayList<>();
+        if (file.isFile()) {
+            for (String line : Utils.readContentsAsString(file).split("\n")) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    result.add(new File(line));
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Adds DIR to the alternates file FILE, if it is not already there. */
+    static void addAlternate(File file, File dir) {
+        List<File> current = readAlternates(file);
+        String path = dir.getAbsolutePath();
+        StringBuilder contents = new StringBuilder();
+        for (File alt : current) {
+            if (alt.getAbsolutePath().equals(path)) {
+                return;
+            }
+            contents.append(alt.getPath()).append('\n');
+        }
+        contents.append(path).append('\n');
+        Utils.writeContents(file, contents.toString());
+        if (file.equals(ALTERNATES)) {
+            _alternates = null;
+        }
+    }
+
+    /** Makes TO a link to the object file FROM, or a copy of it if LINK
+     *  is false.  Returns false if a link was requested but could not be
+     *  made, in which case nothing is written. */
+    static boolean linkOrCopy(File from, File to, boolean link) {
+        if (to.exists()) {
+            return true;
+        }
+        try {
+            if (link) {
+                Files.createLink(to.toPath(), from.toPath());
+            } else {
+                Files.copy(from.toPath(), to.toPath(),
+                           StandardCopyOption.COPY_ATTRIBUTES);
+            }
+            return true;
+        } catch (IOException | UnsupportedOperationException
+                 | SecurityException excp) {
+            if (!link) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+            return false;
+        }
+    }
+
+    /** Writes the files in BLOBS, a map from file name to blob SHA found
+     *  in one of OBJECTDIRS, into the directory ROOT, taking the contents
+     *  of large files from the directory LFS. */
+    static void writeTree(File root, TreeMap<String, String> blobs,
+                          List<File> objectDirs, File lfs) {
+        if (blobs == null) {
+            return;
+        }
+        for (String name : blobs.keySet()) {
+            String sha = blobs.get(name);
+            File source = null;
+            for (File dir : objectDirs) {
+                File candidate = Utils.join(dir, "blobs", sha);
+                if (candidate.exists()) {
+                    source = candidate;
+                    break;
+                }
+            }
+            if (source == null) {
+                throw Utils.error("Missing blob %s for %s.", sha, name);
+            }
+            LargeFiles.checkout(Utils.join(root, name),
+                                ObjectCodec.read(source), lfs);
+        }
+    }
+
+    /** Cached contents of the ALTERNATES file. */
+    private static List<File> _alternates;
+}
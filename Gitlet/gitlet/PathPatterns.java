@@ -0,0 +1,131 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/** A list of path patterns, as kept one per line in files such as the
+ *  sparse-checkout and large-file tracking lists.  Each pattern is either
+ *  a directory ("dir/"), which matches everything under it, a glob
+ *  ("*.txt", "docs/*.md") matched against the whole path, or a plain
+ *  path, which matches itself and everything under it.  Blank lines and
+ *  lines starting with '#' are ignored.
+ *  @author Sameer Keswani
+ */
+class PathPatterns {
+
+    /** The patterns PATTERNS. */
+    PathPatterns(List<String> patterns) {
+        _patterns = new ArrayList<>();
+        _matchers = new ArrayList<>();
+        for (String pattern : patterns) {
+            add(pattern);
+        }
+    }
+
+    /** Returns the patterns listed in FILE, or none if it does not
+     *  exist. */
+    static PathPatterns read(File file) {
+        List<String> patterns = new ArrayList<>();
+        if (file.isFile()) {
+            for (String line
+                     : Utils.readContentsAsString(file).split("\n")) {
+                patterns.add(line);
+            }
+        }
+        return new PathPatterns(patterns);
+    }
+
+    /** Writes my patterns to FILE, removing it if I have none. */
+    void write(File file) {
+        if (_patterns.isEmpty()) {
+            file.delete();
+            return;
+        }
+        StringBuilder contents = new StringBuilder();
+        for (String pattern : _patterns) {
+            contents.append(pattern).append('\n');
+        }
+        Utils.writeContents(file, contents.toString());
+    }
+
+    /** Adds PATTERN, unless it is blank, a comment or already present. */
+    void add(String pattern) {
+        pattern = pattern.trim();
+        if (pattern.isEmpty() || pattern.startsWith("#")
+            || _patterns.contains(pattern)) {
+            return;
+        }
+        _patterns.add(pattern);
+        if (isGlob(pattern)) {
+            _matchers.add(FileSystems.getDefault()
+                    .getPathMatcher("glob:" + pattern));
+        } else {
+            _matchers.add(null);
+        }
+    }
+
+    /** Removes PATTERN, returning true iff it was present. */
+    boolean remove(String pattern) {
+        int k = _patterns.indexOf(pattern.trim());
+        if (k < 0) {
+            return false;
+        }
+        _patterns.remove(k);
+        _matchers.remove(k);
+        return true;
+    }
+
+    /** Returns true iff I have no patterns. */
+    boolean isEmpty() {
+        return _patterns.isEmpty();
+    }
+
+    /** Returns my patterns. */
+    List<String> patterns() {
+        return _patterns;
+    }
+
+    /** Returns true iff one of my patterns matches PATH. */
+    boolean matches(String path) {
+        for (int i = 0; i < _patterns.size(); i += 1) {
+            PathMatcher matcher = _matchers.get(i);
+            String pattern = _patterns.get(i);
+            if (matcher != null) {
+                if (matcher.matches(Paths.get(path))) {
+                    return true;
+                }
+            } else if (pattern.endsWith("/")) {
+                if (path.startsWith(pattern)) {
+                    return true;
+                }
+            } else if (path.equals(pattern)
+                       || path.startsWith(pattern + "/")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns true iff PATTERN contains glob metacharacters. */
+    private static boolean isGlob(String pattern) {
+        for (int i = 0; i < pattern.length(); i += 1) {
+            switch (pattern.charAt(i)) {
+            case '*': case '?': case '[': case '{':
+                return true;
+            default:
+                break;
+            }
+        }
+        return false;
+    }
+
+    /** The patterns, in the order given. */
+    private final List<String> _patterns;
+
+    /** Glob matchers for each of _patterns, or null for plain paths. */
+    private final List<PathMatcher> _matchers;
+}
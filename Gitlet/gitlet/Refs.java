@@ -0,0 +1,121 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static gitlet.Directories.*;
+
+/** The branches of a repository.  Each branch is either loose, stored
+ *  as a serialized Branch in the BRANCHES directory, or packed, stored as
+ *  one "NAME COMMIT-ID" line of the sorted PACKED_REFS file.  A loose
+ *  branch overrides a packed one of the same name, so updating a branch
+ *  only ever writes its loose file; "pack-refs" folds the loose branches
+ *  back into PACKED_REFS.  PACKED_REFS is replaced atomically, so readers
+ *  never see it half-written.
+ *  @author Sameer Keswani
+ */
+class Refs {
+
+    /** Returns the names of all branches, in sorted order. */
+    static List<String> names() {
+        TreeSet<String> names = new TreeSet<>(packed().keySet());
+        List<String> loose = Utils.plainFilenamesIn(BRANCHES);
+        if (loose != null) {
+            names.addAll(loose);
+        }
+        return new ArrayList<>(names);
+    }
+
+    /** Returns true iff there is a branch named NAME. */
+    static boolean exists(String name) {
+        return Utils.join(BRANCHES, name).isFile()
+            || packed().containsKey(name);
+    }
+
+    /** Returns the branch named NAME, or null if there is none. */
+    static Branch read(String name) {
+        File loose = Utils.join(BRANCHES, name);
+        if (loose.isFile()) {
+            return Utils.readObject(loose, Branch.class);
+        }
+        String id = packed().get(name);
+        if (id == null) {
+            return null;
+        }
+        return new Branch(name, ObjectStore.readCommit(id));
+    }
+
+    /** Deletes the branch named NAME. */
+    static void delete(String name) {
+        Utils.join(BRANCHES, name).delete();
+        TreeMap<String, String> packed = packed();
+        if (packed.remove(name) != null) {
+            writePacked(packed);
+        }
+    }
+
+    /** Moves every loose branch into PACKED_REFS. */
+    static void pack() {
+        TreeMap<String, String> packed = packed();
+        List<String> loose = Utils.plainFilenamesIn(BRANCHES);
+        if (loose == null || loose.isEmpty()) {
+            return;
+        }
+        for (String name : loose) {
+            Branch branch = Utils.readObject(Utils.join(BRANCHES, name),
+                                             Branch.class);
+            packed.put(name, branch.getHead().getSHA());
+        }
+        writePacked(packed);
+        for (String name : loose) {
+            Utils.join(BRANCHES, name).delete();
+        }
+    }
+
+    /** Returns the packed branches, as a map from name to commit id. */
+    static TreeMap<String, String> packed() {
+        return readPacked(PACKED_REFS);
+    }
+
+    /** Returns the branches packed in FILE, or none if it does not
+     *  exist. */
+    static TreeMap<String, String> readPacked(File file) {
+        TreeMap<String, String> result = new TreeMap<>();
+        if (!file.isFile()) {
+            return result;
+        }
+        for (String line : Utils.readContentsAsString(file).split("\n")) {
+            int space = line.lastIndexOf(' ');
+            if (space > 0) {
+                result.put(line.substring(0, space),
+                           line.substring(space + 1));
+            }
+        }
+        return result;
+    }
+
+    /** Replaces PACKED_REFS with the branches in PACKED. */
+    private static void writePacked(TreeMap<String, String> packed) {
+        StringBuilder contents = new StringBuilder();
+        for (String name : packed.keySet()) {
+            contents.append(name).append(' ').append(packed.get(name))
+                .append('\n');
+        }
+        File temp = Utils.join(COMMON, "packed-refs.tmp");
+        Utils.writeContents(temp, contents.toString());
+        try {
+            Files.move(temp.toPath(), PACKED_REFS.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** Finds files that were renamed or copied between two snapshots, each
+ *  given as a map from file name to blob SHA.  Identical blobs are paired
+ *  first; the remaining files are compared by MinHash signatures of their
+ *  hashed lines, bucketed so that only likely pairs are ever scored.
+ *  @author Sameer Keswani
+ */
+class RenameDetector {
+
+    /** Default minimum similarity, out of 100, for two files to pair. */
+    static final int DEFAULT_THRESHOLD = 50;
+
+    /** Number of hash functions in a MinHash signature. */
+    private static final int SIGNATURE_SIZE = 64;
+
+    /** Number of signature entries per bucketing band. */
+    private static final int BAND_ROWS = 4;
+
+    /** Seeds for the signature hash functions. */
+    private static final long[] SEEDS = new long[SIGNATURE_SIZE];
+
+    static {
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < SIGNATURE_SIZE; i += 1) {
+            seed = mix(seed + i);
+            SEEDS[i] = seed;
+        }
+    }
+
+    /** A detector pairing files of BEFORE with files of AFTER whose
+     *  contents are at least THRESHOLD percent similar. */
+    RenameDetector(Map<String, String> before, Map<String, String> after,
+                   int threshold) {
+        _before = before == null ? new TreeMap<>() : before;
+        _after = after == null ? new TreeMap<>() : after;
+        _threshold = threshold;
+        _renames = new TreeMap<>();
+        _copies = new TreeMap<>();
+        detect();
+        _renamedTo = new HashMap<>();
+        for (Map.Entry<String, String> e : _renames.entrySet()) {
+            _renamedTo.put(e.getValue(), e.getKey());
+        }
+    }
+
+    /** A detector between BEFORE and AFTER using DEFAULT_THRESHOLD. */
+    RenameDetector(Map<String, String> before, Map<String, String> after) {
+        this(before, after, DEFAULT_THRESHOLD);
+    }
+
+    /** Returns a map from each renamed file's new name to its old name. */
+    TreeMap<String, String> renames() {
+        return _renames;
+    }
+
+    /** Returns a map from each copied file's name to the name of the
+     *  unchanged file it was copied from. */
+    TreeMap<String, String> copies() {
+        return _copies;
+    }
+
+    /** Returns the new name of OLDNAME if it was renamed, else null. */
+    String renamedTo(String oldName) {
+        return _renamedTo.get(oldName);
+    }
+
+    /** Fills _renames and _copies. */
+    private void detect() {
+        List<String> deleted = new ArrayList<>();
+        List<String> added = new ArrayList<>();
+        List<String> kept = new ArrayList<>();
+        for (String name : _before.keySet()) {
+            if (_after.containsKey(name)) {
+                kept.add(name);
+            } else {
+                deleted.add(name);
+            }
+        }
+        for (String name : _after.keySet()) {
+            if (!_before.containsKey(name)) {
+                added.add(name);
+            }
+        }
+        if (added.isEmpty()) {
+            return;
+        }
+        pair(deleted, added, _renames);
+        added.removeAll(_renames.keySet());
+        if (!added.isEmpty()) {
+            pair(kept, added, _copies);
+        }
+    }
+
+    /** Pairs each of TARGETS (names in _after) with at most one of
+     *  SOURCES (names in _before), recording target -> source in RESULT.
+     *  Each source is used at most once. */
+    private void pair(List<String> sources, List<String> targets,
+                      TreeMap<String, String> result) {
+        HashMap<String, String> bySHA = new HashMap<>();
+        for (String source : sources) {
+            bySHA.putIfAbsent(_before.get(source), source);
+        }
+        HashSet<String> used = new HashSet<>();
+        List<String> remaining = new ArrayList<>();
+        for (String target : targets) {
+            String source = bySHA.get(_after.get(target));
+            if (source != null && !used.contains(source)) {
+                result.put(target, source);
+                used.add(source);
+            } else {
+                remaining.add(target);
+            }
+        }
+        if (_threshold > 100 || remaining.isEmpty()) {
+            return;
+        }
+
+        HashMap<String, long[]> signatures = new HashMap<>();
+        HashMap<Long, List<String>> buckets = new HashMap<>();
+        for (String source : sources) {
+            if (used.contains(source)) {
+                continue;
+            }
+            long[] sig = signature(_before.get(source));
+            if (sig == null) {
+                continue;
+            }
+            signatures.put(source, sig);
+            for (long key : bandKeys(sig)) {
+                buckets.computeIfAbsent(key, k -> new ArrayList<>())
+                        .add(source);
+            }
+        }
+
+        List<Candidate> candidates = new ArrayList<>();
+        for (String target : remaining) {
+            long[] sig = signature(_after.get(target));
+            if (sig == null) {
+                continue;
+            }
+            HashSet<String> seen = new HashSet<>();
+            for (long key : bandKeys(sig)) {
+                List<String> bucket = buckets.get(key);
+                if (bucket == null) {
+                    continue;
+                }
+                for (String source : bucket) {
+                    if (seen.add(source)) {
+                        int score = similarity(sig, signatures.get(source));
+                        if (score >= _threshold) {
+                            candidates.add(new Candidate(source, target,
+                                    score));
+                        }
+                    }
+                }
+            }
+        }
+        Collections.sort(candidates);
+        for (Candidate c : candidates) {
+            if (!used.contains(c._source) && !result.containsKey(c._target)) {
+                result.put(c._target, c._source);
+                used.add(c._source);
+            }
+        }
+    }
+
+    /** Returns the MinHash signature of the lines of the blob with SHA,
+     *  or null if the blob is empty. */
+    static long[] signature(String sha) {
+        File blob = ObjectStore.blobFile(sha);
+        if (!blob.isFile()) {
+            return null;
+        }
+        return signature(ObjectCodec.read(blob));
+    }
+
+    /** Returns the MinHash signature of the lines of CONTENTS, or null if
+     *  CONTENTS is empty. */
+    static long[] signature(byte[] contents) {
+        if (contents.length == 0) {
+            return null;
+        }
+        long[] sig = new long[SIGNATURE_SIZE];
+        Arrays.fill(sig, Long.MAX_VALUE);
+        int start = 0;
+        for (int i = 0; i <= contents.length; i += 1) {
+            if (i == contents.length || contents[i] == '\n') {
+                if (i > start || i < contents.length) {
+                    long h = lineHash(contents, start, i);
+                    for (int k = 0; k < SIGNATURE_SIZE; k += 1) {
+                        long v = mix(h ^ SEEDS[k]);
+                        if (v < sig[k]) {
+                            sig[k] = v;
+                        }
+                    }
+                }
+                start = i + 1;
+            }
+        }
+        return sig;
+    }
+
+    /** Returns the estimated similarity of the files whose signatures are
+     *  A and B, as a percentage. */
+    static int similarity(long[] a, long[] b) {
+        int same = 0;
+        for (int i = 0; i < SIGNATURE_SIZE; i += 1) {
+            if (a[i] == b[i]) {
+                same += 1;
+            }
+        }
+        return same * 100 / SIGNATURE_SIZE;
+    }
+
+    /** Returns one bucket key per band of SIG. */
+    private static long[] bandKeys(long[] sig) {
+        long[] keys = new long[SIGNATURE_SIZE / BAND_ROWS];
+        for (int b = 0; b < keys.length; b += 1) {
+            long h = b;
+            for (int r = 0; r < BAND_ROWS; r += 1) {
+                h = mix(h * 31 + sig[b * BAND_ROWS + r]);
+            }
+            keys[b] = h;
+        }
+        return keys;
+    }
+
+    /** Returns a hash of the line in BYTES from START to END. */
+    private static long lineHash(byte[] bytes, int start, int end) {
+        String line = new String(bytes, start, end - start,
+                StandardCharsets.UTF_8).trim();
+        long h = 1125899906842597L;
+        for (int i = 0; i < line.length(); i += 1) {
+            h = 31 * h + line.charAt(i);
+        }
+        return h;
+    }
+
+    /** Returns X with its bits well mixed (the SplitMix64 finalizer). */
+    private static long mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+
+    /** A possible pairing of a source and target file. */
+    private static class Candidate implements Comparable<Candidate> {
+        /** A pairing of SOURCE with TARGET with similarity SCORE. */
+        Candidate(String source, String target, int score) {
+            _source = source;
+            _target = target;
+            _score = score;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            if (_score != other._score) {
+                return Integer.compare(other._score, _score);
+            }
+            int c = _target.compareTo(other._target);
+            return c != 0 ? c : _source.compareTo(other._source);
+        }
+
+        /** Name of the file in the earlier snapshot. */
+        private final String _source;
+
+        /** Name of the file in the later snapshot. */
+        private final String _target;
+
+        /** Estimated similarity, as a percentage. */
+        private final int _score;
+    }
+
+    /** Files in the earlier snapshot. */
+    private final Map<String, String> _before;
+
+    /** Files in the later snapshot. */
+    private final Map<String, String> _after;
+
+    /** Minimum similarity percentage for a pairing. */
+    private final int _threshold;
+
+    /** Renamed files, new name -> old name. */
+    private final TreeMap<String, String> _renames;
+
+    /** Renamed files, old name -> new name. */
+    private final HashMap<String, String> _renamedTo;
+
+    /** Copied files, copy name -> source name. */
+    private final TreeMap<String, String> _copies;
+}
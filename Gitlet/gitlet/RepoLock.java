@@ -0,0 +1,277 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static gitlet.Directories.CWD;
+import static gitlet.Directories.GITLET;
+import static gitlet.Directories.LOCK;
+
+/** Advisory lock on a Gitlet repository. Read-only commands hold a
+ *  shared lock, so any number of them may run at once; commands that
+ *  modify the repository hold an exclusive lock.  The lock is released
+ *  when it is closed or when the process exits.  File locks belong to
+ *  the whole process, so holders within one process first take a
+ *  read-write lock kept per lock file, and only the first of them takes
+ *  the file lock, which the last to close releases.
+ *  @author Sameer Keswani
+ */
+class RepoLock implements AutoCloseable {
+
+    /** Default number of milliseconds to wait for the lock. */
+    static final long DEFAULT_TIMEOUT = 10000;
+
+    /** Milliseconds to sleep between attempts to take the lock. */
+    private static final long RETRY_INTERVAL = 50;
+
+    /** A repository lock, shared iff SHARED, holding LOCAL on HOLDER. */
+    private RepoLock(Holder holder, Lock local, boolean shared) {
+        _holder = holder;
+        _local = local;
+        _shared = shared;
+    }
+
+    /** Returns a lock on the current repository, shared iff SHARED,
+     *  waiting at most TIMEOUT milliseconds for conflicting holders to
+     *  finish.  Throws a GitletException if the lock could not be taken
+     *  in time. */
+    static RepoLock acquire(boolean shared, long timeout) {
+        long deadline = System.currentTimeMillis() + timeout;
+        Holder holder = holder();
+        Lock local = shared ? holder.rw.readLock() : holder.rw.writeLock();
+        try {
+            if (!local.tryLock(timeout, TimeUnit.MILLISECONDS)) {
+                throw Utils.error("Timed out waiting for the repository "
+                        + "lock.");
+            }
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw Utils.error("Could not lock the repository: %s",
+                    excp.getMessage());
+        }
+        try {
+            holder.enter(shared, deadline, LOCK);
+        } catch (GitletException excp) {
+            local.unlock();
+            throw excp;
+        }
+        return new RepoLock(holder, local, shared);
+    }
+
+    /** Creates the .gitlet directory of a new repository in the working
+     *  directory and returns the exclusive lock on it, which is taken
+     *  before the directory appears, so that no other command sees it
+     *  unlocked.  Returns null if there already is a .gitlet directory.
+     *  Throws a GitletException if the directory or lock could not be
+     *  made. */
+    static RepoLock create() {
+        Holder holder = holder();
+        Lock local = holder.rw.writeLock();
+        if (!local.tryLock()) {
+            return null;
+        }
+        File staging = Utils.join(CWD, ".gitlet-init-" + UUID.randomUUID());
+        try {
+            if (!staging.mkdir()) {
+                throw new IOException("cannot create " + staging.getName());
+            }
+            holder.enter(false, 0, Utils.join(staging, LOCK.getName()));
+        } catch (IOException | GitletException excp) {
+            local.unlock();
+            delete(staging);
+            throw Utils.error("Could not create the repository: %s",
+                    excp.getMessage());
+        }
+        RepoLock result = new RepoLock(holder, local, false);
+        try {
+            Files.move(staging.toPath(), GITLET.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+            return result;
+        } catch (IOException excp) {
+            result.close();
+            delete(staging);
+            if (GITLET.exists()) {
+                return null;
+            }
+            throw Utils.error("Could not create the repository: %s",
+                    excp.getMessage());
+        }
+    }
+
+    /** Returns a lock on the current repository, shared iff SHARED,
+     *  using the timeout from the GITLET_LOCK_TIMEOUT environment
+     *  variable (in milliseconds), if set, or DEFAULT_TIMEOUT. */
+    static RepoLock acquire(boolean shared) {
+        long timeout = DEFAULT_TIMEOUT;
+        String env = System.getenv("GITLET_LOCK_TIMEOUT");
+        if (env != null) {
+            try {
+                timeout = Long.parseLong(env.trim());
+            } catch (NumberFormatException excp) {
+                timeout = DEFAULT_TIMEOUT;
+            }
+        }
+        return acquire(shared, timeout);
+    }
+
+    /** Returns true iff this is a shared (reader) lock. */
+    boolean isShared() {
+        return _shared;
+    }
+
+    @Override
+    public void close() {
+        if (_closed) {
+            return;
+        }
+        _closed = true;
+        try {
+            _holder.leave();
+        } finally {
+            _local.unlock();
+        }
+    }
+
+    /** Returns the holder of the lock on the current repository. */
+    private static Holder holder() {
+        String key;
+        try {
+            key = LOCK.getCanonicalPath();
+        } catch (IOException excp) {
+            key = LOCK.getAbsolutePath();
+        }
+        return HOLDERS.computeIfAbsent(key, k -> new Holder());
+    }
+
+    /** Deletes FILE, if non-null, and everything in it. */
+    private static void delete(File file) {
+        if (file == null) {
+            return;
+        }
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** Closes FILE, if non-null, ignoring errors. */
+    private static void closeQuietly(RandomAccessFile file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            file.close();
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** The locks held by this process on one lock file. */
+    private static class Holder {
+
+        /** Orders the holders within this process. */
+        private final ReentrantReadWriteLock rw =
+            new ReentrantReadWriteLock();
+
+        /** Records one more holder within this process, taking the lock
+         *  on FILE, shared iff SHARED, if it is the first, and waiting
+         *  until DEADLINE for other processes to release it. */
+        synchronized void enter(boolean shared, long deadline, File file) {
+            if (_count == 0) {
+                lockFile(shared, deadline, file);
+            }
+            _count += 1;
+        }
+
+        /** Records one less holder within this process, releasing the
+         *  file lock if it was the last. */
+        synchronized void leave() {
+            _count -= 1;
+            if (_count > 0) {
+                return;
+            }
+            try {
+                if (_lock.isValid()) {
+                    _lock.release();
+                }
+            } catch (IOException excp) {
+                System.err.println(excp);
+            }
+            closeQuietly(_file);
+            _lock = null;
+            _file = null;
+        }
+
+        /** Takes the lock on LOCKFILE, shared iff SHARED, waiting until
+         *  DEADLINE. */
+        private void lockFile(boolean shared, long deadline,
+                              File lockFile) {
+            RandomAccessFile file = null;
+            try {
+                file = new RandomAccessFile(lockFile, "rw");
+                FileChannel channel = file.getChannel();
+                while (true) {
+                    FileLock lock =
+                        channel.tryLock(0, Long.MAX_VALUE, shared);
+                    if (lock != null) {
+                        _file = file;
+                        _lock = lock;
+                        return;
+                    }
+                    if (System.currentTimeMillis() >= deadline) {
+                        break;
+                    }
+                    Thread.sleep(RETRY_INTERVAL);
+                }
+            } catch (IOException | InterruptedException excp) {
+                if (excp instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                closeQuietly(file);
+                throw Utils.error("Could not lock the repository: %s",
+                        excp.getMessage());
+            }
+            closeQuietly(file);
+            throw Utils.error("Timed out waiting for the repository lock.");
+        }
+
+        /** Number of open RepoLocks in this process holding the file
+         *  lock. */
+        private int _count;
+
+        /** The open lock file, while _count > 0. */
+        private RandomAccessFile _file;
+
+        /** The lock held on _file, while _count > 0. */
+        private FileLock _lock;
+    }
+
+    /** The holders of each lock file, by canonical path. */
+    private static final ConcurrentHashMap<String, Holder> HOLDERS =
+        new ConcurrentHashMap<>();
+
+    /** The holder of the file lock. */
+    private final Holder _holder;
+
+    /** The lock taken on _holder within this process. */
+    private final Lock _local;
+
+    /** True iff this is a shared lock. */
+    private final boolean _shared;
+
+    /** True once this lock has been closed. */
+    private boolean _closed;
+}
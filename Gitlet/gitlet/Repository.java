@@ -0,0 +1,384 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+import static gitlet.Directories.*;
+
+/** An open Gitlet repository, for programs that embed Gitlet instead of
+ *  running gitlet.Main once per command.  Commands run in process under
+ *  the repository lock and never exit the JVM.  Each returns a Result
+ *  holding what it would have printed, the head commit and the status
+ *  after it; queries such as status() and log() return structured
+ *  values.  A Transaction holds the exclusive lock across
+ *  several commands and loads the repository state once for any run of
+ *  adds and removes, so staging many files and committing them costs one
+ *  lock and one load.  The repository is the one in the working directory
+ *  of the process, as for gitlet.Main.  A Repository may be kept open
+ *  across calls, but is not safe for use by several threads at once.
+ *  @author Sameer Keswani
+ */
+public class Repository implements AutoCloseable {
+
+    /** The open repository. */
+    private Repository() {
+    }
+
+    /** Returns the repository in the working directory. */
+    public static Repository open() {
+        if (!GITLET.exists()) {
+            throw Utils.error("Not in an initialized Gitlet directory.");
+        }
+        return new Repository();
+    }
+
+    /** Creates a repository in the working directory and returns it. */
+    public static Repository init() {
+        Commands.init(new PrintStream(new ByteArrayOutputStream()));
+        return open();
+    }
+
+    /** Runs the command in ARGS, as gitlet.Main would, and returns its
+     *  result.  Within an open transaction it runs as part of that. */
+    public Result run(String... args) {
+        if (_transaction != null) {
+            return _transaction.run(args);
+        }
+        if (args.length == 0) {
+            return new Result("Please enter a command\n", null, null);
+        } else if (Main.locksItself(args)) {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            Main.dispatch(new Commands(buffer), args);
+            try (Transaction tx = begin(true)) {
+                return tx.result(new String(buffer.toByteArray(),
+                        StandardCharsets.UTF_8));
+            }
+        }
+        try (Transaction tx = begin(Main.isReadOnly(args[0]))) {
+            return tx.run(args);
+        }
+    }
+
+    /** Stages the files NAMES and returns the result. */
+    public Result add(String... names) {
+        if (_transaction != null) {
+            return _transaction.add(names);
+        }
+        try (Transaction tx = begin()) {
+            return tx.add(names);
+        }
+    }
+
+    /** Commits the staged files with MESSAGE and returns the result,
+     *  whose head is the new commit. */
+    public Result commit(String message) {
+        return run("commit", message);
+    }
+
+    /** Returns the id of the head commit. */
+    public String head() {
+        return query(commands -> commands.currentBranch().getHead().getSHA());
+    }
+
+    /** Returns the name of the current branch. */
+    public String currentBranch() {
+        return query(commands -> commands.currentBranch().getName());
+    }
+
+    /** Returns the names of all branches, in sorted order. */
+    public List<String> branches() {
+        return query(commands -> Refs.names());
+    }
+
+    /** Returns the current branches and staging area. */
+    public Status status() {
+        return query(Repository::status);
+    }
+
+    /** Returns the head commit and its first-parent ancestors, newest
+     *  first, up to MAXCOUNT of them, or all of them if MAXCOUNT < 0. */
+    public List<Commit> log(int maxCount) {
+        return query(commands -> {
+            List<Commit> result = new ArrayList<>();
+            Commit c = commands.currentBranch().getHead();
+            while (c != null && result.size() != maxCount) {
+                result.add(c);
+                c = c.getParent();
+            }
+            return result;
+        });
+    }
+
+    /** Starts a transaction holding the exclusive repository lock, which
+     *  lasts until it is closed. */
+    public Transaction begin() {
+        return begin(false);
+    }
+
+    /** Starts a transaction holding the repository lock, shared iff
+     *  SHARED. */
+    private Transaction begin(boolean shared) {
+        if (_transaction != null) {
+            throw Utils.error("A transaction is already open.");
+        }
+        ObjectStore.clearCache();
+        LargeFiles.clearCache();
+        _transaction = new Transaction(RepoLock.acquire(shared));
+        return _transaction;
+    }
+
+    /** Closes any open transaction. */
+    @Override
+    public void close() {
+        if (_transaction != null) {
+            _transaction.close();
+        }
+    }
+
+    /** Returns the result of QUERY on the current repository state. */
+    private <T> T query(Function<Commands, T> query) {
+        if (_transaction != null) {
+            return query.apply(_transaction.commands());
+        }
+        try (Transaction tx = begin(true)) {
+            return query.apply(tx.commands());
+        }
+    }
+
+    /** Returns the current branches and staging area of COMMANDS. */
+    private static Status status(Commands commands) {
+        return new Status(commands.currentBranch().getName(), Refs.names(),
+                commands.stage());
+    }
+
+    /** A series of commands run under one hold of the repository lock. */
+    public final class Transaction implements AutoCloseable {
+
+        /** A transaction holding LOCK. */
+        private Transaction(RepoLock lock) {
+            _lock = lock;
+        }
+
+        /** Runs the command in ARGS and returns its result. */
+        public Result run(String... args) {
+            checkOpen();
+            if (args.length == 0) {
+                return new Result("Please enter a command\n", null, null);
+            } else if (!Main.validInput(args)) {
+                return new Result("Incorrect operands.\n", null, null);
+            }
+            if (Main.locksItself(args)) {
+                return new Result("Cannot run " + args[0] + " " + args[1]
+                        + " inside a transaction.\n", null, null);
+            }
+            Commands commands = commands();
+            _buffer.reset();
+            if (args[0].equals("clone")) {
+                Main.cloneHelper(args, commands.out());
+            } else {
+                Main.dispatch(commands, args);
+            }
+            if (!KEEPS_HEAD.contains(args[0])) {
+                _commands = null;
+            }
+            return result();
+        }
+
+        /** Stages the files NAMES and returns the result. */
+        public Result add(String... names) {
+            checkOpen();
+            Commands commands = commands();
+            _buffer.reset();
+            for (String name : names) {
+                commands.add(name);
+            }
+            return result();
+        }
+
+        /** Commits the staged files with MESSAGE and returns the result,
+         *  whose head is the new commit. */
+        public Result commit(String message) {
+            return run("commit", message);
+        }
+
+        /** Releases the lock. */
+        @Override
+        public void close() {
+            if (_lock != null) {
+                _lock.close();
+                _lock = null;
+                _commands = null;
+                _transaction = null;
+            }
+        }
+
+        /** Returns the commands on the current repository state, loading
+         *  it if no command has yet done so or the last one may have
+         *  changed more than the staging area.  They print to _buffer. */
+        private Commands commands() {
+            if (_commands == null) {
+                _commands = new Commands(_buffer);
+            }
+            return _commands;
+        }
+
+        /** Returns the result of the command that just ran: what it
+         *  printed to _buffer and the repository state after it. */
+        private Result result() {
+            return result(new String(_buffer.toByteArray(),
+                    StandardCharsets.UTF_8));
+        }
+
+        /** Returns the result of a command that printed OUTPUT, with the
+         *  repository state after it. */
+        private Result result(String output) {
+            Commands commands = commands();
+            return new Result(output,
+                    commands.currentBranch().getHead().getSHA(),
+                    status(commands));
+        }
+
+        /** Throws an exception if I have been closed. */
+        private void checkOpen() {
+            if (_lock == null) {
+                throw Utils.error("The transaction is closed.");
+            }
+        }
+
+        /** The lock held, or null once closed. */
+        private RepoLock _lock;
+
+        /** Commands on the repository state, or null if it must be
+         *  reloaded. */
+        private Commands _commands;
+
+        /** Receives the output of my commands. */
+        private final ByteArrayOutputStream _buffer =
+            new ByteArrayOutputStream();
+    }
+
+    /** The output of a command. */
+    public static final class Result {
+
+        /** The result of a command that printed OUTPUT, after which the
+         *  head commit was HEAD and the status STATUS.  Both are null if
+         *  the command did not run. */
+        Result(String output, String head, Status status) {
+            _output = output;
+            _head = head;
+            _status = status;
+        }
+
+        /** Returns everything printed. */
+        public String output() {
+            return _output;
+        }
+
+        /** Returns the lines printed. */
+        public List<String> lines() {
+            if (_output.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return Arrays.asList(_output.split("\n"));
+        }
+
+        /** Returns true iff nothing was printed, which for commands other
+         *  than queries means that they succeeded. */
+        public boolean isEmpty() {
+            return _output.isEmpty();
+        }
+
+        /** Returns the id of the head commit after the command, or null
+         *  if it did not run. */
+        public String head() {
+            return _head;
+        }
+
+        /** Returns the branches and staging area after the command, or
+         *  null if it did not run. */
+        public Status status() {
+            return _status;
+        }
+
+        @Override
+        public String toString() {
+            return _output;
+        }
+
+        /** Everything printed. */
+        private final String _output;
+
+        /** Id of the head commit after the command. */
+        private final String _head;
+
+        /** Status after the command. */
+        private final Status _status;
+    }
+
+    /** The branches and staging area of a repository. */
+    public static final class Status {
+
+        /** The status with current branch BRANCH, all branches BRANCHES
+         *  and staging area STAGE. */
+        Status(String branch, List<String> branches, Stage stage) {
+            _branch = branch;
+            _branches = Collections.unmodifiableList(branches);
+            _staged = Collections.unmodifiableSortedMap(
+                    new TreeMap<>(stage.getAddStage()));
+            _removed = Collections.unmodifiableSortedSet(
+                    new TreeSet<>(stage.getRemoveStage()));
+        }
+
+        /** Returns the name of the current branch. */
+        public String branch() {
+            return _branch;
+        }
+
+        /** Returns the names of all branches, in sorted order. */
+        public List<String> branches() {
+            return _branches;
+        }
+
+        /** Returns the files staged for addition, mapped to their blob
+         *  ids. */
+        public SortedMap<String, String> staged() {
+            return _staged;
+        }
+
+        /** Returns the files staged for removal. */
+        public SortedSet<String> removed() {
+            return _removed;
+        }
+
+        /** Name of the current branch. */
+        private final String _branch;
+
+        /** Names of all branches. */
+        private final List<String> _branches;
+
+        /** Files staged for addition. */
+        private final SortedMap<String, String> _staged;
+
+        /** Files staged for removal. */
+        private final SortedSet<String> _removed;
+    }
+
+    /** Commands that change at most the staging area and working files,
+     *  after which the loaded repository state is still current. */
+    private static final List<String> KEEPS_HEAD = Arrays.asList(
+        "add", "rm", "log", "global-log", "find", "status", "blame", "fsck",
+        "archive");
+
+    /** The open transaction, or null. */
+    private Transaction _transaction;
+}
@@ -0,0 +1,213 @@
+package gitlet;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static gitlet.Directories.*;
+
+/** The suite of JUnit tests for the Repository class.  They create a
+ *  repository in the working directory, which must be empty apart from
+ *  what they leave behind, as it is when run by 'make unit'.
+ *  @author Sameer Keswani
+ */
+public class RepositoryTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The working files these tests write. */
+    private static final List<String> FILES = Arrays.asList("f.txt",
+            "g.txt");
+
+    /** Removes the repository and working files left by earlier tests,
+     *  refusing to touch a working directory holding anything else. */
+    @Before
+    public void clean() {
+        for (String name : CWD.list()) {
+            assertTrue("RepositoryTest must run in an empty directory",
+                    name.equals(".gitlet") || FILES.contains(name));
+        }
+        delete(GITLET);
+        for (String name : FILES) {
+            new File(CWD, name).delete();
+        }
+    }
+
+    /** Deletes FILE and, if it is a directory, everything in it. */
+    private void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /** Writes CONTENTS to the working file NAME. */
+    private void write(String name, String contents) {
+        Utils.writeContents(new File(CWD, name), contents);
+    }
+
+    /** Runs QUERIES on REPOS repositories opened at once, one thread
+     *  each, and returns anything they threw. */
+    private List<Throwable> readConcurrently(int repos, int queries)
+        throws InterruptedException {
+        List<Throwable> errors =
+            Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < repos; i += 1) {
+            threads.add(new Thread(() -> {
+                try (Repository repo = Repository.open()) {
+                    for (int k = 0; k < queries; k += 1) {
+                        assertEquals("master", repo.status().branch());
+                        assertEquals(2, repo.log(-1).size());
+                    }
+                } catch (Throwable excp) {
+                    errors.add(excp);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return errors;
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testAddAndCommit() {
+        try (Repository repo = Repository.init()) {
+            String initial = repo.head();
+            assertEquals(1, repo.log(-1).size());
+            write("f.txt", "one");
+            Repository.Result added = repo.add("f.txt");
+            assertTrue(added.isEmpty());
+            assertEquals(initial, added.head());
+            assertEquals(Arrays.asList("f.txt"),
+                    new ArrayList<>(added.status().staged().keySet()));
+            Repository.Result committed = repo.commit("one");
+            assertTrue(committed.isEmpty());
+            assertNotEquals(initial, committed.head());
+            assertEquals(committed.head(), repo.head());
+            assertTrue(committed.status().staged().isEmpty());
+            assertEquals(2, repo.log(-1).size());
+            assertEquals(1, repo.log(1).size());
+            assertEquals("one", repo.log(1).get(0).getMessage());
+        }
+    }
+
+    @Test
+    public void testStatus() {
+        try (Repository repo = Repository.init()) {
+            write("f.txt", "one");
+            write("g.txt", "two");
+            repo.add("f.txt", "g.txt");
+            repo.commit("two files");
+            repo.run("branch", "other");
+            repo.run("rm", "f.txt");
+            write("g.txt", "changed");
+            repo.add("g.txt");
+            Repository.Status status = repo.status();
+            assertEquals("master", status.branch());
+            assertEquals(Arrays.asList("master", "other"), status.branches());
+            assertEquals(Arrays.asList("g.txt"),
+                    new ArrayList<>(status.staged().keySet()));
+            assertEquals(Arrays.asList("f.txt"),
+                    new ArrayList<>(status.removed()));
+            assertFalse(new File(CWD, "f.txt").exists());
+        }
+    }
+
+    @Test
+    public void testFailedCommands() {
+        try (Repository repo = Repository.init()) {
+            String head = repo.head();
+            Repository.Result none = repo.run();
+            assertEquals("Please enter a command\n", none.output());
+            assertNull(none.head());
+            assertNull(none.status());
+            Repository.Result missing = repo.run("checkout", "nowhere");
+            assertEquals(Arrays.asList("No such branch exists."),
+                    missing.lines());
+            assertEquals(head, missing.head());
+            Repository.Result untracked = repo.run("rm", "f.txt");
+            assertEquals(Arrays.asList("No reason to remove the file"),
+                    untracked.lines());
+            assertTrue(untracked.status().removed().isEmpty());
+        }
+    }
+
+    @Test
+    public void testTransaction() {
+        try (Repository repo = Repository.init()) {
+            String initial = repo.head();
+            write("f.txt", "one");
+            write("g.txt", "two");
+            try (Repository.Transaction tx = repo.begin()) {
+                tx.add("f.txt");
+                tx.add("g.txt");
+                assertEquals(2, repo.status().staged().size());
+                Repository.Result committed = tx.commit("both");
+                assertNotEquals(initial, committed.head());
+                assertEquals(committed.head(), repo.head());
+                tx.run("branch", "other");
+                try {
+                    repo.begin();
+                    fail("began a second transaction");
+                } catch (GitletException excp) {
+                    assertEquals("A transaction is already open.",
+                            excp.getMessage());
+                }
+            }
+            assertEquals(Arrays.asList("master", "other"), repo.branches());
+            assertEquals(2, repo.log(-1).size());
+            try (Repository.Transaction tx = repo.begin()) {
+                tx.close();
+                tx.run("status");
+                fail("ran a command after closing");
+            } catch (GitletException excp) {
+                assertEquals("The transaction is closed.", excp.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testSeveralRepositories() throws InterruptedException {
+        try (Repository repo = Repository.init()) {
+            write("f.txt", "one");
+            repo.add("f.txt");
+            repo.commit("one");
+        }
+        try (Repository first = Repository.open();
+             Repository second = Repository.open()) {
+            assertEquals(first.head(), second.head());
+            try (Repository.Transaction tx = first.begin()) {
+                tx.run("branch", "other");
+            }
+            assertEquals(Arrays.asList("master", "other"),
+                    second.branches());
+            try (Repository.Transaction tx = second.begin()) {
+                tx.run("rm-branch", "other");
+            }
+            assertEquals(Arrays.asList("master"), first.branches());
+        }
+        assertEquals(Collections.emptyList(), readConcurrently(4, 20));
+    }
+}
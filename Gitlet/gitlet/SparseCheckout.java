@@ -0,0 +1,55 @@
+package gitlet;
+
+import java.util.List;
+
+import static gitlet.Directories.SPARSE;
+
+/** The sparse-checkout patterns of a repository, which restrict the
+ *  tracked files that checkout and reset write to the working directory.
+ *  Commits still record every tracked file.  The patterns are kept in
+ *  the SPARSE file in the form described in PathPatterns.  With no
+ *  SPARSE file, every path is included.
+ *  @author Sameer Keswani
+ */
+class SparseCheckout {
+
+    /** Sparse checkout using PATTERNS; an empty list disables it. */
+    SparseCheckout(List<String> patterns) {
+        _patterns = new PathPatterns(patterns);
+    }
+
+    /** Sparse checkout using PATTERNS. */
+    private SparseCheckout(PathPatterns patterns) {
+        _patterns = patterns;
+    }
+
+    /** Returns the sparse checkout of the current repository. */
+    static SparseCheckout load() {
+        return new SparseCheckout(PathPatterns.read(SPARSE));
+    }
+
+    /** Saves my patterns as those of the current repository, removing
+     *  the SPARSE file if I have none. */
+    void save() {
+        _patterns.write(SPARSE);
+    }
+
+    /** Returns true iff sparse checkout is in effect. */
+    boolean isEnabled() {
+        return !_patterns.isEmpty();
+    }
+
+    /** Returns my patterns. */
+    List<String> patterns() {
+        return _patterns.patterns();
+    }
+
+    /** Returns true iff the tracked file at PATH belongs in the working
+     *  directory. */
+    boolean includes(String path) {
+        return _patterns.isEmpty() || _patterns.matches(path);
+    }
+
+    /** The patterns. */
+    private final PathPatterns _patterns;
+}
@@ -1,22 +1,71 @@
 package gitlet;
 
-import java.util.TreeMap;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import static gitlet.Directories.STAGE;
+import static gitlet.Directories.STAGE_JOURNAL;
 
 
-/** Stage class.
+/** Stage class.  The stage is stored as a serialized snapshot in STAGE
+ * plus an append-only journal in STAGE_JOURNAL of the changes made since,
+ * one line per change, so that staging a file appends one small record
+ * instead of rewriting the whole stage.  The snapshot is rewritten, and
+ * the journal dropped, when the stage is emptied or the journal grows
+ * past MAX_JOURNAL_SIZE.  The snapshot keeps the serialized form of the
+ * first version of this class, with the removal stage as an ArrayList,
+ * so that stages saved by earlier versions still load.
  * @author Sameer Keswani
  */
 public class Stage implements Serializable {
 
+    /** The serialVersionUID of the first version of this class. */
+    private static final long serialVersionUID = 357351610862976143L;
+
+    /** The serialized fields of the first version of this class. */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("_addStage", TreeMap.class),
+        new ObjectStreamField("_removeStage", ArrayList.class),
+    };
+
+    /** Journal size, in bytes, past which the snapshot is rewritten. */
+    static final long MAX_JOURNAL_SIZE = 1 << 20;
+
     /** Stage constructor.
      */
     public Stage() {
         _addStage = new TreeMap<String, String>();
-        _removeStage = new ArrayList<String>();
+        _removeStage = new TreeSet<String>();
+        _journal = new ArrayList<String>();
+    }
+
+    /** Returns the stage of the current worktree: its snapshot with the
+     * journal replayed over it. */
+    static Stage load() {
+        Stage stage;
+        if (STAGE.length() > 0) {
+            stage = Utils.readObject(STAGE, Stage.class);
+        } else {
+            stage = new Stage();
+        }
+        if (STAGE_JOURNAL.isFile()) {
+            String records = Utils.readContentsAsString(STAGE_JOURNAL);
+            for (String record : records.split("\n")) {
+                stage.replay(record);
+            }
+        }
+        return stage;
     }
 
     /** Returns addition stage. */
@@ -25,48 +74,134 @@ public class Stage implements Serializable {
     }
 
     /** Returns removal stage. */
-    public ArrayList<String> getRemoveStage() {
+    public TreeSet<String> getRemoveStage() {
         return _removeStage;
     }
 
     /** Add a file with NAME and SHA to addition stage. */
     public void add(String name, String sha) {
         _addStage.put(name, sha);
+        _journal.add("A\t" + name + "\t" + sha);
     }
 
     /** Add a file with NAME to removal stage. */
     public void remove(String name) {
         _removeStage.add(name);
+        _journal.add("R\t" + name);
     }
 
     /** Remove file with NAME from addition stage. */
     public void removeFromAddStage(String name) {
         _addStage.remove(name);
+        _journal.add("a\t" + name);
     }
 
     /** Remove file with NAME from removal stage. */
     public void removeFromRemoveStage(String name) {
         _removeStage.remove(name);
+        _journal.add("r\t" + name);
     }
 
     /** Empties but the Addition Stage and Removal Stage. */
     public void empty() {
         _addStage.clear();
         _removeStage.clear();
-
+        _journal.clear();
+        _cleared = true;
     }
 
-    /** Serializes stage to STAGE directory. */
+    /** Saves the changes made since the stage was loaded: appends them to
+     * STAGE_JOURNAL, or rewrites STAGE if the stage was emptied or the
+     * journal has grown too long. */
     public void saveStage() {
-        Utils.writeObject(STAGE, this);
+        if (_cleared || STAGE_JOURNAL.length() > MAX_JOURNAL_SIZE) {
+            Utils.writeObject(STAGE, this);
+            STAGE_JOURNAL.delete();
+        } else if (!_journal.isEmpty()) {
+            StringBuilder records = new StringBuilder();
+            for (String record : _journal) {
+                records.append(record).append('\n');
+            }
+            append(STAGE_JOURNAL, records.toString());
+        }
+        _journal.clear();
+        _cleared = false;
+    }
+
+    /** Applies the journal RECORD to me. */
+    private void replay(String record) {
+        String[] fields = record.split("\t");
+        if (fields.length < 2) {
+            return;
+        }
+        switch (fields[0]) {
+        case "A":
+            if (fields.length == 3) {
+                _addStage.put(fields[1], fields[2]);
+            }
+            break;
+        case "R":
+            _removeStage.add(fields[1]);
+            break;
+        case "a":
+            _addStage.remove(fields[1]);
+            break;
+        case "r":
+            _removeStage.remove(fields[1]);
+            break;
+        default:
+            break;
+        }
+    }
+
+    /** Writes me to OUT in the serialized form of serialPersistentFields.
+     *  @throws IOException if OUT does. */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("_addStage", _addStage);
+        fields.put("_removeStage", new ArrayList<String>(_removeStage));
+        out.writeFields();
+    }
+
+    /** Reads me from IN, in the serialized form of serialPersistentFields.
+     *  @throws IOException if IN does.
+     *  @throws ClassNotFoundException if IN does. */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in)
+        throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        _addStage = (TreeMap<String, String>) fields.get("_addStage", null);
+        if (_addStage == null) {
+            _addStage = new TreeMap<String, String>();
+        }
+        _removeStage = new TreeSet<String>();
+        Collection<String> removed =
+            (Collection<String>) fields.get("_removeStage", null);
+        if (removed != null) {
+            _removeStage.addAll(removed);
+        }
+        _journal = new ArrayList<String>();
+    }
+
+    /** Appends TEXT to FILE. */
+    private static void append(File file, String text) {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
     }
 
     /** Addition Stage. */
-    private TreeMap<String, String> _addStage;
+    private transient TreeMap<String, String> _addStage;
 
     /**Removal Stage. */
-    private ArrayList<String> _removeStage;
+    private transient TreeSet<String> _removeStage;
 
+    /** Journal records of the changes not yet saved. */
+    private transient List<String> _journal;
 
+    /** True iff I have been emptied since I was last saved. */
+    private transient boolean _cleared;
 
 }